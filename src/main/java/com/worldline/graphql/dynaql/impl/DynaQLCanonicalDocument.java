@@ -0,0 +1,91 @@
+package com.worldline.graphql.dynaql.impl;
+
+import com.worldline.graphql.dynaql.impl.core.utils.Canonicalizer;
+import com.worldline.graphql.dynaql.impl.core.utils.Hashes;
+import org.eclipse.microprofile.graphql.client.core.Document;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The canonical minified form of a document, with its hashes computed once.
+ * <p>
+ * Two documents differing only by whitespace, commas, comments or the order of their arguments,
+ * input object fields and variable definitions have the same canonical form, so it can be used as a
+ * cache key or as a persisted query identifier.
+ */
+public final class DynaQLCanonicalDocument {
+    private final String text;
+    private final byte[] sha256;
+    private final String sha256Hex;
+    private final long hash64;
+
+    private DynaQLPreparedDocument preparedDocument;
+
+    private DynaQLCanonicalDocument(String text) {
+        this.text = text;
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        this.sha256 = Hashes.sha256(bytes);
+        this.sha256Hex = Hashes.toHex(sha256);
+        this.hash64 = Hashes.fnv1a64(bytes);
+    }
+
+    public static DynaQLCanonicalDocument of(Document document) {
+        return new DynaQLCanonicalDocument(Canonicalizer.canonicalize(document));
+    }
+
+    /*
+        Canonical form of a document text: the same as the one of the Document it has been built from.
+    */
+    public static DynaQLCanonicalDocument of(String document) {
+        return new DynaQLCanonicalDocument(Canonicalizer.canonicalize(document));
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public byte[] getSha256() {
+        return sha256.clone();
+    }
+
+    public String getSha256Hex() {
+        return sha256Hex;
+    }
+
+    public long getHash64() {
+        return hash64;
+    }
+
+    /*
+        The canonical text, ready to be sent.
+    */
+    public DynaQLPreparedDocument prepare() {
+        DynaQLPreparedDocument result = preparedDocument;
+        if (result == null) {
+            preparedDocument = result = DynaQLPreparedDocument.of(text);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        DynaQLCanonicalDocument other = (DynaQLCanonicalDocument) obj;
+        return hash64 == other.hash64 && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash64 ^ (hash64 >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "CanonicalDocument{" + "text=" + text + ", sha256=" + sha256Hex + '}';
+    }
+}
@@ -26,18 +26,34 @@ public class DynaQLError implements Error {
         return message;
     }
 
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
     public List<Map<String, Integer>> getLocations() {
         return locations;
     }
 
+    public void setLocations(List<Map<String, Integer>> locations) {
+        this.locations = locations;
+    }
+
     public Object[] getPath() {
         return path;
     }
 
+    public void setPath(Object[] path) {
+        this.path = path;
+    }
+
     public Map<String, Object> getExtensions() {
         return extensions;
     }
 
+    public void setExtensions(Map<String, Object> extensions) {
+        this.extensions = extensions;
+    }
+
     @Override
     public String toString() {
         return "GraphQLError{" + "message=" + message + ", locations=" + locations + ", path=" + path + ", extensions=" + extensions + '}';
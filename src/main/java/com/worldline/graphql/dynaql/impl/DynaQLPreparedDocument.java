@@ -0,0 +1,165 @@
+package com.worldline.graphql.dynaql.impl;
+
+import com.worldline.graphql.dynaql.impl.core.utils.Hashes;
+import com.worldline.graphql.dynaql.impl.core.utils.StringEscaper;
+import org.eclipse.microprofile.graphql.client.core.Document;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A GraphQL document compiled once and reused for every request sharing its shape.
+ * <p>
+ * The GraphQL text, its JSON string literal (as sent in the "query" member) and the
+ * UTF-8 encoding of that literal are computed at construction time, so sending a
+ * prepared document never re-runs {@link Document#build()} nor re-escapes the text.
+ */
+public final class DynaQLPreparedDocument {
+    private final String text;
+    private final String jsonQuery;
+    private final byte[] jsonQueryBytes;
+
+    // Computed on first use, volatile so that a prepared document can be shared between threads as it is
+    private volatile String sha256Hex;
+    private volatile Boolean queryOnly;
+    private volatile String canonicalSha256Hex;
+
+    private DynaQLPreparedDocument(String text) {
+        this.text = Objects.requireNonNull(text, "document");
+        this.jsonQuery = StringEscaper.quote(text);
+        this.jsonQueryBytes = jsonQuery.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static DynaQLPreparedDocument prepare(Document document) {
+        return new DynaQLPreparedDocument(document.build());
+    }
+
+    public static DynaQLPreparedDocument of(String document) {
+        return new DynaQLPreparedDocument(document);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /*
+        The quoted and escaped JSON string literal of the document.
+    */
+    public String getJsonQuery() {
+        return jsonQuery;
+    }
+
+    public int getJsonQueryLength() {
+        return jsonQueryBytes.length;
+    }
+
+    public void writeJsonQuery(OutputStream out) throws IOException {
+        out.write(jsonQueryBytes);
+    }
+
+    /*
+        SHA-256 of the exact text sent, as expected by Automatic Persisted Queries.
+    */
+    public String getSha256Hex() {
+        String result = sha256Hex;
+        if (result == null) {
+            sha256Hex = result = Hashes.toHex(Hashes.sha256(text.getBytes(StandardCharsets.UTF_8)));
+        }
+        return result;
+    }
+
+    /*
+        SHA-256 of the canonical form of the document, see {@link DynaQLCanonicalDocument}: the same for documents
+        differing only by insignificant characters or by the order of their arguments, whether prepared from
+        a Document or from a text. Requests are identified by it in caches.
+    */
+    public String getCanonicalSha256Hex() {
+        String result = canonicalSha256Hex;
+        if (result == null) {
+            canonicalSha256Hex = result = DynaQLCanonicalDocument.of(text).getSha256Hex();
+        }
+        return result;
+    }
+
+    /*
+        True when the document only defines queries (and fragments): no mutation nor subscription.
+        Only the top level of the document is scanned, strings and comments are skipped.
+    */
+    public boolean isQueryOnly() {
+        Boolean result = queryOnly;
+        if (result == null) {
+            queryOnly = result = _scanQueryOnly(text);
+        }
+        return result;
+    }
+
+    private static boolean _scanQueryOnly(String text) {
+        int depth = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '#') {
+                while (i < length && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+                    i++;
+                }
+            } else if (c == '"') {
+                if (text.startsWith("\"\"\"", i)) {
+                    int end = text.indexOf("\"\"\"", i + 3);
+                    while (end > 0 && text.charAt(end - 1) == '\\') {
+                        end = text.indexOf("\"\"\"", end + 3);
+                    }
+                    i = end < 0 ? length : end + 3;
+                } else {
+                    i++;
+                    while (i < length && text.charAt(i) != '"') {
+                        i += text.charAt(i) == '\\' ? 2 : 1;
+                    }
+                    i++;
+                }
+            } else if (c == '{' || c == '(') {
+                depth++;
+                i++;
+            } else if (c == '}' || c == ')') {
+                depth--;
+                i++;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+                    i++;
+                }
+                int nameLength = i - start;
+                if (depth == 0 && (nameLength == 8 && text.startsWith("mutation", start)
+                        || nameLength == 12 && text.startsWith("subscription", start))) {
+                    return false;
+                }
+            } else {
+                i++;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedDocument{" + "text=" + text + '}';
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return text.equals(((DynaQLPreparedDocument) obj).text);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+}
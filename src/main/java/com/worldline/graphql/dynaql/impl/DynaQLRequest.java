@@ -2,53 +2,192 @@ package com.worldline.graphql.dynaql.impl;
 
 import org.eclipse.microprofile.graphql.client.Request;
 
+import com.worldline.graphql.dynaql.impl.core.utils.StringEscaper;
+import com.worldline.graphql.dynaql.impl.json.JsonValueWriter;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
 import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
 
 public class DynaQLRequest implements Request {
+    private static final byte[] QUERY_PREFIX = "{\"query\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PERSISTED_QUERY_PREFIX = "\"extensions\":{\"persistedQuery\":{\"version\":1,\"sha256Hash\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PERSISTED_QUERY_SUFFIX = "\"}}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OPERATION_NAME_PREFIX = ",\"operationName\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VARIABLES_PREFIX = ",\"variables\":".getBytes(StandardCharsets.UTF_8);
+
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(null);
+
     private final String document;
+    private final DynaQLPreparedDocument preparedDocument;
+    private String operationName;
+    private byte[] operationNameBytes;
+    // Constant part of the JSON body, per mode: query, persisted query hash, both
+    private final byte[][] jsonPrefixes = new byte[3][];
     private Map<String, Object> variables;
 
 
     public DynaQLRequest(String document) {
-        this.document = document;
+        this(DynaQLPreparedDocument.of(document));
+    }
+
+    public DynaQLRequest(DynaQLPreparedDocument preparedDocument) {
+        this.preparedDocument = preparedDocument;
+        this.document = preparedDocument.getText();
         this.variables = new HashMap<>();
     }
 
 
     public String toJson() {
-        JsonObjectBuilder queryBuilder = Json.createObjectBuilder().add("query", document);
+        byte[] prefix = _jsonPrefix(true, false);
+        StringWriter writer = new StringWriter(prefix.length + 16);
+        writer.append(new String(prefix, StandardCharsets.UTF_8));
         if (!variables.isEmpty()) {
-            queryBuilder.add("variables", _formatJsonVariables());
+            writer.append(",\"variables\":");
+            try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(writer)) {
+                _writeJsonVariables(generator);
+            }
         }
+        writer.append('}');
 
-        return queryBuilder.build().toString();
+        return writer.toString();
     }
 
-    private JsonObject _formatJsonVariables() {
-        JsonObjectBuilder varBuilder = Json.createObjectBuilder();
+    /*
+        Streams the JSON request as UTF-8: the pre-encoded query and operation name are copied as is,
+        the variables are written by a JsonGenerator directly into the stream, without intermediate String.
+    */
+    public void writeJson(OutputStream out) throws IOException {
+        writeJson(out, true, false);
+    }
 
-        variables.forEach((k, v) -> {
-            // Other types to process here
-            if (v instanceof String) {
-                varBuilder.add(k, (String) v);
-            } else if (v instanceof Integer) {
-                varBuilder.add(k, (Integer) v);
+    /*
+        Automatic Persisted Queries: the document can be replaced by (or sent along with) its SHA-256 hash.
+    */
+    public void writeJson(OutputStream out, boolean withQuery, boolean withPersistedQuery) throws IOException {
+        out.write(_jsonPrefix(withQuery, withPersistedQuery));
+        if (!variables.isEmpty()) {
+            out.write(VARIABLES_PREFIX);
+            // The shield keeps the caller's stream open when the generator is closed
+            try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(new CloseShieldOutputStream(out), StandardCharsets.UTF_8)) {
+                _writeJsonVariables(generator);
+            } catch (JsonException ex) {
+                throw new IOException(ex);
             }
-        });
+        }
+        out.write('}');
+    }
+
+    public byte[] toJsonBytes() {
+        return toJsonBytes(true, false);
+    }
+
+    public byte[] toJsonBytes(boolean withQuery, boolean withPersistedQuery) {
+        byte[] prefix = _jsonPrefix(withQuery, withPersistedQuery);
+        if (variables.isEmpty()) {
+            byte[] bytes = Arrays.copyOf(prefix, prefix.length + 1);
+            bytes[prefix.length] = '}';
+            return bytes;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(prefix.length + 64);
+        try {
+            writeJson(out, withQuery, withPersistedQuery);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
 
-        return varBuilder.build();
+    /*
+        The variables alone, as a JSON object, e.g. for the query string of a GET request.
+    */
+    public String toJsonVariables() {
+        StringWriter writer = new StringWriter(64);
+        try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(writer)) {
+            _writeJsonVariables(generator);
+        }
+        return writer.toString();
+    }
+
+    /*
+        Everything before the variables only depends on the document and the operation name: it is encoded once
+        per mode, and re-encoded only after setOperationName.
+    */
+    private byte[] _jsonPrefix(boolean withQuery, boolean withPersistedQuery) {
+        if (!withQuery && !withPersistedQuery) {
+            throw new IllegalArgumentException("A request needs either its query or its persisted query hash");
+        }
+        int mode = withQuery ? (withPersistedQuery ? 2 : 0) : 1;
+        byte[] prefix = jsonPrefixes[mode];
+        if (prefix == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(withQuery ? preparedDocument.getJsonQueryLength() + 128 : 128);
+            try {
+                if (withQuery) {
+                    out.write(QUERY_PREFIX);
+                    preparedDocument.writeJsonQuery(out);
+                    if (withPersistedQuery) {
+                        out.write(',');
+                    }
+                } else {
+                    out.write('{');
+                }
+                if (withPersistedQuery) {
+                    out.write(PERSISTED_QUERY_PREFIX);
+                    out.write(preparedDocument.getSha256Hex().getBytes(StandardCharsets.US_ASCII));
+                    out.write(PERSISTED_QUERY_SUFFIX);
+                }
+                if (operationName != null) {
+                    out.write(OPERATION_NAME_PREFIX);
+                    out.write(operationNameBytes);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            prefix = out.toByteArray();
+            jsonPrefixes[mode] = prefix;
+        }
+        return prefix;
+    }
+
+    private void _writeJsonVariables(JsonGenerator generator) {
+        JsonValueWriter.writeObject(generator, variables);
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /*
+        Selects the operation to execute when the document contains several ones.
+    */
+    public DynaQLRequest setOperationName(String operationName) {
+        this.operationName = operationName;
+        this.operationNameBytes = operationName == null ? null : StringEscaper.quote(operationName).getBytes(StandardCharsets.UTF_8);
+        Arrays.fill(jsonPrefixes, null);
+        return this;
     }
 
     public String getDocument() {
         return document;
     }
 
+    public DynaQLPreparedDocument getPreparedDocument() {
+        return preparedDocument;
+    }
+
     public Map<String, Object> getVariables() {
         return variables;
     }
@@ -73,7 +212,7 @@ public class DynaQLRequest implements Request {
 
 
     public String toString() {
-        return "GraphQLRequest{" + "document=" + document + ", variables=" + variables + '}';
+        return "GraphQLRequest{" + "document=" + document + ", operationName=" + operationName + ", variables=" + variables + '}';
     }
 
     public boolean equals(Object obj) {
@@ -91,6 +230,9 @@ public class DynaQLRequest implements Request {
         if (!Objects.equals(this.document, other.document)) {
             return false;
         }
+        if (!Objects.equals(this.operationName, other.operationName)) {
+            return false;
+        }
         if (!Objects.equals(this.variables, other.variables)) {
             return false;
         }
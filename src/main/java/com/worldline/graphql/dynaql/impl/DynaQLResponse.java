@@ -28,7 +28,11 @@ import java.util.List;
 public class DynaQLResponse implements Response {
     private final JsonObject data;
     private final List<Error> errors;
-    private Jsonb jsonb;
+    /*
+        Created on first use. Volatile, as a response may be shared between threads (single-flight
+        waiters, cached responses): every thread sees the same, thread-safe, Jsonb instance.
+    */
+    private volatile Jsonb jsonb;
 
     public DynaQLResponse(JsonObject data, List<Error> errors) {
         this.data = data;
@@ -80,9 +84,17 @@ public class DynaQLResponse implements Response {
     }
 
     private Jsonb getJsonb() {
-        if (jsonb == null) {
-            jsonb = JsonbBuilder.create();
+        // Double-checked: a Jsonb is costly to create, only one is created per response
+        Jsonb result = jsonb;
+        if (result == null) {
+            synchronized (this) {
+                result = jsonb;
+                if (result == null) {
+                    result = JsonbBuilder.create();
+                    jsonb = result;
+                }
+            }
         }
-        return jsonb;
+        return result;
     }
 }
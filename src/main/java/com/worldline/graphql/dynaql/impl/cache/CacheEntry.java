@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.cache;
+
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cached response: its JSON encoding, the HTTP headers it was received with, and until when
+ * it is fresh, then usable while being revalidated (stale-while-revalidate). Times are epoch milliseconds.
+ * <p>
+ * The response is parsed from its encoding once, when first read.
+ */
+public final class CacheEntry {
+
+    private final String key;
+    private final long expiresAt;
+    private final long staleUntil;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    private volatile DynaQLResponse response;
+
+    public CacheEntry(String key, long expiresAt, long staleUntil, Map<String, String> headers, byte[] body) {
+        this.key = key;
+        this.expiresAt = expiresAt;
+        this.staleUntil = Math.max(expiresAt, staleUntil);
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.body = body;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public long getStaleUntil() {
+        return staleUntil;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /*
+        The response, encoded as JSON (UTF-8).
+    */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public boolean isFresh(long now) {
+        return now < expiresAt;
+    }
+
+    public boolean isUsable(long now) {
+        return now < staleUntil;
+    }
+
+    /*
+        Approximate memory footprint, in bytes, used to bound the stores.
+    */
+    public long getWeight() {
+        long weight = body.length + 2L * key.length();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            weight += 2L * (header.getKey().length() + header.getValue().length());
+        }
+        return weight;
+    }
+
+    public DynaQLResponse getResponse() {
+        DynaQLResponse result = response;
+        if (result == null) {
+            try {
+                response = result = GraphQLCodecs.json().readResponse(new ByteArrayInputStream(body), StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return result;
+    }
+
+    /*
+        Binary encoding, for the stores keeping entries out of the heap:
+        key, expiry times, headers and body, strings and arrays being prefixed with their length.
+    */
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            _writeString(out, key);
+            out.writeLong(expiresAt);
+            out.writeLong(staleUntil);
+            out.writeInt(headers.size());
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                _writeString(out, header.getKey());
+                _writeString(out, header.getValue());
+            }
+            out.writeInt(body.length);
+            out.write(body);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    static CacheEntry fromBytes(ByteBuffer buffer) {
+        String key = _readString(buffer);
+        long expiresAt = buffer.getLong();
+        long staleUntil = buffer.getLong();
+        int headerCount = buffer.getInt();
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(_readString(buffer), _readString(buffer));
+        }
+        byte[] body = new byte[buffer.getInt()];
+        buffer.get(body);
+        return new CacheEntry(key, expiresAt, staleUntil, headers, body);
+    }
+
+    private static void _writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String _readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheEntry{" + "key=" + key + ", expiresAt=" + expiresAt + ", staleUntil=" + staleUntil + ", size=" + body.length + '}';
+    }
+}
@@ -0,0 +1,623 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.cache;
+
+import com.worldline.graphql.dynaql.impl.core.utils.Hashes;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the entries on disk, so that a restarted client serves the still usable responses
+ * cached before it stopped.
+ * <p>
+ * Entries and removals are appended to log segments, as records checked by a CRC32. Only an index
+ * of the SHA-256 of the keys and of the record locations stays on the heap: it is rebuilt from the
+ * segments when the store is opened, skipping expired entries and a record truncated by a crash.
+ * Once the segments exceed the maximum size, the usable entries are rewritten into a new segment
+ * and the former ones are deleted, the oldest entries being evicted down to half the maximum size.
+ * <p>
+ * The compacted segment is written to a temporary file, forced to the disk, then renamed. It starts
+ * with a record making the former segments obsolete: a crash before the rename leaves them as they
+ * were, a crash after it never brings back the entries evicted by the compaction. A lock file
+ * prevents two stores, in the same JVM or not, from sharing the directory.
+ * <p>
+ * The keys, which hold the values of the request headers, are only written as their SHA-256, and the
+ * headers carrying credentials (cookies, authorization, API keys) are not written: they are missing
+ * from the entries read back. The bodies are written as they are. On POSIX file systems, the directory
+ * (when the store creates it) and the files are only readable and writable by their owner; elsewhere,
+ * they get the default permissions of the process, and the directory should be made private.
+ */
+public class DiskResponseStore implements ResponseStore, Closeable {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(DiskResponseStore.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final String LOCK_FILE = "store.lock";
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    // First record of a compacted segment: the segments before it are obsolete
+    private static final byte COMPACTED = 3;
+
+    // Record length and CRC32 of the record
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // Response headers never written to the disk, compared ignoring case
+    private static final Set<String> CREDENTIAL_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        CREDENTIAL_HEADERS.addAll(Arrays.asList("Authorization", "Proxy-Authorization", "Cookie", "Set-Cookie", "Set-Cookie2",
+                "X-Api-Key", "X-Auth-Token", "X-Access-Token", "X-Csrf-Token"));
+    }
+
+    private static final class Location {
+        private final long segment;
+        private final long offset;
+        private final int length;
+        private final long staleUntil;
+
+        private Location(long segment, long offset, int length, long staleUntil) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.staleUntil = staleUntil;
+        }
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;
+
+        private Segment(long id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int maxEntries;
+    private final int segmentSize;
+
+    // By SHA-256 of the keys, in insertion order: the first entries are the oldest ones
+    private final Map<String, Location> index = new LinkedHashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    // Owner only, on POSIX file systems
+    private final FileAttribute<?>[] fileAttributes;
+    private final FileAttribute<?>[] directoryAttributes;
+
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private long weight;
+    private long diskBytes;
+    private long evictionCount;
+
+    public DiskResponseStore(Path directory, long maxBytes, int maxEntries) throws IOException {
+        this(directory, maxBytes, maxEntries, (int) Math.min(DEFAULT_SEGMENT_SIZE, maxBytes));
+    }
+
+    public DiskResponseStore(Path directory, long maxBytes, int maxEntries, int segmentSize) throws IOException {
+        if (maxBytes <= 0 || maxEntries <= 0 || segmentSize <= 0) {
+            throw new IllegalArgumentException("Store bounds must be positive: " + maxEntries + " entries, " + maxBytes + " bytes, segments of " + segmentSize);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.segmentSize = segmentSize;
+
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            this.fileAttributes = new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))};
+            this.directoryAttributes = new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"))};
+        } else {
+            this.fileAttributes = new FileAttribute<?>[0];
+            this.directoryAttributes = new FileAttribute<?>[0];
+        }
+
+        Files.createDirectories(directory, directoryAttributes);
+        this.lockChannel = _create(directory.resolve(LOCK_FILE), StandardOpenOption.WRITE);
+        this.lock = _lock(lockChannel, directory);
+        try {
+            _load();
+        } catch (IOException | RuntimeException ex) {
+            _closeSegments();
+            lockChannel.close();
+            throw ex;
+        }
+        log.info("Opened " + this);
+    }
+
+    private static FileLock _lock(FileChannel channel, Path directory) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            // Held by another store of this JVM
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Response store directory already in use: " + directory);
+        }
+        return lock;
+    }
+
+    private void _load() throws IOException {
+        TreeMap<Long, Path> paths = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                try {
+                    paths.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), path);
+                } catch (NumberFormatException ex) {
+                    log.warn("Ignoring " + path + ", not a segment of the response store");
+                }
+            }
+        }
+
+        // Interrupted compactions, the former segments being still complete
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + COMPACTING_SUFFIX)) {
+            for (Path path : files) {
+                log.warn("Deleting " + path + ", left by an interrupted compaction");
+                Files.delete(path);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Path> path : paths.entrySet()) {
+            FileChannel channel = FileChannel.open(path.getValue(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(path.getKey(), path.getValue(), channel, 0);
+            segments.put(segment.id, segment);
+            boolean compacted = _replay(segment);
+            diskBytes += segment.size;
+            if (compacted) {
+                // A crash after the rename of the compacted segment left the former ones behind
+                for (Segment obsolete : new ArrayList<>(segments.headMap(segment.id).values())) {
+                    _delete(obsolete);
+                }
+            }
+        }
+
+        Iterator<Location> locations = index.values().iterator();
+        while (locations.hasNext()) {
+            Location location = locations.next();
+            if (now > location.staleUntil) {
+                weight -= location.length;
+                locations.remove();
+            }
+        }
+
+        // Appending to a new segment, the loaded ones being only read from now on
+        _roll();
+    }
+
+    /*
+        Replays the records of the segment into the index, up to its end or to its first invalid record:
+        the segment is truncated there, the write of that record having been interrupted.
+        True when the segment was written by a compaction.
+    */
+    private boolean _replay(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long offset = 0;
+        boolean compacted = false;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (offset + RECORD_HEADER_SIZE <= fileSize) {
+            header.clear();
+            _readFully(segment.channel, header, offset);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > fileSize) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(length);
+            _readFully(segment.channel, record, offset + RECORD_HEADER_SIZE);
+            if (_crc(record.array()) != crc) {
+                break;
+            }
+            record.flip();
+
+            byte type = record.get();
+            if (type == PUT) {
+                // Written with the hash of its key as key
+                CacheEntry entry = CacheEntry.fromBytes(record);
+                _index(entry.getKey(), new Location(segment.id, offset, RECORD_HEADER_SIZE + length, entry.getStaleUntil()));
+            } else if (type == REMOVE) {
+                _unindex(_string(record));
+            } else if (type == COMPACTED && offset == 0) {
+                // Nothing before this segment is usable anymore
+                index.clear();
+                weight = 0;
+                compacted = true;
+            } else {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+
+        if (offset < fileSize) {
+            log.warn("Truncating " + segment.path + " from " + fileSize + " to " + offset + " bytes: invalid record");
+            segment.channel.truncate(offset);
+        }
+        segment.size = offset;
+        return compacted;
+    }
+
+    @Override
+    public synchronized CacheEntry get(String key) {
+        String hash = _hash(key);
+        Location location = index.get(hash);
+        if (location == null) {
+            return null;
+        }
+
+        try {
+            ByteBuffer record = _read(location);
+            if (record.get() == PUT) {
+                CacheEntry entry = CacheEntry.fromBytes(record);
+                // The record holds the hash of the key, checked against the one looked up
+                if (hash.equals(entry.getKey())) {
+                    return new CacheEntry(key, entry.getExpiresAt(), entry.getStaleUntil(), entry.getHeaders(), entry.getBody());
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Cannot read a cached GraphQL response from " + directory + ": " + ex.getMessage());
+            _unindex(hash);
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void put(CacheEntry entry) {
+        String hash = _hash(entry.getKey());
+        Map<String, String> headers = new LinkedHashMap<>(entry.getHeaders());
+        headers.keySet().removeAll(CREDENTIAL_HEADERS);
+        byte[] entryBytes = new CacheEntry(hash, entry.getExpiresAt(), entry.getStaleUntil(), headers, entry.getBody()).toBytes();
+        byte[] record = new byte[1 + entryBytes.length];
+        record[0] = PUT;
+        System.arraycopy(entryBytes, 0, record, 1, entryBytes.length);
+
+        try {
+            if (RECORD_HEADER_SIZE + record.length > Math.min(segmentSize, maxBytes / 2)) {
+                // Would evict everything else, and still not fit
+                _remove(hash);
+                return;
+            }
+
+            Segment segment = _append(record);
+            _index(hash, new Location(segment.id, segment.size - RECORD_HEADER_SIZE - record.length, RECORD_HEADER_SIZE + record.length, entry.getStaleUntil()));
+
+            while (index.size() > maxEntries) {
+                _evictEldest();
+            }
+            if (diskBytes > maxBytes) {
+                _compact();
+            }
+        } catch (IOException ex) {
+            log.warn("Cannot store a GraphQL response in " + directory + ": " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        try {
+            _remove(_hash(key));
+        } catch (IOException ex) {
+            log.warn("Cannot remove a GraphQL response from " + directory + ": " + ex.getMessage());
+        }
+    }
+
+    /*
+        Removed from the index, and a removal record appended so that the entry does not come back on restart.
+    */
+    private void _remove(String hash) throws IOException {
+        if (_unindex(hash)) {
+            byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(1 + 4 + hashBytes.length);
+            record.put(REMOVE).putInt(hashBytes.length).put(hashBytes);
+            _append(record.array());
+        }
+    }
+
+    private void _evictEldest() throws IOException {
+        _remove(index.keySet().iterator().next());
+        evictionCount++;
+    }
+
+    /*
+        Rewrites the usable entries into a new segment, then deletes the former segments.
+    */
+    private void _compact() throws IOException {
+        long now = System.currentTimeMillis();
+        Iterator<Location> locations = index.values().iterator();
+        while (locations.hasNext()) {
+            Location location = locations.next();
+            if (now > location.staleUntil) {
+                weight -= location.length;
+                locations.remove();
+            }
+        }
+        locations = index.values().iterator();
+        while (weight > maxBytes / 2) {
+            weight -= locations.next().length;
+            locations.remove();
+            evictionCount++;
+        }
+
+        // Written aside, forced, then renamed: the former segments stay usable until the compacted one is complete
+        long id = segments.lastKey() + 1;
+        Path path = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        Path temporary = directory.resolve(SEGMENT_PREFIX + id + COMPACTING_SUFFIX);
+        long[] offsets = new long[index.size()];
+        long size;
+        try (FileChannel channel = _create(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            size = _write(channel, 0, new byte[]{COMPACTED});
+            int i = 0;
+            for (Location location : index.values()) {
+                offsets[i++] = size;
+                size = _write(channel, size, _read(location).array());
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporary);
+            throw ex;
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        _forceDirectory();
+
+        List<Segment> former = new ArrayList<>(segments.values());
+        segments.put(id, new Segment(id, path, FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE), size));
+        diskBytes += size;
+        int i = 0;
+        for (Map.Entry<String, Location> indexEntry : index.entrySet()) {
+            Location location = indexEntry.getValue();
+            indexEntry.setValue(new Location(id, offsets[i++], location.length, location.staleUntil));
+        }
+
+        for (Segment segment : former) {
+            _delete(segment);
+        }
+        log.info("Compacted " + this);
+    }
+
+    private void _delete(Segment segment) throws IOException {
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        segments.remove(segment.id);
+        diskBytes -= segment.size;
+    }
+
+    /*
+        Makes the rename durable. Directories cannot be forced on every platform (e.g. Windows).
+    */
+    private void _forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            log.debug("Cannot force " + directory + ": " + ex.getMessage());
+        }
+    }
+
+    private Segment _append(byte[] record) throws IOException {
+        if (segments.isEmpty()) {
+            throw new IOException("Response store closed");
+        }
+        Segment segment = segments.lastEntry().getValue();
+        if (segment.size > 0 && segment.size + RECORD_HEADER_SIZE + record.length > segmentSize) {
+            segment = _roll();
+        }
+
+        long position = _write(segment.channel, segment.size, record);
+        diskBytes += position - segment.size;
+        segment.size = position;
+        return segment;
+    }
+
+    /*
+        Writes the record, with its header, at the given position: the position following it is returned.
+    */
+    private static long _write(FileChannel channel, long position, byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+        buffer.putInt(record.length).putInt(_crc(record)).put(record);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+
+    private Segment _roll() throws IOException {
+        long id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        Path path = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        FileChannel channel = _create(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Segment segment = new Segment(id, path, channel, 0);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /*
+        Opens the file, creating it with the permissions of the store when it does not exist.
+    */
+    private FileChannel _create(Path path, OpenOption... options) throws IOException {
+        Set<OpenOption> openOptions = new HashSet<>(Arrays.asList(options));
+        openOptions.add(StandardOpenOption.CREATE);
+        return FileChannel.open(path, openOptions, fileAttributes);
+    }
+
+    /*
+        The record at the given location, without its header.
+    */
+    private ByteBuffer _read(Location location) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(location.length - RECORD_HEADER_SIZE);
+        _readFully(segments.get(location.segment).channel, record, location.offset + RECORD_HEADER_SIZE);
+        record.flip();
+        return record;
+    }
+
+    private void _index(String hash, Location location) {
+        _unindex(hash);
+        index.put(hash, location);
+        weight += location.length;
+    }
+
+    private boolean _unindex(String hash) {
+        Location location = index.remove(hash);
+        if (location == null) {
+            return false;
+        }
+        weight -= location.length;
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }
+            segments.clear();
+            index.clear();
+            weight = 0;
+            diskBytes = 0;
+            _roll();
+        } catch (IOException ex) {
+            log.warn("Cannot clear the GraphQL responses of " + directory + ": " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /*
+        Bytes used by the entries on disk, the segments also holding the records of removed and replaced entries.
+    */
+    @Override
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /*
+        Size of the segments, in bytes.
+    */
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /*
+        Forces the segment being appended to the disk, then releases the files and the directory.
+    */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (!segments.isEmpty()) {
+                segments.lastEntry().getValue().channel.force(false);
+            }
+        } finally {
+            _closeSegments();
+            index.clear();
+            if (lockChannel.isOpen()) {
+                lock.release();
+                lockChannel.close();
+            }
+        }
+    }
+
+    private void _closeSegments() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    private static void _readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+            position += read;
+        }
+    }
+
+    private static int _crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    private static String _hash(String key) {
+        return Hashes.toHex(Hashes.sha256(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String _string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "DiskResponseStore{" + "directory=" + directory + ", entries=" + index.size() + ", weight=" + weight
+                + ", diskBytes=" + diskBytes + ", segments=" + segments.size() + '}';
+    }
+}
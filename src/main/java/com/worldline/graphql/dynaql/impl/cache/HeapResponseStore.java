@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the entries on the heap, bounded by their number and their total weight: the least
+ * recently used entries are evicted first. Parsed responses are kept along with their encoding.
+ */
+public class HeapResponseStore implements ResponseStore {
+
+    private final int maxEntries;
+    private final long maxWeight;
+
+    private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long evictionCount;
+
+    public HeapResponseStore(int maxEntries, long maxWeight) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Store bounds must be positive: " + maxEntries + " entries, " + maxWeight + " bytes");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    @Override
+    public synchronized CacheEntry get(String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(CacheEntry entry) {
+        if (entry.getWeight() > maxWeight) {
+            // Would evict everything else, and still not fit
+            remove(entry.getKey());
+            return;
+        }
+
+        CacheEntry previous = entries.put(entry.getKey(), entry);
+        if (previous != null) {
+            weight -= previous.getWeight();
+        }
+        weight += entry.getWeight();
+
+        Iterator<CacheEntry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || weight > maxWeight) {
+            weight -= eldest.next().getWeight();
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        CacheEntry previous = entries.remove(key);
+        if (previous != null) {
+            weight -= previous.getWeight();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the encoded entries out of the heap, in direct buffers (slabs) allocated when first needed:
+ * only a small index stays on the heap, and the responses are parsed again on every read.
+ * <p>
+ * Entries are appended to the current slab. When every slab is full, the oldest one is reused and
+ * its entries are evicted, as are the oldest entries beyond the maximum number of entries. The last
+ * slab is smaller when the maximum size is not a multiple of the slab size, so that no more than the
+ * maximum size is ever allocated.
+ */
+public class OffHeapResponseStore implements ResponseStore {
+
+    public static final int DEFAULT_SLAB_SIZE = 4 << 20;
+
+    private static final class Location {
+        private final int slab;
+        private final int offset;
+        private final int length;
+
+        private Location(int slab, int offset, int length) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final ByteBuffer[] slabs;
+    private final int slabSize;
+    private final int lastSlabSize;
+    private final int maxEntries;
+
+    // In insertion order: the first entries are the oldest ones
+    private final Map<String, Location> index = new LinkedHashMap<>();
+    // The keys stored in each slab, kept in step with the index
+    private final List<Set<String>> slabKeys;
+
+    private int currentSlab;
+    private int position;
+    private long weight;
+    private long evictionCount;
+
+    /*
+        Up to maxBytes of direct memory, in slabs of 4 MB at most.
+    */
+    public OffHeapResponseStore(long maxBytes, int maxEntries) {
+        this(maxBytes, maxEntries, (int) Math.min(DEFAULT_SLAB_SIZE, maxBytes));
+    }
+
+    public OffHeapResponseStore(long maxBytes, int maxEntries, int slabSize) {
+        if (maxBytes <= 0 || maxEntries <= 0 || slabSize <= 0) {
+            throw new IllegalArgumentException("Store bounds must be positive: " + maxEntries + " entries, " + maxBytes + " bytes, slabs of " + slabSize);
+        }
+        long slabCount = (maxBytes + slabSize - 1) / slabSize;
+        if (slabCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many slabs: " + slabCount);
+        }
+
+        this.slabs = new ByteBuffer[(int) slabCount];
+        this.slabSize = slabSize;
+        this.lastSlabSize = (int) (maxBytes - (slabCount - 1) * slabSize);
+        this.maxEntries = maxEntries;
+        this.slabKeys = new ArrayList<>(slabs.length);
+        for (int i = 0; i < slabs.length; i++) {
+            slabKeys.add(new HashSet<>());
+        }
+    }
+
+    @Override
+    public CacheEntry get(String key) {
+        byte[] bytes;
+        synchronized (this) {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            bytes = new byte[location.length];
+            ByteBuffer slab = slabs[location.slab].duplicate();
+            slab.position(location.offset);
+            slab.get(bytes);
+        }
+        // Decoded, and later parsed, out of the lock
+        return CacheEntry.fromBytes(ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public void put(CacheEntry entry) {
+        byte[] bytes = entry.toBytes();
+
+        synchronized (this) {
+            remove(entry.getKey());
+            if (bytes.length > _capacity(0)) {
+                // Larger than a slab: never stored
+                return;
+            }
+
+            // The first slab is never the smaller one: an entry which does not fit in the last one goes there
+            while (position + bytes.length > _capacity(currentSlab)) {
+                currentSlab = (currentSlab + 1) % slabs.length;
+                position = 0;
+                _evictSlab(currentSlab);
+            }
+            if (slabs[currentSlab] == null) {
+                slabs[currentSlab] = ByteBuffer.allocateDirect(_capacity(currentSlab));
+            }
+
+            ByteBuffer slab = slabs[currentSlab].duplicate();
+            slab.position(position);
+            slab.put(bytes);
+
+            index.put(entry.getKey(), new Location(currentSlab, position, bytes.length));
+            slabKeys.get(currentSlab).add(entry.getKey());
+            position += bytes.length;
+            weight += bytes.length;
+
+            Iterator<Map.Entry<String, Location>> eldest = index.entrySet().iterator();
+            while (index.size() > maxEntries) {
+                Map.Entry<String, Location> evicted = eldest.next();
+                _forget(evicted.getKey(), evicted.getValue());
+                eldest.remove();
+                evictionCount++;
+            }
+        }
+    }
+
+    private int _capacity(int slab) {
+        return slab == slabs.length - 1 ? lastSlabSize : slabSize;
+    }
+
+    /*
+        The slab is about to be overwritten: the entries still stored in it are evicted.
+    */
+    private void _evictSlab(int slab) {
+        Set<String> keys = slabKeys.get(slab);
+        for (String key : keys) {
+            weight -= index.remove(key).length;
+            evictionCount++;
+        }
+        keys.clear();
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        Location location = index.remove(key);
+        if (location != null) {
+            _forget(key, location);
+        }
+    }
+
+    /*
+        The entry left the index: its bytes no longer count, and its slab no longer holds it.
+    */
+    private void _forget(String key, Location location) {
+        weight -= location.length;
+        slabKeys.get(location.slab).remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        index.clear();
+        for (Set<String> keys : slabKeys) {
+            keys.clear();
+        }
+        currentSlab = 0;
+        position = 0;
+        weight = 0;
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /*
+        Bytes used by the entries, the direct memory allocated being at most maxBytes, see getAllocatedBytes().
+    */
+    @Override
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /*
+        Direct memory allocated so far, in bytes.
+    */
+    public synchronized long getAllocatedBytes() {
+        long allocated = 0;
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) {
+                allocated += slab.capacity();
+            }
+        }
+        return allocated;
+    }
+}
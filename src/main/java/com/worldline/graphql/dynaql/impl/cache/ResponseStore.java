@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.cache;
+
+/**
+ * Where a response cache keeps its entries. Implementations are bounded, thread-safe,
+ * and evict entries by themselves when they are full.
+ */
+public interface ResponseStore {
+
+    /*
+        The entry of the given key, null when there is none (expired entries may still be returned).
+    */
+    CacheEntry get(String key);
+
+    void put(CacheEntry entry);
+
+    void remove(String key);
+
+    void clear();
+
+    /*
+        Number of entries.
+    */
+    int size();
+
+    /*
+        Sum of the weights of the entries, in bytes.
+    */
+    long getWeight();
+
+    /*
+        Number of entries evicted to make room for new ones since the creation of the store.
+    */
+    long getEvictionCount();
+}
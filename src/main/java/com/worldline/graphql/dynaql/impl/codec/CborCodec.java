@@ -0,0 +1,81 @@
+package com.worldline.graphql.dynaql.impl.codec;
+
+import com.worldline.graphql.dynaql.impl.DynaQLPreparedDocument;
+import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import com.worldline.graphql.dynaql.impl.json.JsonValueWriter;
+import org.eclipse.microprofile.graphql.client.Request;
+
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * CBOR (RFC 8949): the same request and response members as the JSON format, in a compact binary form
+ * which is both smaller and cheaper to parse than JSON text.
+ */
+public class CborCodec implements GraphQLCodec {
+
+    public static final String MEDIA_TYPE = "application/cbor";
+
+    @Override
+    public String getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public void writeRequest(Request request, boolean withQuery, boolean withPersistedQuery, OutputStream out) throws IOException {
+        if (!withQuery && !withPersistedQuery) {
+            throw new IllegalArgumentException("A request needs either its query or its persisted query hash");
+        }
+
+        CborGenerator generator = new CborGenerator(out);
+        try {
+            generator.writeStartObject();
+            if (withQuery) {
+                generator.write("query", request.getDocument());
+            }
+            if (withPersistedQuery) {
+                String hash = request instanceof DynaQLRequest
+                        ? ((DynaQLRequest) request).getPreparedDocument().getSha256Hex()
+                        : DynaQLPreparedDocument.of(request.getDocument()).getSha256Hex();
+                generator.writeStartObject("extensions")
+                        .writeStartObject("persistedQuery")
+                        .write("version", 1)
+                        .write("sha256Hash", hash)
+                        .writeEnd()
+                        .writeEnd();
+            }
+            if (request instanceof DynaQLRequest && ((DynaQLRequest) request).getOperationName() != null) {
+                generator.write("operationName", ((DynaQLRequest) request).getOperationName());
+            }
+            if (request.getVariables() != null && !request.getVariables().isEmpty()) {
+                generator.writeKey("variables");
+                JsonValueWriter.writeObject(generator, request.getVariables());
+            }
+            generator.writeEnd();
+            // Flushed but not closed: the stream belongs to the caller
+            generator.flush();
+        } catch (JsonException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public DynaQLResponse readResponse(InputStream in, Charset charset) throws IOException {
+        JsonValue value;
+        try {
+            value = new CborReader(in).read();
+        } catch (JsonException | ArithmeticException | NumberFormatException ex) {
+            throw new IOException("Invalid GraphQL response", ex);
+        }
+        if (value.getValueType() != JsonValue.ValueType.OBJECT) {
+            throw new IOException("Invalid GraphQL response: " + value.getValueType() + " instead of an object");
+        }
+        return GraphQLCodecs.toResponse((JsonObject) value);
+    }
+}
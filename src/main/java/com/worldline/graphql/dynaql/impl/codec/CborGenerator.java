@@ -0,0 +1,343 @@
+package com.worldline.graphql.dynaql.impl.codec;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * A {@link JsonGenerator} writing CBOR (RFC 8949) instead of JSON text, so that any value
+ * {@link com.worldline.graphql.dynaql.impl.json.JsonValueWriter} can write is also available in CBOR.
+ * <p>
+ * Objects and arrays are written with indefinite lengths, closed by a break byte on {@link #writeEnd()}.
+ * Integers use the shortest encoding, doubles are written as float32 when no precision is lost.
+ */
+final class CborGenerator implements JsonGenerator {
+
+    static final int MAJOR_UNSIGNED = 0;
+    static final int MAJOR_NEGATIVE = 1;
+    static final int MAJOR_BYTES = 2;
+    static final int MAJOR_TEXT = 3;
+    static final int MAJOR_ARRAY = 4;
+    static final int MAJOR_MAP = 5;
+    static final int MAJOR_TAG = 6;
+
+    static final int TAG_POSITIVE_BIGNUM = 2;
+    static final int TAG_NEGATIVE_BIGNUM = 3;
+    static final int TAG_DECIMAL_FRACTION = 4;
+
+    static final int FALSE = 0xf4;
+    static final int TRUE = 0xf5;
+    static final int NULL = 0xf6;
+    static final int FLOAT32 = 0xfa;
+    static final int FLOAT64 = 0xfb;
+    static final int BREAK = 0xff;
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+
+    CborGenerator(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public JsonGenerator writeStartObject() {
+        _writeByte(MAJOR_MAP << 5 | 31);
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeStartObject(String name) {
+        return writeKey(name).writeStartObject();
+    }
+
+    @Override
+    public JsonGenerator writeKey(String name) {
+        _writeText(name);
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeStartArray() {
+        _writeByte(MAJOR_ARRAY << 5 | 31);
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeStartArray(String name) {
+        return writeKey(name).writeStartArray();
+    }
+
+    @Override
+    public JsonGenerator write(String name, JsonValue value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, String value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, BigInteger value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, BigDecimal value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, int value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, long value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, double value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, boolean value) {
+        return writeKey(name).write(value);
+    }
+
+    @Override
+    public JsonGenerator writeNull(String name) {
+        return writeKey(name).writeNull();
+    }
+
+    @Override
+    public JsonGenerator writeEnd() {
+        _writeByte(BREAK);
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(JsonValue value) {
+        switch (value.getValueType()) {
+            case OBJECT:
+                JsonObject object = (JsonObject) value;
+                _writeHead(MAJOR_MAP, object.size());
+                for (Map.Entry<String, JsonValue> entry : object.entrySet()) {
+                    _writeText(entry.getKey());
+                    write(entry.getValue());
+                }
+                break;
+            case ARRAY:
+                JsonArray array = (JsonArray) value;
+                _writeHead(MAJOR_ARRAY, array.size());
+                for (JsonValue item : array) {
+                    write(item);
+                }
+                break;
+            case STRING:
+                _writeText(((JsonString) value).getString());
+                break;
+            case NUMBER:
+                JsonNumber number = (JsonNumber) value;
+                if (number.isIntegral()) {
+                    write(number.bigIntegerValue());
+                } else {
+                    write(number.bigDecimalValue());
+                }
+                break;
+            case TRUE:
+                _writeByte(TRUE);
+                break;
+            case FALSE:
+                _writeByte(FALSE);
+                break;
+            default:
+                _writeByte(NULL);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(String value) {
+        _writeText(value);
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(BigDecimal value) {
+        BigDecimal stripped = value.signum() == 0 ? BigDecimal.ZERO : value.stripTrailingZeros();
+        if (stripped.scale() <= 0) {
+            return write(stripped.toBigIntegerExact());
+        }
+        // Decimal fraction: [exponent, mantissa], exact like the JSON text
+        _writeHead(MAJOR_TAG, TAG_DECIMAL_FRACTION);
+        _writeHead(MAJOR_ARRAY, 2);
+        write(-(long) stripped.scale());
+        write(stripped.unscaledValue());
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(BigInteger value) {
+        if (value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0) {
+            return write(value.longValue());
+        }
+        byte[] magnitude;
+        if (value.signum() >= 0) {
+            _writeHead(MAJOR_TAG, TAG_POSITIVE_BIGNUM);
+            magnitude = value.toByteArray();
+        } else {
+            _writeHead(MAJOR_TAG, TAG_NEGATIVE_BIGNUM);
+            magnitude = value.negate().subtract(BigInteger.ONE).toByteArray();
+        }
+        int offset = magnitude[0] == 0 ? 1 : 0;
+        _writeHead(MAJOR_BYTES, magnitude.length - offset);
+        _writeBytes(magnitude, offset, magnitude.length - offset);
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(int value) {
+        return write((long) value);
+    }
+
+    @Override
+    public JsonGenerator write(long value) {
+        if (value >= 0) {
+            _writeHead(MAJOR_UNSIGNED, value);
+        } else {
+            _writeHead(MAJOR_NEGATIVE, -1 - value);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(double value) {
+        float f = (float) value;
+        if (f == value) {
+            _writeByte(FLOAT32);
+            _writeInt(Float.floatToIntBits(f));
+        } else {
+            _writeByte(FLOAT64);
+            long bits = Double.doubleToLongBits(value);
+            _writeInt((int) (bits >>> 32));
+            _writeInt((int) bits);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(boolean value) {
+        _writeByte(value ? TRUE : FALSE);
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeNull() {
+        _writeByte(NULL);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            out.close();
+        } catch (IOException ex) {
+            throw new JsonException("Cannot close the CBOR output", ex);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        } catch (IOException ex) {
+            throw new JsonException("Cannot write the CBOR output", ex);
+        }
+    }
+
+    private void _writeHead(int major, long value) {
+        int type = major << 5;
+        if (value < 24) {
+            _writeByte(type | (int) value);
+        } else if (value < 0x100) {
+            _writeByte(type | 24);
+            _writeByte((int) value);
+        } else if (value < 0x10000) {
+            _writeByte(type | 25);
+            _writeByte((int) (value >> 8));
+            _writeByte((int) value);
+        } else if (value < 0x100000000L) {
+            _writeByte(type | 26);
+            _writeInt((int) value);
+        } else {
+            _writeByte(type | 27);
+            _writeInt((int) (value >>> 32));
+            _writeInt((int) value);
+        }
+    }
+
+    private void _writeText(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        _writeHead(MAJOR_TEXT, bytes.length);
+        _writeBytes(bytes, 0, bytes.length);
+    }
+
+    private void _writeInt(int value) {
+        _writeByte(value >>> 24);
+        _writeByte(value >>> 16);
+        _writeByte(value >>> 8);
+        _writeByte(value);
+    }
+
+    private void _writeByte(int b) {
+        if (position == buffer.length) {
+            _drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void _writeBytes(byte[] bytes, int offset, int length) {
+        if (length > buffer.length - position) {
+            _drain();
+            if (length > buffer.length) {
+                _writeThrough(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void _drain() {
+        _writeThrough(buffer, 0, position);
+        position = 0;
+    }
+
+    private void _writeThrough(byte[] bytes, int offset, int length) {
+        try {
+            out.write(bytes, offset, length);
+        } catch (IOException ex) {
+            throw new JsonException("Cannot write the CBOR output", ex);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.worldline.graphql.dynaql.impl.codec;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.BREAK;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.MAJOR_ARRAY;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.MAJOR_BYTES;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.MAJOR_MAP;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.MAJOR_NEGATIVE;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.MAJOR_TAG;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.MAJOR_TEXT;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.MAJOR_UNSIGNED;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.TAG_DECIMAL_FRACTION;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.TAG_NEGATIVE_BIGNUM;
+import static com.worldline.graphql.dynaql.impl.codec.CborGenerator.TAG_POSITIVE_BIGNUM;
+
+/**
+ * Reads a CBOR (RFC 8949) data item into the JSON-P model.
+ * <p>
+ * Byte strings become base64 strings, undefined becomes null, map keys which are not text are converted to text.
+ * Bignums and decimal fractions are read as exact numbers, other tags are ignored.
+ */
+final class CborReader {
+
+    private static final JsonBuilderFactory BUILDER_FACTORY = Json.createBuilderFactory(null);
+
+    private static final int MAX_DEPTH = 512;
+
+    // Strings longer than that are read chunk by chunk
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    CborReader(InputStream in) {
+        this.in = in;
+    }
+
+    JsonValue read() throws IOException {
+        int initial = _readByte();
+        if (initial == BREAK) {
+            throw new IOException("Unexpected CBOR break");
+        }
+        return _readItem(initial, 0);
+    }
+
+    private JsonValue _readItem(int initial, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("CBOR nesting too deep");
+        }
+
+        int major = initial >>> 5;
+        int info = initial & 0x1f;
+
+        switch (major) {
+            case MAJOR_UNSIGNED: {
+                long value = _readArgument(info);
+                return value >= 0 ? Json.createValue(value) : Json.createValue(_unsigned(value));
+            }
+            case MAJOR_NEGATIVE: {
+                long value = _readArgument(info);
+                return value >= 0 ? Json.createValue(-1 - value) : Json.createValue(_unsigned(value).add(BigInteger.ONE).negate());
+            }
+            case MAJOR_BYTES:
+                return Json.createValue(Base64.getEncoder().encodeToString(_readString(MAJOR_BYTES, info)));
+            case MAJOR_TEXT:
+                return Json.createValue(new String(_readString(MAJOR_TEXT, info), StandardCharsets.UTF_8));
+            case MAJOR_ARRAY: {
+                JsonArrayBuilder array = BUILDER_FACTORY.createArrayBuilder();
+                if (info == 31) {
+                    for (int b = _readByte(); b != BREAK; b = _readByte()) {
+                        array.add(_readItem(b, depth + 1));
+                    }
+                } else {
+                    for (long i = _readArgument(info); i > 0; i--) {
+                        array.add(_readItem(_readByte(), depth + 1));
+                    }
+                }
+                return array.build();
+            }
+            case MAJOR_MAP: {
+                JsonObjectBuilder object = BUILDER_FACTORY.createObjectBuilder();
+                if (info == 31) {
+                    for (int b = _readByte(); b != BREAK; b = _readByte()) {
+                        object.add(_key(_readItem(b, depth + 1)), _readItem(_readByte(), depth + 1));
+                    }
+                } else {
+                    for (long i = _readArgument(info); i > 0; i--) {
+                        object.add(_key(_readItem(_readByte(), depth + 1)), _readItem(_readByte(), depth + 1));
+                    }
+                }
+                return object.build();
+            }
+            case MAJOR_TAG:
+                return _readTagged(_readArgument(info), depth);
+            default:
+                return _readSimple(info);
+        }
+    }
+
+    private JsonValue _readTagged(long tag, int depth) throws IOException {
+        JsonValue content = _readItem(_readByte(), depth + 1);
+        if ((tag == TAG_POSITIVE_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) && content instanceof JsonString) {
+            BigInteger magnitude = new BigInteger(1, Base64.getDecoder().decode(((JsonString) content).getString()));
+            return Json.createValue(tag == TAG_POSITIVE_BIGNUM ? magnitude : magnitude.add(BigInteger.ONE).negate());
+        }
+        if (tag == TAG_DECIMAL_FRACTION && content.getValueType() == JsonValue.ValueType.ARRAY && content.asJsonArray().size() == 2) {
+            int exponent = content.asJsonArray().getJsonNumber(0).intValueExact();
+            BigInteger mantissa = content.asJsonArray().getJsonNumber(1).bigIntegerValueExact();
+            return Json.createValue(new BigDecimal(mantissa, -exponent));
+        }
+        return content;
+    }
+
+    private JsonValue _readSimple(int info) throws IOException {
+        switch (info) {
+            case 20:
+                return JsonValue.FALSE;
+            case 21:
+                return JsonValue.TRUE;
+            case 22:
+            case 23:
+                return JsonValue.NULL;
+            case 25:
+                return Json.createValue(_halfToFloat((_readByte() << 8) | _readByte()));
+            case 26:
+                return Json.createValue(Float.intBitsToFloat(_readInt()));
+            case 27:
+                return Json.createValue(Double.longBitsToDouble(((long) _readInt() << 32) | (_readInt() & 0xffffffffL)));
+            default:
+                throw new IOException("Unsupported CBOR simple value " + info);
+        }
+    }
+
+    private byte[] _readString(int major, int info) throws IOException {
+        if (info != 31) {
+            long length = _readArgument(info);
+            if (length < 0 || length > Integer.MAX_VALUE - 8) {
+                throw new IOException("CBOR string too long");
+            }
+            return _readFully((int) length);
+        }
+
+        // Indefinite length: definite chunks of the same major type until the break
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        for (int b = _readByte(); b != BREAK; b = _readByte()) {
+            if (b >>> 5 != major || (b & 0x1f) == 31) {
+                throw new IOException("Invalid CBOR string chunk");
+            }
+            byte[] chunk = _readString(major, b & 0x1f);
+            chunks.write(chunk, 0, chunk.length);
+        }
+        return chunks.toByteArray();
+    }
+
+    private long _readArgument(int info) throws IOException {
+        if (info < 24) {
+            return info;
+        }
+        switch (info) {
+            case 24:
+                return _readByte();
+            case 25:
+                return (_readByte() << 8) | _readByte();
+            case 26:
+                return _readInt() & 0xffffffffL;
+            case 27:
+                // May be negative once in a long: unsigned 64-bit values are handled by the callers
+                return ((long) _readInt() << 32) | (_readInt() & 0xffffffffL);
+            default:
+                throw new IOException("Invalid CBOR additional information " + info);
+        }
+    }
+
+    private int _readInt() throws IOException {
+        return (_readByte() << 24) | (_readByte() << 16) | (_readByte() << 8) | _readByte();
+    }
+
+    private int _readByte() throws IOException {
+        if (position == limit) {
+            _fill();
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    /*
+        The length comes from the input: a long string is only allocated as its bytes arrive, so that a truncated or
+        hostile input claiming gigabytes fails at its end instead of allocating them upfront.
+    */
+    private byte[] _readFully(int length) throws IOException {
+        if (length <= CHUNK_SIZE) {
+            byte[] bytes = new byte[length];
+            _readFully(bytes, length);
+            return bytes;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(CHUNK_SIZE);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        for (int remaining = length; remaining > 0; remaining -= CHUNK_SIZE) {
+            int size = Math.min(remaining, CHUNK_SIZE);
+            _readFully(chunk, size);
+            out.write(chunk, 0, size);
+        }
+        return out.toByteArray();
+    }
+
+    private void _readFully(byte[] bytes, int length) throws IOException {
+        int copied = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, bytes, 0, copied);
+        position += copied;
+        while (copied < length) {
+            int read = in.read(bytes, copied, length - copied);
+            if (read < 0) {
+                throw new EOFException("Truncated CBOR input");
+            }
+            copied += read;
+        }
+    }
+
+    private void _fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            throw new EOFException("Truncated CBOR input");
+        }
+        position = 0;
+        limit = read;
+    }
+
+    private static String _key(JsonValue key) {
+        return key instanceof JsonString ? ((JsonString) key).getString() : key.toString();
+    }
+
+    private static BigInteger _unsigned(long value) {
+        return BigInteger.valueOf(value >>> 1).shiftLeft(1).or(BigInteger.valueOf(value & 1));
+    }
+
+    private static double _halfToFloat(int half) {
+        int exponent = (half >> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+        double value;
+        if (exponent == 0) {
+            value = Math.scalb((double) mantissa, -24);
+        } else if (exponent != 31) {
+            value = Math.scalb((double) (mantissa + 1024), exponent - 25);
+        } else {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+}
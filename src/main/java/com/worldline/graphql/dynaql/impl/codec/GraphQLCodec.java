@@ -0,0 +1,52 @@
+package com.worldline.graphql.dynaql.impl.codec;
+
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import org.eclipse.microprofile.graphql.client.Request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+
+/**
+ * Wire format of GraphQL requests and responses, selected by media type.
+ * <p>
+ * Implementations are discovered with {@link java.util.ServiceLoader}, see {@link GraphQLCodecs}.
+ */
+public interface GraphQLCodec {
+
+    /*
+        The media type handled by this codec, without parameter, e.g. "application/json".
+    */
+    String getMediaType();
+
+    /*
+        The Content-Type header of the encoded requests.
+    */
+    default String getContentType() {
+        return getMediaType();
+    }
+
+    /*
+        Writes the request: its document and/or the SHA-256 hash of the document (Automatic Persisted Queries),
+        its operation name and its variables.
+    */
+    void writeRequest(Request request, boolean withQuery, boolean withPersistedQuery, OutputStream out) throws IOException;
+
+    default byte[] encodeRequest(Request request, boolean withQuery, boolean withPersistedQuery) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        try {
+            writeRequest(request, withQuery, withPersistedQuery, out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /*
+        Reads a response, the charset being the one of the Content-Type header if any (text formats only).
+    */
+    DynaQLResponse readResponse(InputStream in, Charset charset) throws IOException;
+}
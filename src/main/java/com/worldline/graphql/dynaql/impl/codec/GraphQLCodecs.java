@@ -0,0 +1,181 @@
+package com.worldline.graphql.dynaql.impl.codec;
+
+import com.worldline.graphql.dynaql.impl.DynaQLError;
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import org.eclipse.microprofile.graphql.client.Error;
+import org.slf4j.LoggerFactory;
+
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The codecs registered as {@code META-INF/services/com.worldline.graphql.dynaql.impl.codec.GraphQLCodec},
+ * and the mapping of a decoded response to a {@link DynaQLResponse}, shared by all the codecs.
+ */
+public final class GraphQLCodecs {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(GraphQLCodecs.class);
+
+    private static final List<GraphQLCodec> CODECS;
+    private static final GraphQLCodec JSON;
+
+    static {
+        List<GraphQLCodec> codecs = new ArrayList<>();
+        for (GraphQLCodec codec : ServiceLoader.load(GraphQLCodec.class, GraphQLCodecs.class.getClassLoader())) {
+            codecs.add(codec);
+        }
+        GraphQLCodec json = null;
+        for (GraphQLCodec codec : codecs) {
+            if (JsonCodec.MEDIA_TYPE.equals(codec.getMediaType())) {
+                json = codec;
+                break;
+            }
+        }
+        if (json == null) {
+            json = new JsonCodec();
+            codecs.add(0, json);
+        }
+        CODECS = Collections.unmodifiableList(codecs);
+        JSON = json;
+    }
+
+    public static List<GraphQLCodec> getCodecs() {
+        return CODECS;
+    }
+
+    public static GraphQLCodec json() {
+        return JSON;
+    }
+
+    /*
+        The codec of a media type or a Content-Type header (parameters are ignored), null if none.
+    */
+    public static GraphQLCodec forMediaType(String mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        int end = mediaType.indexOf(';');
+        String type = (end < 0 ? mediaType : mediaType.substring(0, end)).trim().toLowerCase(Locale.ROOT);
+        for (GraphQLCodec codec : CODECS) {
+            if (codec.getMediaType().equals(type)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /*
+        Accept header value preferring the given codec, JSON remaining acceptable as a fallback.
+    */
+    public static String accept(GraphQLCodec preferred) {
+        if (preferred == JSON) {
+            return JSON.getMediaType();
+        }
+        return preferred.getMediaType() + ", " + JSON.getMediaType() + ";q=0.9";
+    }
+
+    public static DynaQLResponse toResponse(JsonObject jsonResponse) {
+        JsonObject data = null;
+        if (jsonResponse.containsKey("data")) {
+            if (!jsonResponse.isNull("data")) {
+                data = jsonResponse.getJsonObject("data");
+            } else {
+                log.warn("GraphQL data element is null");
+            }
+        }
+
+        List<Error> errors = null;
+        if (jsonResponse.containsKey("errors") && !jsonResponse.isNull("errors")) {
+            log.warn("GraphQL errors element detected");
+            JsonArray rawErrors = jsonResponse.getJsonArray("errors");
+            errors = new ArrayList<>(rawErrors.size());
+            for (JsonValue rawError : rawErrors) {
+                errors.add(_toError((JsonObject) rawError));
+            }
+        }
+
+        return new DynaQLResponse(data, errors);
+    }
+
+    /*
+        Mapped by hand: creating a Jsonb instance for each response costs far more than the mapping itself.
+    */
+    private static DynaQLError _toError(JsonObject rawError) {
+        DynaQLError error = new DynaQLError();
+        error.setMessage(rawError.getString("message", null));
+
+        JsonValue locations = rawError.get("locations");
+        if (locations instanceof JsonArray) {
+            List<Map<String, Integer>> list = new ArrayList<>();
+            for (JsonValue location : (JsonArray) locations) {
+                Map<String, Integer> map = new LinkedHashMap<>();
+                ((JsonObject) location).forEach((k, v) -> {
+                    if (v instanceof JsonNumber) {
+                        map.put(k, ((JsonNumber) v).intValue());
+                    }
+                });
+                list.add(map);
+            }
+            error.setLocations(list);
+        }
+
+        JsonValue path = rawError.get("path");
+        if (path instanceof JsonArray) {
+            JsonArray array = (JsonArray) path;
+            Object[] elements = new Object[array.size()];
+            for (int i = 0; i < elements.length; i++) {
+                JsonValue element = array.get(i);
+                elements[i] = element instanceof JsonNumber ? (Object) ((JsonNumber) element).intValue() : _toJava(element);
+            }
+            error.setPath(elements);
+        }
+
+        JsonValue extensions = rawError.get("extensions");
+        if (extensions instanceof JsonObject) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) _toJava(extensions);
+            error.setExtensions(map);
+        }
+
+        return error;
+    }
+
+    private static Object _toJava(JsonValue value) {
+        switch (value.getValueType()) {
+            case OBJECT:
+                Map<String, Object> map = new LinkedHashMap<>();
+                ((JsonObject) value).forEach((k, v) -> map.put(k, _toJava(v)));
+                return map;
+            case ARRAY:
+                List<Object> list = new ArrayList<>();
+                for (JsonValue item : (JsonArray) value) {
+                    list.add(_toJava(item));
+                }
+                return list;
+            case STRING:
+                return ((JsonString) value).getString();
+            case NUMBER:
+                return ((JsonNumber) value).bigDecimalValue();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    private GraphQLCodecs() {
+        // HideUtilityClassConstructor
+    }
+}
@@ -0,0 +1,68 @@
+package com.worldline.graphql.dynaql.impl.codec;
+
+import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import org.eclipse.microprofile.graphql.client.Request;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The standard GraphQL over HTTP format: requests written by {@link DynaQLRequest#writeJson}, responses read by JSON-P.
+ */
+public class JsonCodec implements GraphQLCodec {
+
+    public static final String MEDIA_TYPE = "application/json";
+
+    private static final JsonReaderFactory READER_FACTORY = Json.createReaderFactory(null);
+
+    @Override
+    public String getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public String getContentType() {
+        return MEDIA_TYPE + "; charset=UTF-8";
+    }
+
+    @Override
+    public void writeRequest(Request request, boolean withQuery, boolean withPersistedQuery, OutputStream out) throws IOException {
+        if (request instanceof DynaQLRequest) {
+            ((DynaQLRequest) request).writeJson(out, withQuery, withPersistedQuery);
+        } else {
+            out.write(request.toJson().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public byte[] encodeRequest(Request request, boolean withQuery, boolean withPersistedQuery) {
+        if (request instanceof DynaQLRequest) {
+            // Sized from the pre-encoded prefix of the request
+            return ((DynaQLRequest) request).toJsonBytes(withQuery, withPersistedQuery);
+        }
+        return request.toJson().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public DynaQLResponse readResponse(InputStream in, Charset charset) throws IOException {
+        // Without an explicit charset, the parser detects the UTF encoding of the stream itself
+        // The reader is not closed: the stream belongs to the caller
+        JsonReader jsonReader = charset == null
+                ? READER_FACTORY.createReader(in)
+                : READER_FACTORY.createReader(new InputStreamReader(in, charset));
+        try {
+            return GraphQLCodecs.toResponse(jsonReader.readObject());
+        } catch (JsonException ex) {
+            throw new IOException("Invalid GraphQL response", ex);
+        }
+    }
+}
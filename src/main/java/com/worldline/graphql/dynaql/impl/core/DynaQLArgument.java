@@ -6,11 +6,13 @@ public class DynaQLArgument extends AbstractArgument {
     @Override
     public String build() {
         StringBuilder builder = new StringBuilder();
+        buildTo(builder);
+        return builder.toString();
+    }
 
+    public void buildTo(StringBuilder builder) {
         builder.append(this.getName());
         builder.append(":");
-        builder.append(format(this.getValue()));
-
-        return builder.toString();
+        format(this.getValue(), builder);
     }
 }
@@ -4,14 +4,18 @@ import org.eclipse.microprofile.graphql.client.core.Operation;
 
 public class DynaQLDocument extends AbstractDocument {
     @Override
-    // TODO: use StringJoiner
     public String build() {
         StringBuilder builder = new StringBuilder();
+        buildTo(builder);
+        return builder.toString();
+    }
 
+    /*
+        Single-pass serialization: every component of the tree writes into the same builder.
+    */
+    public void buildTo(StringBuilder builder) {
         for (Operation operation : this.getOperations()) {
-            builder.append(operation.build());
+            ((DynaQLOperation) operation).buildTo(builder);
         }
-
-        return builder.toString();
     }
 }
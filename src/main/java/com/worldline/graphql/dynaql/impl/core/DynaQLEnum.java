@@ -5,4 +5,8 @@ public class DynaQLEnum extends AbstractEnum {
     public String build() {
         return this.getValue();
     }
+
+    public void buildTo(StringBuilder builder) {
+        builder.append(this.getValue());
+    }
 }
@@ -1,59 +1,53 @@
 package com.worldline.graphql.dynaql.impl.core;
 
+import org.eclipse.microprofile.graphql.client.core.Argument;
+import org.eclipse.microprofile.graphql.client.core.Field;
+
+import java.util.List;
+
 public class DynaQLField extends AbstractField {
-    // TODO: Use StringJoiner
     @Override
     public String build() {
         StringBuilder builder = new StringBuilder();
+        buildTo(builder);
+        return builder.toString();
+    }
 
+    public void buildTo(StringBuilder builder) {
         builder.append(this.getName());
 
         // Arguments to build ?
         if (!this.getArguments().isEmpty()) {
             builder.append("(");
-            builder.append(_buildArgs());
+            _buildArgs(builder);
             builder.append(")");
         }
 
         // Sub-fields to build ?
         if (!this.getFields().isEmpty()) {
             builder.append("{");
-            builder.append(_buildFields());
+            _buildFields(builder);
             builder.append("}");
         }
-
-        return builder.toString();
     }
 
-    // TODO: Use StringJoiner  or Stream + Collectors.joining (https://www.baeldung.com/java-strings-concatenation)
-    private String _buildArgs() {
-        StringBuilder builder = new StringBuilder();
-
-        DynaQLArgument[] arguments = this.getArguments().toArray(new DynaQLArgument[0]);
-        for (int i = 0; i < arguments.length; i++) {
-            DynaQLArgument argument = arguments[i];
-            builder.append(argument.build());
-            if (i < arguments.length - 1) {
+    private void _buildArgs(StringBuilder builder) {
+        List<Argument> arguments = this.getArguments();
+        for (int i = 0; i < arguments.size(); i++) {
+            if (i > 0) {
                 builder.append(", ");
             }
+            ((DynaQLArgument) arguments.get(i)).buildTo(builder);
         }
-
-        return builder.toString();
     }
 
-    // TODO: Use StringJoiner  or Stream + Collectors.joining (https://www.baeldung.com/java-strings-concatenation)
-    private String _buildFields() {
-        StringBuilder builder = new StringBuilder();
-
-        DynaQLField[] fields = this.getFields().toArray(new DynaQLField[0]);
-        for (int i = 0; i < fields.length; i++) {
-            DynaQLField field = fields[i];
-            builder.append(field.build());
-            if (i < fields.length - 1) {
+    private void _buildFields(StringBuilder builder) {
+        List<Field> fields = this.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
                 builder.append(" ");
             }
+            ((DynaQLField) fields.get(i)).buildTo(builder);
         }
-
-        return builder.toString();
     }
 }
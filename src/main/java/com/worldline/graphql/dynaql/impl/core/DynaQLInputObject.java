@@ -1,22 +1,26 @@
 package com.worldline.graphql.dynaql.impl.core;
 
+import org.eclipse.microprofile.graphql.client.core.InputObjectField;
+
+import java.util.List;
+
 public class DynaQLInputObject extends AbstractInputObject {
-    // TODO: Use StringJoiner  or Stream + Collectors.joining (https://www.baeldung.com/java-strings-concatenation)
     @Override
     public String build() {
         StringBuilder builder = new StringBuilder();
+        buildTo(builder);
+        return builder.toString();
+    }
 
+    public void buildTo(StringBuilder builder) {
         builder.append("{");
-        DynaQLInputObjectField[] inputObjectFields = this.getInputObjectFields().toArray(new DynaQLInputObjectField[0]);
-        for (int i = 0; i < inputObjectFields.length; i++) {
-            DynaQLInputObjectField inputObjectField = inputObjectFields[i];
-            builder.append(inputObjectField.build());
-            if (i < inputObjectFields.length - 1) {
+        List<InputObjectField> inputObjectFields = this.getInputObjectFields();
+        for (int i = 0; i < inputObjectFields.size(); i++) {
+            if (i > 0) {
                 builder.append(" ");
             }
+            ((DynaQLInputObjectField) inputObjectFields.get(i)).buildTo(builder);
         }
         builder.append("}");
-
-        return builder.toString();
     }
 }
@@ -1,14 +1,21 @@
 package com.worldline.graphql.dynaql.impl.core;
 
 
+import org.eclipse.microprofile.graphql.client.core.Field;
+import org.eclipse.microprofile.graphql.client.core.Variable;
 import org.eclipse.microprofile.graphql.client.core.exceptions.BuildException;
 
+import java.util.List;
+
 public class DynaQLOperation extends AbstractOperation {
-    // TODO: Use simple StringJoiner
     @Override
     public String build() {
         StringBuilder builder = new StringBuilder();
+        buildTo(builder);
+        return builder.toString();
+    }
 
+    public void buildTo(StringBuilder builder) {
         switch (this.getType()) {
             case QUERY:
                 builder.append("query");
@@ -32,37 +39,31 @@ public class DynaQLOperation extends AbstractOperation {
         } else {
             throw new BuildException("An operation must have at least one root field.");
         }
-
-        return builder.toString();
     }
 
-    // TODO: Use StringJoiner  or Stream + Collectors.joining (https://www.baeldung.com/java-strings-concatenation)
     private void _buildVariables(StringBuilder builder) {
         builder.append("(");
 
-        DynaQLVariable[] vars = this.getVariables().toArray(new DynaQLVariable[0]);
-        for (int i = 0; i < vars.length; i++) {
-            DynaQLVariable variable = vars[i];
-            builder.append(variable.build());
-            if (i < vars.length - 1) {
+        List<Variable> vars = this.getVariables();
+        for (int i = 0; i < vars.size(); i++) {
+            if (i > 0) {
                 builder.append(", ");
             }
+            ((DynaQLVariable) vars.get(i)).buildTo(builder);
         }
 
         builder.append(")");
     }
 
-    // TODO: Use StringJoiner  or Stream + Collectors.joining (https://www.baeldung.com/java-strings-concatenation)
     private void _buildFields(StringBuilder builder) {
         builder.append("{");
 
-        DynaQLField[] rootFields = this.getFields().toArray(new DynaQLField[0]);
-        for (int i = 0; i < rootFields.length; i++) {
-            DynaQLField rootField = rootFields[i];
-            builder.append(rootField.build());
-            if (i < rootFields.length - 1) {
+        List<Field> rootFields = this.getFields();
+        for (int i = 0; i < rootFields.size(); i++) {
+            if (i > 0) {
                 builder.append(" ");
             }
+            ((DynaQLField) rootFields.get(i)).buildTo(builder);
         }
 
         builder.append("}");
@@ -4,20 +4,21 @@ import static com.worldline.graphql.dynaql.impl.core.utils.ValueFormatter.format
 
 public class DynaQLVariable extends AbstractVariable {
     @Override
-    // TODO: User StringJoiner
     public String build() {
         StringBuilder builder = new StringBuilder();
+        buildTo(builder);
+        return builder.toString();
+    }
 
+    public void buildTo(StringBuilder builder) {
         builder.append("$");
         builder.append(this.getName());
         builder.append(":");
-        builder.append(this.getType().build());
+        ((DynaQLVariableType) this.getType()).buildTo(builder);
 
-        if(this.getDefaultValue().isPresent()) {
+        if (this.getDefaultValue().isPresent()) {
             builder.append("=");
-            builder.append(format(this.getDefaultValue().get()));
+            format(this.getDefaultValue().get(), builder);
         }
-
-        return builder.toString();
     }
 }
@@ -2,13 +2,16 @@ package com.worldline.graphql.dynaql.impl.core;
 
 public class DynaQLVariableType extends AbstractVariableType {
     @Override
-    // TODO: Use StringJoiner
     public String build() {
         StringBuilder builder = new StringBuilder();
+        buildTo(builder);
+        return builder.toString();
+    }
 
+    public void buildTo(StringBuilder builder) {
         if (this.getChild() != null) {
             builder.append("[");
-            builder.append(this.getChild().build());
+            ((DynaQLVariableType) this.getChild()).buildTo(builder);
             builder.append("]");
         } else {
             builder.append(this.getName());
@@ -17,7 +20,5 @@ public class DynaQLVariableType extends AbstractVariableType {
         if (this.isNonNull()) {
             builder.append("!");
         }
-
-        return builder.toString();
     }
 }
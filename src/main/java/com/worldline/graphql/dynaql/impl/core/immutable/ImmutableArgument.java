@@ -0,0 +1,70 @@
+package com.worldline.graphql.dynaql.impl.core.immutable;
+
+import org.eclipse.microprofile.graphql.client.core.Argument;
+import org.eclipse.microprofile.graphql.client.core.Buildable;
+
+import java.util.Objects;
+
+import static com.worldline.graphql.dynaql.impl.core.utils.ValueFormatter.format;
+
+/**
+ * Immutable argument. The value is formatted once at construction time, so later changes
+ * to a mutable value (array, input object...) cannot alter an already shared fragment.
+ */
+public final class ImmutableArgument implements Buildable {
+    private final String name;
+    private final String fragment;
+    private final int hash;
+
+    private ImmutableArgument(String name, String fragment) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.fragment = fragment;
+        this.hash = fragment.hashCode();
+    }
+
+    public static ImmutableArgument arg(String name, Object value) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(name).append(":");
+        format(value, builder);
+        return new ImmutableArgument(name, builder.toString());
+    }
+
+    public static ImmutableArgument of(Argument argument) {
+        return arg(argument.getName(), argument.getValue());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String build() {
+        return fragment;
+    }
+
+    public void buildTo(StringBuilder builder) {
+        builder.append(fragment);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ImmutableArgument)) {
+            return false;
+        }
+        ImmutableArgument other = (ImmutableArgument) obj;
+        return hash == other.hash && fragment.equals(other.fragment);
+    }
+
+    @Override
+    public String toString() {
+        return fragment;
+    }
+}
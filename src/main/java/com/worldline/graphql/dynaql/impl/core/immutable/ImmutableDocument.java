@@ -0,0 +1,105 @@
+package com.worldline.graphql.dynaql.impl.core.immutable;
+
+import com.worldline.graphql.dynaql.impl.DynaQLPreparedDocument;
+import org.eclipse.microprofile.graphql.client.core.Buildable;
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.eclipse.microprofile.graphql.client.core.Operation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable document. Being immutable, it can memoize both its GraphQL text and its
+ * {@link DynaQLPreparedDocument}, and be shared freely between threads.
+ */
+public final class ImmutableDocument implements Buildable {
+    private final ImmutableOperation[] operations;
+    private final int hash;
+
+    private String text;
+    private DynaQLPreparedDocument preparedDocument;
+
+    private ImmutableDocument(ImmutableOperation[] operations) {
+        this.operations = operations;
+        this.hash = Arrays.hashCode(operations);
+    }
+
+    public static ImmutableDocument document(ImmutableOperation... operations) {
+        return new ImmutableDocument(operations.clone());
+    }
+
+    public static ImmutableDocument of(Document document) {
+        List<Operation> sourceOperations = document.getOperations();
+        ImmutableOperation[] operations = new ImmutableOperation[sourceOperations.size()];
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = ImmutableOperation.of(sourceOperations.get(i));
+        }
+        return new ImmutableDocument(operations);
+    }
+
+    // Adds the operation, or replaces the operation having the same name
+    public ImmutableDocument withOperation(ImmutableOperation operation) {
+        for (int i = 0; i < operations.length; i++) {
+            if (operations[i].getName().equals(operation.getName())) {
+                if (operations[i].equals(operation)) {
+                    return this;
+                }
+                ImmutableOperation[] copy = operations.clone();
+                copy[i] = operation;
+                return new ImmutableDocument(copy);
+            }
+        }
+        ImmutableOperation[] copy = Arrays.copyOf(operations, operations.length + 1);
+        copy[operations.length] = operation;
+        return new ImmutableDocument(copy);
+    }
+
+    public List<ImmutableOperation> getOperations() {
+        return Collections.unmodifiableList(Arrays.asList(operations));
+    }
+
+    @Override
+    public String build() {
+        String result = text;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder();
+            for (ImmutableOperation operation : operations) {
+                operation.buildTo(builder);
+            }
+            text = result = builder.toString();
+        }
+        return result;
+    }
+
+    public DynaQLPreparedDocument prepare() {
+        DynaQLPreparedDocument result = preparedDocument;
+        if (result == null) {
+            // Racy single-check: DynaQLPreparedDocument has final fields and volatile lazy ones, so it is safely published
+            preparedDocument = result = DynaQLPreparedDocument.of(build());
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ImmutableDocument)) {
+            return false;
+        }
+        ImmutableDocument other = (ImmutableDocument) obj;
+        return hash == other.hash && Arrays.equals(operations, other.operations);
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+}
@@ -0,0 +1,237 @@
+package com.worldline.graphql.dynaql.impl.core.immutable;
+
+import org.eclipse.microprofile.graphql.client.core.Argument;
+import org.eclipse.microprofile.graphql.client.core.Buildable;
+import org.eclipse.microprofile.graphql.client.core.Field;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable field with structural sharing.
+ * <p>
+ * The "with" methods return a new field that shares every untouched argument and sub-field
+ * with the original. The hash is computed at construction time and the built fragment is
+ * memoized, so a subtree instance shared between documents (see {@link #intern()}) is
+ * serialized only once.
+ */
+public final class ImmutableField implements Buildable {
+    private static final ImmutableArgument[] NO_ARGUMENTS = new ImmutableArgument[0];
+    private static final ImmutableField[] NO_FIELDS = new ImmutableField[0];
+
+    private static final Map<ImmutableField, WeakReference<ImmutableField>> INTERNED = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final String name;
+    private final ImmutableArgument[] arguments;
+    private final ImmutableField[] fields;
+    private final int hash;
+
+    // Racy single-check idiom, as for String.hashCode: String is immutable, so publishing it without synchronization is safe
+    private String fragment;
+
+    private ImmutableField(String name, ImmutableArgument[] arguments, ImmutableField[] fields) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.arguments = arguments;
+        this.fields = fields;
+        this.hash = 31 * (31 * name.hashCode() + Arrays.hashCode(arguments)) + Arrays.hashCode(fields);
+    }
+
+    /*
+        Static factory methods
+    */
+    public static ImmutableField field(String name, ImmutableField... fields) {
+        return new ImmutableField(name, NO_ARGUMENTS, fields.length == 0 ? NO_FIELDS : fields.clone());
+    }
+
+    public static ImmutableField field(String name, List<ImmutableArgument> arguments, ImmutableField... fields) {
+        return new ImmutableField(name,
+                arguments.isEmpty() ? NO_ARGUMENTS : arguments.toArray(NO_ARGUMENTS),
+                fields.length == 0 ? NO_FIELDS : fields.clone());
+    }
+
+    public static ImmutableField of(Field field) {
+        List<Argument> sourceArguments = field.getArguments();
+        ImmutableArgument[] arguments = sourceArguments.isEmpty() ? NO_ARGUMENTS : new ImmutableArgument[sourceArguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = ImmutableArgument.of(sourceArguments.get(i));
+        }
+
+        List<Field> sourceFields = field.getFields();
+        ImmutableField[] fields = sourceFields.isEmpty() ? NO_FIELDS : new ImmutableField[sourceFields.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = of(sourceFields.get(i));
+        }
+
+        return new ImmutableField(field.getName(), arguments, fields);
+    }
+
+    /*
+        Persistent updates
+    */
+    public ImmutableField withName(String name) {
+        return this.name.equals(name) ? this : new ImmutableField(name, arguments, fields);
+    }
+
+    // Adds the argument, or replaces the argument having the same name
+    public ImmutableField withArgument(ImmutableArgument argument) {
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i].getName().equals(argument.getName())) {
+                if (arguments[i].equals(argument)) {
+                    return this;
+                }
+                ImmutableArgument[] copy = arguments.clone();
+                copy[i] = argument;
+                return new ImmutableField(name, copy, fields);
+            }
+        }
+        ImmutableArgument[] copy = Arrays.copyOf(arguments, arguments.length + 1);
+        copy[arguments.length] = argument;
+        return new ImmutableField(name, copy, fields);
+    }
+
+    public ImmutableField withoutArgument(String argumentName) {
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i].getName().equals(argumentName)) {
+                return new ImmutableField(name, remove(arguments, i, NO_ARGUMENTS), fields);
+            }
+        }
+        return this;
+    }
+
+    // Adds the sub-field, or replaces the first sub-field having the same name
+    public ImmutableField withField(ImmutableField field) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].name.equals(field.name)) {
+                if (fields[i].equals(field)) {
+                    return this;
+                }
+                ImmutableField[] copy = fields.clone();
+                copy[i] = field;
+                return new ImmutableField(name, arguments, copy);
+            }
+        }
+        ImmutableField[] copy = Arrays.copyOf(fields, fields.length + 1);
+        copy[fields.length] = field;
+        return new ImmutableField(name, arguments, copy);
+    }
+
+    public ImmutableField withoutField(String fieldName) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].name.equals(fieldName)) {
+                return new ImmutableField(name, arguments, remove(fields, i, NO_FIELDS));
+            }
+        }
+        return this;
+    }
+
+    /*
+        Returns the canonical instance of this subtree, so that structurally equal subtrees
+        built independently share the same memoized fragment.
+    */
+    public ImmutableField intern() {
+        synchronized (INTERNED) {
+            WeakReference<ImmutableField> reference = INTERNED.get(this);
+            ImmutableField interned = reference == null ? null : reference.get();
+            if (interned == null) {
+                INTERNED.put(this, new WeakReference<>(this));
+                interned = this;
+            }
+            return interned;
+        }
+    }
+
+    /*
+        Getter
+    */
+    public String getName() {
+        return name;
+    }
+
+    public List<ImmutableArgument> getArguments() {
+        return Collections.unmodifiableList(Arrays.asList(arguments));
+    }
+
+    public List<ImmutableField> getFields() {
+        return Collections.unmodifiableList(Arrays.asList(fields));
+    }
+
+    @Override
+    public String build() {
+        String result = fragment;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder();
+            _buildTo(builder);
+            fragment = result = builder.toString();
+        }
+        return result;
+    }
+
+    public void buildTo(StringBuilder builder) {
+        builder.append(build());
+    }
+
+    private void _buildTo(StringBuilder builder) {
+        builder.append(name);
+
+        if (arguments.length > 0) {
+            builder.append("(");
+            for (int i = 0; i < arguments.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                arguments[i].buildTo(builder);
+            }
+            builder.append(")");
+        }
+
+        if (fields.length > 0) {
+            builder.append("{");
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    builder.append(" ");
+                }
+                fields[i].buildTo(builder);
+            }
+            builder.append("}");
+        }
+    }
+
+    private static <T> T[] remove(T[] array, int index, T[] empty) {
+        if (array.length == 1) {
+            return empty;
+        }
+        T[] copy = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ImmutableField)) {
+            return false;
+        }
+        ImmutableField other = (ImmutableField) obj;
+        return hash == other.hash
+                && name.equals(other.name)
+                && Arrays.equals(arguments, other.arguments)
+                && Arrays.equals(fields, other.fields);
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+}
@@ -0,0 +1,199 @@
+package com.worldline.graphql.dynaql.impl.core.immutable;
+
+import org.eclipse.microprofile.graphql.client.core.Buildable;
+import org.eclipse.microprofile.graphql.client.core.Field;
+import org.eclipse.microprofile.graphql.client.core.Operation;
+import org.eclipse.microprofile.graphql.client.core.OperationType;
+import org.eclipse.microprofile.graphql.client.core.Variable;
+import org.eclipse.microprofile.graphql.client.core.exceptions.BuildException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable operation. Root fields are shared with the original on every "with" update,
+ * and the built text is memoized like for {@link ImmutableField}.
+ */
+public final class ImmutableOperation implements Buildable {
+    private static final ImmutableVariable[] NO_VARIABLES = new ImmutableVariable[0];
+
+    private final OperationType type;
+    private final String name;
+    private final ImmutableVariable[] variables;
+    private final ImmutableField[] fields;
+    private final int hash;
+
+    private String fragment;
+
+    private ImmutableOperation(OperationType type, String name, ImmutableVariable[] variables, ImmutableField[] fields) {
+        this.type = Objects.requireNonNull(type, "type");
+        this.name = name == null ? "" : name;
+        this.variables = variables;
+        this.fields = fields;
+        this.hash = 31 * (31 * (31 * type.hashCode() + this.name.hashCode()) + Arrays.hashCode(variables)) + Arrays.hashCode(fields);
+    }
+
+    /*
+        Static factory methods
+    */
+    public static ImmutableOperation operation(OperationType type, String name, ImmutableField... fields) {
+        return new ImmutableOperation(type, name, NO_VARIABLES, fields.clone());
+    }
+
+    public static ImmutableOperation operation(OperationType type, String name, List<Variable> variables, ImmutableField... fields) {
+        ImmutableVariable[] vars = variables.isEmpty() ? NO_VARIABLES : new ImmutableVariable[variables.size()];
+        for (int i = 0; i < vars.length; i++) {
+            vars[i] = ImmutableVariable.of(variables.get(i));
+        }
+        return new ImmutableOperation(type, name, vars, fields.clone());
+    }
+
+    public static ImmutableOperation of(Operation operation) {
+        List<Field> sourceFields = operation.getFields();
+        ImmutableField[] fields = new ImmutableField[sourceFields.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = ImmutableField.of(sourceFields.get(i));
+        }
+        return operation(operation.getType(), operation.getName(), operation.getVariables(), fields);
+    }
+
+    /*
+        Persistent updates
+    */
+    public ImmutableOperation withName(String name) {
+        return this.name.equals(name) ? this : new ImmutableOperation(type, name, variables, fields);
+    }
+
+    // Adds the variable, or replaces the variable having the same name
+    public ImmutableOperation withVariable(Variable variable) {
+        ImmutableVariable definition = ImmutableVariable.of(variable);
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].getName().equals(definition.getName())) {
+                ImmutableVariable[] copy = variables.clone();
+                copy[i] = definition;
+                return new ImmutableOperation(type, name, copy, fields);
+            }
+        }
+        ImmutableVariable[] copy = Arrays.copyOf(variables, variables.length + 1);
+        copy[variables.length] = definition;
+        return new ImmutableOperation(type, name, copy, fields);
+    }
+
+    // Adds the root field, or replaces the first root field having the same name
+    public ImmutableOperation withField(ImmutableField field) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().equals(field.getName())) {
+                if (fields[i].equals(field)) {
+                    return this;
+                }
+                ImmutableField[] copy = fields.clone();
+                copy[i] = field;
+                return new ImmutableOperation(type, name, variables, copy);
+            }
+        }
+        ImmutableField[] copy = Arrays.copyOf(fields, fields.length + 1);
+        copy[fields.length] = field;
+        return new ImmutableOperation(type, name, variables, copy);
+    }
+
+    /*
+        Getter
+    */
+    public OperationType getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<ImmutableVariable> getVariables() {
+        return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    public List<ImmutableField> getFields() {
+        return Collections.unmodifiableList(Arrays.asList(fields));
+    }
+
+    @Override
+    public String build() {
+        String result = fragment;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder();
+            _buildTo(builder);
+            fragment = result = builder.toString();
+        }
+        return result;
+    }
+
+    public void buildTo(StringBuilder builder) {
+        builder.append(build());
+    }
+
+    private void _buildTo(StringBuilder builder) {
+        switch (type) {
+            case QUERY:
+                builder.append("query");
+                break;
+            case MUTATION:
+                builder.append("mutation");
+                break;
+            default:
+                throw new BuildException("Operation type must be one of QUERY, MUTATION or SUBSCRIPTION");
+        }
+
+        builder.append(" ");
+        builder.append(name);
+
+        if (variables.length > 0) {
+            builder.append("(");
+            for (int i = 0; i < variables.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                variables[i].buildTo(builder);
+            }
+            builder.append(")");
+        }
+
+        if (fields.length == 0) {
+            throw new BuildException("An operation must have at least one root field.");
+        }
+        builder.append("{");
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                builder.append(" ");
+            }
+            fields[i].buildTo(builder);
+        }
+        builder.append("}");
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ImmutableOperation)) {
+            return false;
+        }
+        ImmutableOperation other = (ImmutableOperation) obj;
+        return hash == other.hash
+                && type == other.type
+                && name.equals(other.name)
+                && Arrays.equals(variables, other.variables)
+                && Arrays.equals(fields, other.fields);
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.worldline.graphql.dynaql.impl.core.immutable;
+
+import org.eclipse.microprofile.graphql.client.core.Buildable;
+import org.eclipse.microprofile.graphql.client.core.Variable;
+
+import java.util.Objects;
+
+/**
+ * Immutable variable definition, frozen from a {@link Variable} at construction time.
+ */
+public final class ImmutableVariable implements Buildable {
+    private final String name;
+    private final String fragment;
+
+    private ImmutableVariable(String name, String fragment) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.fragment = fragment;
+    }
+
+    public static ImmutableVariable of(Variable variable) {
+        return new ImmutableVariable(variable.getName(), variable.build());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String build() {
+        return fragment;
+    }
+
+    public void buildTo(StringBuilder builder) {
+        builder.append(fragment);
+    }
+
+    @Override
+    public int hashCode() {
+        return fragment.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof ImmutableVariable && fragment.equals(((ImmutableVariable) obj).fragment);
+    }
+
+    @Override
+    public String toString() {
+        return fragment;
+    }
+}
@@ -0,0 +1,294 @@
+package com.worldline.graphql.dynaql.impl.core.utils;
+
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.eclipse.microprofile.graphql.client.core.exceptions.BuildException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Produces the canonical minified text of a document, whatever the way it has been built.
+ * <p>
+ * Arguments, input object fields and variable definitions are sorted by name, since their order
+ * is not significant in GraphQL. Selections keep their order: it defines the order of the response
+ * members. Insignificant characters (whitespace, commas, comments) are stripped, keeping a
+ * single space only where two names or numbers would otherwise merge.
+ * <p>
+ * A {@link Document} is canonicalized through its built text, so that a document and its text
+ * always have the same canonical form.
+ */
+public final class Canonicalizer {
+
+    private static final Comparator<String[]> ENTRY_ORDER = Comparator.comparing(entry -> entry[0]);
+
+    public static String canonicalize(Document document) throws BuildException {
+        return canonicalize(document.build());
+    }
+
+    /*
+        Canonical form of a GraphQL text. The text is not validated: whatever cannot be parsed as a list of
+        arguments, input object fields or variable definitions is only minified.
+    */
+    public static String canonicalize(String document) {
+        TokenReader reader = new TokenReader(document);
+        StringBuilder builder = new StringBuilder(document.length());
+        String token;
+        while ((token = reader.next()) != null) {
+            if (token.equals("(")) {
+                _append(_list(reader), builder);
+            } else {
+                _append(token, builder);
+            }
+        }
+        return builder.toString();
+    }
+
+    /*
+        Strips the insignificant characters of a GraphQL text, string values being kept verbatim.
+    */
+    public static String minify(String document) {
+        StringBuilder builder = new StringBuilder(document.length());
+        int length = document.length();
+        boolean pendingSeparator = false;
+
+        int i = 0;
+        while (i < length) {
+            char c = document.charAt(i);
+
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == ',' || c == '\uFEFF') {
+                pendingSeparator = true;
+                i++;
+            } else if (c == '#') {
+                // Comment until the end of the line
+                while (i < length && document.charAt(i) != '\n' && document.charAt(i) != '\r') {
+                    i++;
+                }
+                pendingSeparator = true;
+            } else if (c == '"') {
+                int end = document.startsWith("\"\"\"", i) ? _endOfBlockString(document, i) : _endOfString(document, i);
+                builder.append(document, i, end);
+                pendingSeparator = false;
+                i = end;
+            } else {
+                if (pendingSeparator && builder.length() > 0 && _isNameChar(builder.charAt(builder.length() - 1)) && _isNameChar(c)) {
+                    builder.append(' ');
+                }
+                builder.append(c);
+                pendingSeparator = false;
+                i++;
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static int _endOfString(String document, int start) {
+        int i = start + 1;
+        while (i < document.length()) {
+            char c = document.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '"') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return document.length();
+    }
+
+    private static int _endOfBlockString(String document, int start) {
+        int i = start + 3;
+        while (i < document.length()) {
+            if (document.startsWith("\\\"\"\"", i)) {
+                i += 4;
+            } else if (document.startsWith("\"\"\"", i)) {
+                return i + 3;
+            } else {
+                i++;
+            }
+        }
+        return document.length();
+    }
+
+    private static boolean _isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /*
+        Arguments or variable definitions, the opening parenthesis being read.
+    */
+    private static String _list(TokenReader reader) {
+        List<String[]> entries = new ArrayList<>();
+        String token;
+        while ((token = reader.next()) != null && !token.equals(")")) {
+            StringBuilder entry = new StringBuilder();
+            String name;
+            if (token.equals("$")) {
+                // $name: Type = default @directive(...)
+                name = reader.next();
+                _append("$", entry);
+                _append(name, entry);
+                while ((token = reader.peek()) != null && !token.equals("=") && !token.equals("@")
+                        && !token.equals("$") && !token.equals(")")) {
+                    _append(reader.next(), entry);
+                }
+                if ("=".equals(token)) {
+                    _append(reader.next(), entry);
+                    _append(_value(reader), entry);
+                }
+                while ("@".equals(reader.peek())) {
+                    _append(reader.next(), entry);
+                    _append(reader.next(), entry);
+                    if ("(".equals(reader.peek())) {
+                        reader.next();
+                        _append(_list(reader), entry);
+                    }
+                }
+            } else {
+                // name: value
+                name = token;
+                _append(name, entry);
+                if (":".equals(reader.peek())) {
+                    _append(reader.next(), entry);
+                    _append(_value(reader), entry);
+                }
+            }
+            entries.add(new String[]{name == null ? "" : name, entry.toString()});
+        }
+        return _sorted("(", entries, ")");
+    }
+
+    private static String _value(TokenReader reader) {
+        String token = reader.next();
+        if (token == null) {
+            return "";
+        }
+        switch (token) {
+            case "$":
+                String name = reader.next();
+                return name == null ? token : token + name;
+            case "[":
+                StringBuilder list = new StringBuilder("[");
+                while (reader.peek() != null && !reader.peek().equals("]")) {
+                    _append(_value(reader), list);
+                }
+                reader.next();
+                return list.append("]").toString();
+            case "{":
+                List<String[]> fields = new ArrayList<>();
+                String field;
+                while ((field = reader.next()) != null && !field.equals("}")) {
+                    StringBuilder entry = new StringBuilder(field);
+                    if (":".equals(reader.peek())) {
+                        _append(reader.next(), entry);
+                        _append(_value(reader), entry);
+                    }
+                    fields.add(new String[]{field, entry.toString()});
+                }
+                return _sorted("{", fields, "}");
+            default:
+                return token;
+        }
+    }
+
+    private static String _sorted(String open, List<String[]> entries, String close) {
+        entries.sort(ENTRY_ORDER);
+        StringBuilder builder = new StringBuilder(open);
+        for (String[] entry : entries) {
+            _append(entry[1], builder);
+        }
+        return builder.append(close).toString();
+    }
+
+    /*
+        Appends a token, or a list of tokens, separated by a space from the previous one only when both are names or numbers.
+    */
+    private static void _append(String tokens, StringBuilder builder) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        if (builder.length() > 0 && _isNameChar(builder.charAt(builder.length() - 1)) && _isNameChar(tokens.charAt(0))) {
+            builder.append(' ');
+        }
+        builder.append(tokens);
+    }
+
+    /*
+        The significant tokens of a GraphQL text: names, numbers, strings and punctuators.
+    */
+    private static final class TokenReader {
+        private final String document;
+        private int position;
+        private String peeked;
+
+        TokenReader(String document) {
+            this.document = document;
+        }
+
+        String peek() {
+            if (peeked == null) {
+                peeked = _read();
+            }
+            return peeked;
+        }
+
+        String next() {
+            String result = peek();
+            peeked = null;
+            return result;
+        }
+
+        private String _read() {
+            int length = document.length();
+            while (position < length) {
+                char c = document.charAt(position);
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == ',' || c == '\uFEFF') {
+                    position++;
+                } else if (c == '#') {
+                    while (position < length && document.charAt(position) != '\n' && document.charAt(position) != '\r') {
+                        position++;
+                    }
+                } else {
+                    break;
+                }
+            }
+            if (position >= length) {
+                return null;
+            }
+
+            int start = position;
+            char c = document.charAt(position);
+            if (c == '"') {
+                position = document.startsWith("\"\"\"", position) ? _endOfBlockString(document, position) : _endOfString(document, position);
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                position++;
+                while (position < length) {
+                    char n = document.charAt(position);
+                    if (_isNameChar(n) || n == '.'
+                            || (n == '-' || n == '+') && (document.charAt(position - 1) == 'e' || document.charAt(position - 1) == 'E')) {
+                        position++;
+                    } else {
+                        break;
+                    }
+                }
+            } else if (_isNameChar(c)) {
+                while (position < length && _isNameChar(document.charAt(position))) {
+                    position++;
+                }
+            } else if (c == '.') {
+                while (position < length && document.charAt(position) == '.') {
+                    position++;
+                }
+            } else {
+                position++;
+            }
+            return document.substring(start, position);
+        }
+    }
+
+    private Canonicalizer() {
+        // HideUtilityClassConstructor
+    }
+}
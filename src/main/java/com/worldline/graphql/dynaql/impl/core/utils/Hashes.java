@@ -0,0 +1,46 @@
+package com.worldline.graphql.dynaql.impl.core.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public final class Hashes {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 is mandatory on every Java platform
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /*
+        64-bit FNV-1a: cheap, non cryptographic, for in-memory keys only.
+    */
+    public static long fnv1a64(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private Hashes() {
+        // HideUtilityClassConstructor
+    }
+}
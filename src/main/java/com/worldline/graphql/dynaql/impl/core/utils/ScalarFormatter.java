@@ -0,0 +1,24 @@
+package com.worldline.graphql.dynaql.impl.core.utils;
+
+/**
+ * Writes the GraphQL literal of a value, see {@link ValueFormatter#register(Class, ScalarFormatter)}.
+ */
+@FunctionalInterface
+public interface ScalarFormatter<T> {
+
+    void format(T value, StringBuilder builder);
+
+    /*
+        Formatter writing the value's toString() as a GraphQL string literal, suitable for most custom scalars.
+    */
+    static <T> ScalarFormatter<T> quoted() {
+        return (value, builder) -> ValueFormatter.appendQuotedString(value.toString(), builder);
+    }
+
+    /*
+        Formatter writing the value's toString() as is, suitable for numeric scalars.
+    */
+    static <T> ScalarFormatter<T> unquoted() {
+        return (value, builder) -> builder.append(value.toString());
+    }
+}
@@ -0,0 +1,135 @@
+package com.worldline.graphql.dynaql.impl.core.utils;
+
+import com.worldline.graphql.dynaql.impl.core.DynaQLArgument;
+import com.worldline.graphql.dynaql.impl.core.DynaQLDocument;
+import com.worldline.graphql.dynaql.impl.core.DynaQLField;
+import com.worldline.graphql.dynaql.impl.core.DynaQLOperation;
+import org.eclipse.microprofile.graphql.client.core.Argument;
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.eclipse.microprofile.graphql.client.core.Field;
+import org.eclipse.microprofile.graphql.client.core.Operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional optimization pass, run before build(): sibling fields having the same name and the same
+ * arguments are merged into the first of them, and their selection sets are folded recursively.
+ * <p>
+ * The source document is left untouched: a new document is returned, along with the path of every
+ * removed selection. Arguments are compared on their formatted value, regardless of their order,
+ * and copied, so that updating the merged document never changes the source one.
+ */
+public final class SelectionMerger {
+
+    public static Result merge(Document document) {
+        List<String> removed = new ArrayList<>();
+
+        List<Operation> operations = new ArrayList<>(document.getOperations().size());
+        for (Operation operation : document.getOperations()) {
+            DynaQLOperation merged = new DynaQLOperation();
+            merged.setType(operation.getType());
+            merged.setName(operation.getName());
+            merged.setVariables(new ArrayList<>(operation.getVariables()));
+            merged.setFields(_mergeSelections(operation.getFields(), operation.getName(), removed));
+            operations.add(merged);
+        }
+
+        DynaQLDocument merged = new DynaQLDocument();
+        merged.setOperations(operations);
+        return new Result(merged, removed);
+    }
+
+    private static List<Field> _mergeSelections(List<Field> fields, String path, List<String> removed) {
+        // Collects, in order of first appearance, every occurrence of each (name, arguments) pair
+        Map<String, List<Field>> occurrences = new LinkedHashMap<>();
+        for (Field field : fields) {
+            occurrences.computeIfAbsent(_key(field), k -> new ArrayList<>(1)).add(field);
+        }
+
+        List<Field> result = new ArrayList<>(occurrences.size());
+        for (List<Field> sameFields : occurrences.values()) {
+            Field first = sameFields.get(0);
+            String fieldPath = path == null || path.isEmpty() ? first.getName() : path + "." + first.getName();
+
+            List<Field> subFields = first.getFields();
+            if (sameFields.size() > 1) {
+                subFields = new ArrayList<>(subFields);
+                for (int i = 1; i < sameFields.size(); i++) {
+                    subFields.addAll(sameFields.get(i).getFields());
+                    removed.add(fieldPath);
+                }
+            }
+
+            DynaQLField merged = new DynaQLField();
+            merged.setName(first.getName());
+            merged.setArguments(_copy(first.getArguments()));
+            merged.setFields(subFields.isEmpty() ? subFields : _mergeSelections(subFields, fieldPath, removed));
+            result.add(merged);
+        }
+
+        return result;
+    }
+
+    private static List<Argument> _copy(List<Argument> arguments) {
+        List<Argument> copies = new ArrayList<>(arguments.size());
+        for (Argument argument : arguments) {
+            DynaQLArgument copy = new DynaQLArgument();
+            copy.setName(argument.getName());
+            copy.setValue(argument.getValue());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static String _key(Field field) {
+        List<Argument> arguments = field.getArguments();
+        if (arguments.isEmpty()) {
+            return field.getName();
+        }
+
+        List<String> formatted = new ArrayList<>(arguments.size());
+        for (Argument argument : arguments) {
+            formatted.add(argument.getName() + ":" + ValueFormatter.format(argument.getValue()));
+        }
+        Collections.sort(formatted);
+        return field.getName() + formatted;
+    }
+
+    public static final class Result {
+        private final DynaQLDocument document;
+        private final List<String> removedSelections;
+
+        private Result(DynaQLDocument document, List<String> removedSelections) {
+            this.document = document;
+            this.removedSelections = Collections.unmodifiableList(removedSelections);
+        }
+
+        public DynaQLDocument getDocument() {
+            return document;
+        }
+
+        /*
+            Path of every removed duplicate, e.g. "OperationName.people.name", once per removed occurrence.
+        */
+        public List<String> getRemovedSelections() {
+            return removedSelections;
+        }
+
+        public boolean hasRemovedSelections() {
+            return !removedSelections.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "MergeResult{" + "removedSelections=" + removedSelections + '}';
+        }
+    }
+
+    private SelectionMerger() {
+        // HideUtilityClassConstructor
+    }
+}
@@ -0,0 +1,88 @@
+package com.worldline.graphql.dynaql.impl.core.utils;
+
+/**
+ * Escaping of string literals, shared by GraphQL documents and JSON output.
+ * <p>
+ * GraphQL string values and JSON strings have the same escape sequences, so a single table is used:
+ * for each ASCII character it gives the character to write after the backslash, or 0 when the character
+ * is copied as is. Beyond ASCII, only the line and paragraph separators (U+2028, U+2029) are escaped:
+ * valid as is, they are still rejected by JavaScript and some GraphQL parsers. Runs of characters
+ * needing no escape are copied in bulk into the caller's builder.
+ */
+public final class StringEscaper {
+
+    private static final char[] ESCAPES = new char[128];
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+    }
+
+    /*
+        Appends the value as a quoted and escaped string literal.
+    */
+    public static void appendQuoted(String value, StringBuilder builder) {
+        builder.append('"');
+        appendEscaped(value, builder);
+        builder.append('"');
+    }
+
+    public static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        appendQuoted(value, builder);
+        return builder.toString();
+    }
+
+    public static void appendEscaped(String value, StringBuilder builder) {
+        int length = value.length();
+        int i = _nextEscape(value, 0, length);
+        if (i == length) {
+            // Nothing to escape: a single bulk copy
+            builder.append(value);
+            return;
+        }
+
+        int start = 0;
+        do {
+            if (i > start) {
+                builder.append(value, start, i);
+            }
+            char c = value.charAt(i);
+            char escape = c < 128 ? ESCAPES[c] : 'u';
+            builder.append('\\').append(escape);
+            if (escape == 'u') {
+                builder.append(HEX[c >> 12]).append(HEX[(c >> 8) & 0xF]).append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+            start = i + 1;
+            i = _nextEscape(value, start, length);
+        } while (i < length);
+
+        if (start < length) {
+            builder.append(value, start, length);
+        }
+    }
+
+    private static int _nextEscape(String value, int from, int length) {
+        for (int i = from; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 128 ? ESCAPES[c] != 0 : c == '\u2028' || c == '\u2029') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private StringEscaper() {
+        // HideUtilityClassConstructor
+    }
+}
@@ -5,80 +5,270 @@ import com.worldline.graphql.dynaql.impl.core.DynaQLInputObject;
 import com.worldline.graphql.dynaql.impl.core.DynaQLVariable;
 import org.eclipse.microprofile.graphql.client.core.exceptions.BuildException;
 
-import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Formats argument values as GraphQL literals.
+ * <p>
+ * The formatter of a value is resolved once per class and cached in a {@link ClassValue}:
+ * the registered formatter of the class itself, then of its superclasses, then of its interfaces.
+ * Custom scalars can be supported with {@link #register(Class, ScalarFormatter)}.
+ */
 public class ValueFormatter {
 
+    private static final Map<Class<?>, ScalarFormatter<?>> REGISTRY = new ConcurrentHashMap<>();
+
+    private static final ScalarFormatter<Object> TO_STRING = (value, builder) -> builder.append(value.toString());
+
+    private static volatile ClassValue<ScalarFormatter<Object>> formatters = _newFormatterCache();
+
+    static {
+        register(DynaQLVariable.class, (var, builder) -> builder.append("$").append(var.getName()));
+        register(DynaQLInputObject.class, DynaQLInputObject::buildTo);
+        register(DynaQLEnum.class, DynaQLEnum::buildTo);
+
+        register(String.class, ValueFormatter::appendQuotedString);
+        register(Character.class, (c, builder) -> appendQuotedString(String.valueOf(c), builder));
+        register(Integer.class, (i, builder) -> builder.append(i.intValue()));
+        register(Long.class, (l, builder) -> builder.append(l.longValue()));
+        register(Boolean.class, (b, builder) -> builder.append(b.booleanValue()));
+
+        register(BigDecimal.class, (decimal, builder) -> builder.append(decimal.toPlainString()));
+        register(UUID.class, ScalarFormatter.quoted());
+        register(LocalDate.class, ScalarFormatter.quoted());
+        register(LocalTime.class, ScalarFormatter.quoted());
+        register(LocalDateTime.class, ScalarFormatter.quoted());
+        register(OffsetDateTime.class, ScalarFormatter.quoted());
+        register(ZonedDateTime.class, ScalarFormatter.quoted());
+        register(Instant.class, ScalarFormatter.quoted());
+
+        register(Iterable.class, ValueFormatter::_processIterable);
+    }
+
+    /*
+        Registers (or replaces) the formatter of a type. It applies to subclasses and implementations
+        of the type as well, unless they have a more specific formatter.
+    */
+    public static <T> void register(Class<T> type, ScalarFormatter<? super T> formatter) {
+        REGISTRY.put(type, formatter);
+        // Resolved formatters may depend on the new registration: start over with an empty cache
+        formatters = _newFormatterCache();
+    }
+
     public static String format(Object value) throws BuildException {
+        StringBuilder builder = new StringBuilder();
+        format(value, builder);
+        return builder.toString();
+    }
+
+    public static void format(Object value, StringBuilder builder) throws BuildException {
         if (value == null) {
-            return "null";
-        } else if (value instanceof DynaQLVariable) {
-            DynaQLVariable var = (DynaQLVariable) value;
-            return "$" + var.getName();
-        } else if (value instanceof DynaQLInputObject) {
-            DynaQLInputObject inputObject = (DynaQLInputObject) value;
-            return inputObject.build();
-        } else if (value instanceof DynaQLEnum) {
-            DynaQLEnum gqlEnum = (DynaQLEnum) value;
-            return gqlEnum.build();
-        } else if (value.getClass().isArray()) {
-            return _processArray(value);
-        } else if (value instanceof String) {
-            return _getAsQuotedString(String.valueOf(value));
-        } else if (value instanceof Character) {
-            return _getAsQuotedString(String.valueOf(value));
-        } else if (value instanceof LocalDate) {
-            return _getAsQuotedString(String.valueOf(value));
+            builder.append("null");
         } else {
-            return value.toString();
+            formatters.get(value.getClass()).format(value, builder);
         }
     }
 
-    private static String _processArray(Object array) throws BuildException {
-        StringBuilder builder = new StringBuilder();
+    public static void appendQuotedString(String value, StringBuilder builder) {
+        StringEscaper.appendQuoted(value, builder);
+    }
 
-        int length = Array.getLength(array);
-        builder.append("[");
-        for (int i = 0; i < length; i++) {
-            builder.append(format(Array.get(array, i)));
-            if (i < length - 1) {
-                builder.append(",");
+    private static ClassValue<ScalarFormatter<Object>> _newFormatterCache() {
+        return new ClassValue<ScalarFormatter<Object>>() {
+            @Override
+            protected ScalarFormatter<Object> computeValue(Class<?> type) {
+                return _resolve(type);
             }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ScalarFormatter<Object> _resolve(Class<?> type) {
+        if (type.isArray()) {
+            return _arrayFormatter(type.getComponentType());
         }
-        builder.append("]");
 
-        return builder.toString();
-    }
+        // The class itself, then its superclasses
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            ScalarFormatter<?> formatter = REGISTRY.get(c);
+            if (formatter != null) {
+                return (ScalarFormatter<Object>) formatter;
+            }
+        }
 
-    private static String _getAsQuotedString(String value) {
-        StringBuilder builder = new StringBuilder();
+        // Then its interfaces, breadth first
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Class<?> i : c.getInterfaces()) {
+                queue.add(i);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Class<?> i = queue.poll();
+            if (visited.add(i)) {
+                ScalarFormatter<?> formatter = REGISTRY.get(i);
+                if (formatter != null) {
+                    return (ScalarFormatter<Object>) formatter;
+                }
+                for (Class<?> parent : i.getInterfaces()) {
+                    queue.add(parent);
+                }
+            }
+        }
+
+        return TO_STRING;
+    }
 
-        builder.append('"');
-        for (char c : value.toCharArray()) {
-            switch (c) {
-                case '"':
-                case '\\':
-                    builder.append('\\');
-                    builder.append(c);
-                    break;
-                case '\r':
-                    builder.append("\\r");
-                    break;
-                case '\n':
-                    builder.append("\\n");
-                    break;
-                default:
-                    if (c < 0x20) {
-                        builder.append(String.format("\\u%04x", (int) c));
-                    } else {
-                        builder.append(c);
+    private static ScalarFormatter<Object> _arrayFormatter(Class<?> componentType) {
+        // Primitive arrays are read directly, without reflection nor boxing
+        if (componentType == int.class) {
+            return (array, builder) -> {
+                int[] values = (int[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
                     }
-                    break;
-            }
+                    builder.append(values[i]);
+                }
+                builder.append("]");
+            };
+        } else if (componentType == long.class) {
+            return (array, builder) -> {
+                long[] values = (long[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    builder.append(values[i]);
+                }
+                builder.append("]");
+            };
+        } else if (componentType == double.class) {
+            return (array, builder) -> {
+                double[] values = (double[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    builder.append(values[i]);
+                }
+                builder.append("]");
+            };
+        } else if (componentType == boolean.class) {
+            return (array, builder) -> {
+                boolean[] values = (boolean[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    builder.append(values[i]);
+                }
+                builder.append("]");
+            };
+        } else if (componentType == float.class) {
+            return (array, builder) -> {
+                float[] values = (float[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    builder.append(values[i]);
+                }
+                builder.append("]");
+            };
+        } else if (componentType == short.class) {
+            return (array, builder) -> {
+                short[] values = (short[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    builder.append(values[i]);
+                }
+                builder.append("]");
+            };
+        } else if (componentType == byte.class) {
+            return (array, builder) -> {
+                byte[] values = (byte[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    builder.append(values[i]);
+                }
+                builder.append("]");
+            };
+        } else if (componentType == char.class) {
+            return (array, builder) -> {
+                char[] values = (char[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    appendQuotedString(String.valueOf(values[i]), builder);
+                }
+                builder.append("]");
+            };
+        } else {
+            return (array, builder) -> {
+                Object[] values = (Object[]) array;
+                builder.append("[");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        builder.append(",");
+                    }
+                    format(values[i], builder);
+                }
+                builder.append("]");
+            };
         }
-        builder.append('"');
+    }
 
-        return builder.toString();
+    private static void _processIterable(Iterable<?> iterable, StringBuilder builder) throws BuildException {
+        builder.append("[");
+        if (iterable instanceof List && iterable instanceof RandomAccess) {
+            // No iterator needed for indexed lists
+            List<?> list = (List<?>) iterable;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    builder.append(",");
+                }
+                format(list.get(i), builder);
+            }
+        } else {
+            Iterator<?> iterator = iterable.iterator();
+            while (iterator.hasNext()) {
+                format(iterator.next(), builder);
+                if (iterator.hasNext()) {
+                    builder.append(",");
+                }
+            }
+        }
+        builder.append("]");
     }
 }
@@ -0,0 +1,260 @@
+package com.worldline.graphql.dynaql.impl.core.utils;
+
+import com.worldline.graphql.dynaql.impl.DynaQLPreparedDocument;
+import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.core.DynaQLArgument;
+import com.worldline.graphql.dynaql.impl.core.DynaQLDocument;
+import com.worldline.graphql.dynaql.impl.core.DynaQLField;
+import com.worldline.graphql.dynaql.impl.core.DynaQLOperation;
+import com.worldline.graphql.dynaql.impl.core.DynaQLVariable;
+import com.worldline.graphql.dynaql.impl.core.DynaQLVariableType;
+import org.eclipse.microprofile.graphql.client.core.Argument;
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.eclipse.microprofile.graphql.client.core.Field;
+import org.eclipse.microprofile.graphql.client.core.Operation;
+import org.eclipse.microprofile.graphql.client.core.Variable;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Optional rewriting pass, run before build(): literal argument values are moved into variables, so that
+ * the text of the document stays the same whatever the values are, and can be prepared (and cached) once.
+ * <p>
+ * Only values whose GraphQL type can be inferred are hoisted: String, Int, Float, Boolean and non empty
+ * lists of them, always declared non-null. Null values, enums, input objects and any other value stay inline.
+ * Since the declared type must match the type of the argument in the schema, this pass is opt-in: an ID or
+ * a Float argument given a String or an Integer literal would be rejected by the server once hoisted.
+ */
+public final class VariableHoister {
+
+    // Prepared rewritten documents, by text
+    public static final int MAX_PREPARED_DOCUMENTS = 256;
+
+    /*
+        Hoisting makes documents differing only by their values share the same text: it is prepared once.
+    */
+    private static final Map<String, DynaQLPreparedDocument> PREPARED = Collections.synchronizedMap(
+            new LinkedHashMap<String, DynaQLPreparedDocument>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, DynaQLPreparedDocument> eldest) {
+                    return size() > MAX_PREPARED_DOCUMENTS;
+                }
+            });
+
+    public static Result hoist(Document document) {
+        // Hoisted variables get a name unique to the whole document, as a request holds a single set of variables
+        Set<String> names = new HashSet<>();
+        for (Operation operation : document.getOperations()) {
+            for (Variable variable : operation.getVariables()) {
+                names.add(variable.getName());
+            }
+        }
+
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        List<Operation> operations = new ArrayList<>(document.getOperations().size());
+        for (Operation operation : document.getOperations()) {
+            List<Variable> hoisted = new ArrayList<>();
+
+            DynaQLOperation rewritten = new DynaQLOperation();
+            rewritten.setType(operation.getType());
+            rewritten.setName(operation.getName());
+            rewritten.setFields(_hoistFields(operation.getFields(), names, hoisted, values));
+            if (hoisted.isEmpty()) {
+                rewritten.setVariables(operation.getVariables());
+            } else {
+                List<Variable> variables = new ArrayList<>(operation.getVariables());
+                variables.addAll(hoisted);
+                rewritten.setVariables(variables);
+            }
+            operations.add(rewritten);
+        }
+
+        DynaQLDocument rewritten = new DynaQLDocument();
+        rewritten.setOperations(operations);
+        return new Result(rewritten, values);
+    }
+
+    private static List<Field> _hoistFields(List<Field> fields, Set<String> names, List<Variable> hoisted, Map<String, Object> values) {
+        List<Field> result = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            List<Argument> arguments = new ArrayList<>(field.getArguments().size());
+            for (Argument argument : field.getArguments()) {
+                DynaQLVariableType type = _inferType(argument.getValue());
+                if (type == null) {
+                    arguments.add(argument);
+                    continue;
+                }
+
+                DynaQLVariable variable = new DynaQLVariable();
+                variable.setName(_uniqueName(argument.getName(), names));
+                variable.setType(type);
+                variable.setDefaultValue(Optional.empty());
+                hoisted.add(variable);
+                values.put(variable.getName(), argument.getValue());
+
+                DynaQLArgument replaced = new DynaQLArgument();
+                replaced.setName(argument.getName());
+                replaced.setValue(variable);
+                arguments.add(replaced);
+            }
+
+            DynaQLField rewritten = new DynaQLField();
+            rewritten.setName(field.getName());
+            rewritten.setArguments(arguments);
+            rewritten.setFields(field.getFields().isEmpty() ? field.getFields() : _hoistFields(field.getFields(), names, hoisted, values));
+            result.add(rewritten);
+        }
+        return result;
+    }
+
+    private static String _uniqueName(String argumentName, Set<String> names) {
+        String name = argumentName;
+        for (int i = 2; !names.add(name); i++) {
+            name = argumentName + i;
+        }
+        return name;
+    }
+
+    private static DynaQLVariableType _inferType(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        String scalar = _scalarName(value);
+        if (scalar != null) {
+            return _type(scalar, null);
+        }
+
+        // Lists are hoisted only when all their items share the same inferable scalar type
+        List<Object> items = _items(value);
+        if (items == null || items.isEmpty()) {
+            return null;
+        }
+        String itemScalar = null;
+        for (Object item : items) {
+            String name = item == null ? null : _scalarName(item);
+            if (name == null || (itemScalar != null && !itemScalar.equals(name))) {
+                return null;
+            }
+            itemScalar = name;
+        }
+        return _type(null, _type(itemScalar, null));
+    }
+
+    private static String _scalarName(Object value) {
+        if (value instanceof String) {
+            return "String";
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return "Int";
+        } else if (value instanceof Long || value instanceof BigInteger) {
+            // GraphQL Int is a signed 32-bit integer
+            long l = ((Number) value).longValue();
+            boolean exact = value instanceof Long || ((BigInteger) value).bitLength() < 64;
+            return exact && l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE ? "Int" : null;
+        } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            return "Float";
+        } else if (value instanceof Boolean) {
+            return "Boolean";
+        }
+        return null;
+    }
+
+    private static List<Object> _items(Object value) {
+        if (value instanceof Iterable) {
+            List<Object> items = new ArrayList<>();
+            for (Object item : (Iterable<?>) value) {
+                items.add(item);
+            }
+            return items;
+        } else if (value.getClass().isArray() && value.getClass().getComponentType() != char.class) {
+            int length = Array.getLength(value);
+            List<Object> items = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                items.add(Array.get(value, i));
+            }
+            return items;
+        }
+        return null;
+    }
+
+    private static DynaQLVariableType _type(String name, DynaQLVariableType child) {
+        DynaQLVariableType type = new DynaQLVariableType();
+        type.setName(name);
+        type.setChild(child);
+        type.setNonNull(true);
+        return type;
+    }
+
+    public static final class Result {
+        private final DynaQLDocument document;
+        private final Map<String, Object> variables;
+        private volatile DynaQLPreparedDocument preparedDocument;
+
+        private Result(DynaQLDocument document, Map<String, Object> variables) {
+            this.document = document;
+            this.variables = Collections.unmodifiableMap(variables);
+        }
+
+        public DynaQLDocument getDocument() {
+            return document;
+        }
+
+        /*
+            Values of the hoisted variables, by variable name.
+        */
+        public Map<String, Object> getVariables() {
+            return variables;
+        }
+
+        public boolean hasVariables() {
+            return !variables.isEmpty();
+        }
+
+        /*
+            The rewritten document, prepared once and shared with the other results having the same text.
+        */
+        public DynaQLPreparedDocument getPreparedDocument() {
+            // Racy single-check, DynaQLPreparedDocument is safely published
+            DynaQLPreparedDocument prepared = preparedDocument;
+            if (prepared == null) {
+                String text = document.build();
+                prepared = PREPARED.get(text);
+                if (prepared == null) {
+                    prepared = DynaQLPreparedDocument.prepare(document);
+                    PREPARED.put(text, prepared);
+                }
+                preparedDocument = prepared;
+            }
+            return prepared;
+        }
+
+        /*
+            A request for the rewritten document, with the hoisted values already set.
+        */
+        public DynaQLRequest toRequest() {
+            DynaQLRequest request = new DynaQLRequest(getPreparedDocument());
+            variables.forEach(request::setVariable);
+            return request;
+        }
+
+        @Override
+        public String toString() {
+            return "HoistResult{" + "variables=" + variables + '}';
+        }
+    }
+
+    private VariableHoister() {
+        // HideUtilityClassConstructor
+    }
+}
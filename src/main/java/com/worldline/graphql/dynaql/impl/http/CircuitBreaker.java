@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.CIRCUIT_BREAKER_OPEN_DURATION;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.CIRCUIT_BREAKER_THRESHOLD;
+
+/**
+ * Circuit breaker per endpoint: after a number of consecutive failures, the requests to the endpoint
+ * fail at once, without being sent, for the open duration. A single probe is then let through: the
+ * circuit closes again when it succeeds, and stays open for another open duration when it fails.
+ */
+public final class CircuitBreaker {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /*
+        Updated under its own lock. The state and the failures are volatile, so that the requests to a
+        healthy endpoint, the circuit being closed, go through without locking.
+    */
+    private static final class Circuit {
+        private volatile State state = State.CLOSED;
+        private volatile int failures;
+        // When the circuit was opened, or when the probe was let through
+        private long since;
+    }
+
+    private static final Map<URI, Circuit> CIRCUITS = new ConcurrentHashMap<>();
+
+    static boolean isEnabled(HttpConfiguration configuration) {
+        return configuration.get(CIRCUIT_BREAKER_THRESHOLD) != null;
+    }
+
+    /*
+        Whether a request can be sent to the endpoint: always when the circuit is closed, only as a probe otherwise.
+    */
+    static boolean allow(HttpConfiguration configuration, URI endpoint) {
+        Circuit circuit = CIRCUITS.computeIfAbsent(endpoint, k -> new Circuit());
+        if (circuit.state == State.CLOSED) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (circuit) {
+            if (circuit.state == State.CLOSED) {
+                return true;
+            }
+            // A probe lost for as long as the open duration is replaced
+            if (now - circuit.since < _openDuration(configuration)) {
+                return false;
+            }
+            log.info("Circuit breaker of " + endpoint + " half-open, probing");
+            circuit.state = State.HALF_OPEN;
+            circuit.since = now;
+            return true;
+        }
+    }
+
+    static void success(URI endpoint) {
+        Circuit circuit = CIRCUITS.get(endpoint);
+        if (circuit == null || (circuit.state == State.CLOSED && circuit.failures == 0)) {
+            return;
+        }
+        synchronized (circuit) {
+            if (circuit.state != State.CLOSED) {
+                log.info("Circuit breaker of " + endpoint + " closed");
+            }
+            circuit.state = State.CLOSED;
+            circuit.failures = 0;
+        }
+    }
+
+    static void failure(HttpConfiguration configuration, URI endpoint) {
+        Circuit circuit = CIRCUITS.computeIfAbsent(endpoint, k -> new Circuit());
+        int threshold = ((Number) configuration.get(CIRCUIT_BREAKER_THRESHOLD)).intValue();
+        synchronized (circuit) {
+            circuit.failures++;
+            if (circuit.state == State.HALF_OPEN || (circuit.state == State.CLOSED && circuit.failures >= threshold)) {
+                log.warn("Circuit breaker of " + endpoint + " open after " + circuit.failures + " consecutive failures");
+                circuit.state = State.OPEN;
+                circuit.since = System.currentTimeMillis();
+            }
+        }
+    }
+
+    public static State getState(URI endpoint) {
+        Circuit circuit = CIRCUITS.get(endpoint);
+        return circuit == null ? State.CLOSED : circuit.state;
+    }
+
+    public static void clear() {
+        CIRCUITS.clear();
+    }
+
+    private static long _openDuration(HttpConfiguration configuration) {
+        Number openDuration = (Number) configuration.get(CIRCUIT_BREAKER_OPEN_DURATION);
+        return openDuration != null ? openDuration.longValue() : HttpConfiguration.DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION;
+    }
+
+    private CircuitBreaker() {
+        // HideUtilityClassConstructor
+    }
+}
@@ -0,0 +1,88 @@
+package com.worldline.graphql.dynaql.impl.http;
+
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Responses of GET requests kept with their ETag, so that they can be revalidated with If-None-Match:
+ * on a 304 Not Modified the cached response is reused as is, its body is neither transferred nor parsed.
+ * <p>
+ * Entries are keyed by URL and request headers, and the least recently used ones are evicted
+ * when the cache is full. The cache is global to the JVM: its size is the last value of
+ * {@link HttpConfiguration#ETAG_CACHE_SIZE} given to a builder, whatever the client.
+ */
+public final class EntityTags {
+
+    static final int DEFAULT_SIZE = 256;
+
+    static final class CachedResponse {
+        private final String etag;
+        private final DynaQLResponse response;
+
+        private CachedResponse(String etag, DynaQLResponse response) {
+            this.etag = etag;
+            this.response = response;
+        }
+
+        String getETag() {
+            return etag;
+        }
+
+        DynaQLResponse getResponse() {
+            return response;
+        }
+    }
+
+    private static volatile int maxSize = DEFAULT_SIZE;
+
+    private static final Map<String, CachedResponse> ENTRIES = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    public static synchronized int size() {
+        return ENTRIES.size();
+    }
+
+    public static synchronized void clear() {
+        ENTRIES.clear();
+    }
+
+    /*
+        Called on every build(): the lock is only taken when the size actually changes.
+    */
+    static void resize(int size) {
+        if (size != maxSize) {
+            _resize(size);
+        }
+    }
+
+    private static synchronized void _resize(int size) {
+        maxSize = size;
+        while (ENTRIES.size() > maxSize) {
+            ENTRIES.remove(ENTRIES.keySet().iterator().next());
+        }
+    }
+
+    static synchronized CachedResponse get(String key) {
+        return ENTRIES.get(key);
+    }
+
+    static synchronized void put(String key, String etag, DynaQLResponse response) {
+        if (maxSize > 0) {
+            ENTRIES.put(key, new CachedResponse(etag, response));
+        }
+    }
+
+    static synchronized void remove(String key) {
+        ENTRIES.remove(key);
+    }
+
+    private EntityTags() {
+        // HideUtilityClassConstructor
+    }
+}
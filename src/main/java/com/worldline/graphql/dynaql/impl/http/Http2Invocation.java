@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.eclipse.microprofile.graphql.client.Request;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * HTTP/2 transport, based on the HTTP client of the JDK.
+ * <p>
+ * This is the Java 8 version of the class: the jar is a multi-release one, whose Java 11
+ * version (src/main/java11) implements the transport. On Java 8 it is not supported.
+ */
+public class Http2Invocation {
+
+    protected Http2Invocation(HttpConfiguration configuration, URI uri, Request request, Map<String, String> headers) {
+        throw new UnsupportedOperationException("The HTTP/2 transport requires Java 11 or later");
+    }
+
+    /*
+        True when running on Java 11 or later.
+    */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    public HttpResponse invoke() {
+        throw new UnsupportedOperationException("The HTTP/2 transport requires Java 11 or later");
+    }
+
+    public CompletableFuture<HttpResponse> invokeAsync() {
+        return invokeAsync(ForkJoinPool.commonPool());
+    }
+
+    public CompletableFuture<HttpResponse> invokeAsync(Executor executor) {
+        throw new UnsupportedOperationException("The HTTP/2 transport requires Java 11 or later");
+    }
+
+}
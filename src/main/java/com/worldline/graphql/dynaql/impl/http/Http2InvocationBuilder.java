@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.eclipse.microprofile.graphql.client.Request;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds an {@link Http2Invocation}, with the same properties as {@link HttpInvocationBuilder}.
+ */
+public class Http2InvocationBuilder {
+
+    private final HttpConfiguration configuration;
+    private URI uri;
+    private Request graphqlRequest;
+    private final Map<String, String> headers;
+
+    private Http2InvocationBuilder() {
+        this.headers = new HashMap<>();
+        this.configuration = new HttpConfiguration();
+    }
+
+    public static Http2InvocationBuilder newBuilder() {
+        return new Http2InvocationBuilder();
+    }
+
+    public Http2InvocationBuilder property(String key, Object value) {
+        configuration.property(key, value);
+        return this;
+    }
+
+    public Http2InvocationBuilder header(String key, String value) {
+        headers.put(key, value);
+        return this;
+    }
+
+    public Http2InvocationBuilder uri(String endpoint) {
+
+        if (endpoint == null || !endpoint.startsWith("http")) {
+            throw new IllegalArgumentException("Illegal URI value: " + endpoint);
+        }
+
+        try {
+            this.uri = new URI(endpoint);
+        } catch (URISyntaxException ex) {
+            throw new IllegalArgumentException("Illegal URI value: " + endpoint);
+        }
+
+        return this;
+    }
+
+    public Http2InvocationBuilder graphQLRequest(Request graphqlRequest) {
+        this.graphqlRequest = graphqlRequest;
+        return this;
+    }
+
+    public Http2Invocation build() {
+        if (!Http2Invocation.isSupported()) {
+            throw new UnsupportedOperationException("The HTTP/2 transport requires Java 11 or later");
+        }
+        return new Http2Invocation(configuration, uri, graphqlRequest, headers);
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.eclipse.microprofile.graphql.client.Request;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Coalesces the requests submitted within a time window into one {@link HttpBatchInvocation}:
+ * a batch is sent when the window of its first request elapses, or as soon as it is full.
+ * Each caller gets the response of its own request.
+ */
+public class HttpAutoBatcher extends RequestWindow<Request> {
+
+    private final HttpConfiguration configuration;
+    private final URI uri;
+    private final Map<String, String> headers;
+
+    protected HttpAutoBatcher(HttpConfiguration configuration, URI uri, Map<String, String> headers, Executor executor) {
+        super(configuration, executor);
+        this.configuration = configuration;
+        this.uri = uri;
+        this.headers = headers;
+    }
+
+    public CompletableFuture<HttpResponse> submit(Request request) {
+        return enqueue(request);
+    }
+
+    @Override
+    void send(List<Pending<Request>> batch) {
+        // A single request is sent as is, not as a batch
+        if (batch.size() == 1) {
+            Pending<Request> pendingRequest = batch.get(0);
+            pendingRequest.future.complete(new HttpInvocation(configuration, uri, pendingRequest.item, headers).invoke());
+            return;
+        }
+
+        List<Request> requests = new ArrayList<>(batch.size());
+        for (Pending<Request> pendingRequest : batch) {
+            requests.add(pendingRequest.item);
+        }
+        List<HttpResponse> responses = new HttpBatchInvocation(configuration, uri, requests, headers).invoke();
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(responses.get(i));
+        }
+    }
+
+}
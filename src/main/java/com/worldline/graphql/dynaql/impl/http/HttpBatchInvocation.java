@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodec;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodecs;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.microprofile.graphql.client.Request;
+import org.slf4j.LoggerFactory;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Sends several GraphQL requests in a single POST, as a JSON array, and splits the array
+ * of the response: the n-th response is the one of the n-th request.
+ * <p>
+ * The requests are always sent as JSON, with their document: neither GET, persisted queries
+ * nor other codecs apply to batches.
+ */
+public class HttpBatchInvocation {
+
+    private final HttpConfiguration configuration;
+    private final URI uri;
+    private final List<Request> graphqlRequests;
+    private final Map<String, String> headers;
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(HttpBatchInvocation.class);
+
+    protected HttpBatchInvocation(HttpConfiguration configuration, URI uri, List<Request> requests, Map<String, String> headers) {
+        this.configuration = configuration;
+        this.uri = uri;
+        this.graphqlRequests = requests;
+        this.headers = headers;
+    }
+
+    public List<HttpResponse> invoke() {
+        if (graphqlRequests.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        GraphQLCodec codec = GraphQLCodecs.json();
+        byte[] body = _encodeBatch(codec);
+        log.info("Sending a batch of " + graphqlRequests.size() + " GraphQL requests (" + body.length + " bytes)");
+
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.setEntity(HttpInvocation.bytesEntity(body, ContentType.parse(codec.getContentType()), configuration));
+        HttpInvocation.prepareRequest(httpPost, configuration, headers, codec);
+
+        // Shared by the invocations: neither the client nor its connections are closed here.
+        // Looked up for each exchange, so that an invocation built before HttpClientPool.closeAll() gets a new one
+        CloseableHttpClient httpClient = HttpClientPool.client(configuration);
+
+        try (CloseableHttpResponse serverResponse = httpClient.execute(httpPost)) {
+            HttpEntity entity = serverResponse.getEntity();
+            if (serverResponse.getStatusLine().getStatusCode() != 200) {
+                String contentString = EntityUtils.toString(entity, StandardCharsets.UTF_8);
+                log.warn("HTTP response code NOK " + serverResponse.getStatusLine().getStatusCode());
+                throw new HttpResponseException(serverResponse.getStatusLine().getStatusCode(), "The server responded with" + contentString);
+            }
+
+            JsonArray jsonResponses = _readBatch(entity);
+            if (jsonResponses.size() != graphqlRequests.size()) {
+                throw new HttpInvocationException("Batch of " + graphqlRequests.size() + " requests answered with " + jsonResponses.size() + " responses");
+            }
+
+            Header[] httpHeaders = serverResponse.getAllHeaders();
+            List<HttpResponse> responses = new ArrayList<>(jsonResponses.size());
+            for (JsonValue jsonResponse : jsonResponses) {
+                if (jsonResponse.getValueType() != JsonValue.ValueType.OBJECT) {
+                    throw new HttpInvocationException("Invalid GraphQL response in batch: " + jsonResponse);
+                }
+                HttpResponse httpResponse = new HttpResponse();
+                for (int i = 0; i < httpHeaders.length; i++) {
+                    httpResponse.header(httpHeaders[i].getName(), httpHeaders[i].getValue());
+                }
+                httpResponse.setGraphQLResponse(GraphQLCodecs.toResponse(jsonResponse.asJsonObject()));
+                responses.add(httpResponse);
+            }
+            return responses;
+        } catch (IOException ex) {
+            throw new HttpInvocationException(ex);
+        }
+    }
+
+    private byte[] _encodeBatch(GraphQLCodec codec) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512 * graphqlRequests.size());
+        try {
+            out.write('[');
+            for (int i = 0; i < graphqlRequests.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                codec.writeRequest(graphqlRequests.get(i), true, false, out);
+            }
+            out.write(']');
+        } catch (IOException ex) {
+            throw new HttpInvocationException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /*
+        A server not supporting batches answers with a single object (an error), not an array.
+    */
+    private static JsonArray _readBatch(HttpEntity entity) throws IOException {
+        ContentType contentType = ContentType.getOrDefault(entity);
+        try (InputStream contentStream = HttpInvocation.decodedContent(entity)) {
+            JsonReader jsonReader = contentType.getCharset() == null
+                    ? Json.createReader(contentStream)
+                    : Json.createReader(new InputStreamReader(contentStream, contentType.getCharset()));
+            JsonValue value = jsonReader.readValue();
+            if (value.getValueType() != JsonValue.ValueType.ARRAY) {
+                throw new HttpInvocationException("Batched requests not supported by the server, it responded with " + value);
+            }
+            return value.asJsonArray();
+        } catch (JsonException ex) {
+            throw new IOException("Invalid GraphQL batch response", ex);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.eclipse.microprofile.graphql.client.Request;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Builds an {@link HttpBatchInvocation} of the given requests, an {@link HttpAutoBatcher} batching
+ * the requests submitted to it, or an {@link HttpCoalescer} merging the root fields submitted to it,
+ * with the same properties as {@link HttpInvocationBuilder}.
+ */
+public class HttpBatchInvocationBuilder {
+
+    private final HttpConfiguration configuration;
+    private URI uri;
+    private final List<Request> graphqlRequests;
+    private final Map<String, String> headers;
+
+    private HttpBatchInvocationBuilder() {
+        this.headers = new HashMap<>();
+        this.graphqlRequests = new ArrayList<>();
+        this.configuration = new HttpConfiguration();
+    }
+
+    public static HttpBatchInvocationBuilder newBuilder() {
+        return new HttpBatchInvocationBuilder();
+    }
+
+    public HttpBatchInvocationBuilder property(String key, Object value) {
+        configuration.property(key, value);
+        return this;
+    }
+
+    public HttpBatchInvocationBuilder header(String key, String value) {
+        headers.put(key, value);
+        return this;
+    }
+
+    public HttpBatchInvocationBuilder uri(String endpoint) {
+
+        if (endpoint == null || !endpoint.startsWith("http")) {
+            throw new IllegalArgumentException("Illegal URI value: " + endpoint);
+        }
+
+        try {
+            this.uri = new URI(endpoint);
+        } catch (URISyntaxException ex) {
+            throw new IllegalArgumentException("Illegal URI value: " + endpoint);
+        }
+
+        return this;
+    }
+
+    public HttpBatchInvocationBuilder graphQLRequest(Request graphqlRequest) {
+        this.graphqlRequests.add(graphqlRequest);
+        return this;
+    }
+
+    public HttpBatchInvocationBuilder graphQLRequests(Collection<? extends Request> graphqlRequests) {
+        this.graphqlRequests.addAll(graphqlRequests);
+        return this;
+    }
+
+    public HttpBatchInvocation build() {
+        HttpInvocationBuilder.configure(configuration);
+
+        return new HttpBatchInvocation(configuration, uri, new ArrayList<>(graphqlRequests), headers);
+    }
+
+    /*
+        The batches are sent by a shared pool of daemon threads.
+    */
+    public HttpAutoBatcher buildAutoBatcher() {
+        return buildAutoBatcher(null);
+    }
+
+    /*
+        The batches are sent, and the futures completed, by the given executor.
+    */
+    public HttpAutoBatcher buildAutoBatcher(Executor executor) {
+        HttpInvocationBuilder.configure(configuration);
+
+        return new HttpAutoBatcher(configuration, uri, headers, executor);
+    }
+
+    /*
+        The merged queries are sent by a shared pool of daemon threads.
+    */
+    public HttpCoalescer buildCoalescer() {
+        return buildCoalescer(null);
+    }
+
+    /*
+        The merged queries are sent, and the futures completed, by the given executor.
+    */
+    public HttpCoalescer buildCoalescer(Executor executor) {
+        HttpInvocationBuilder.configure(configuration);
+
+        return new HttpCoalescer(configuration, uri, headers, executor);
+    }
+
+}
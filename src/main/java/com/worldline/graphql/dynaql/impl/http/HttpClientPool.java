@@ -0,0 +1,206 @@
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.KEEP_ALIVE;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.POOL_IDLE_TIMEOUT;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.POOL_MAX_PER_ROUTE;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.POOL_MAX_TOTAL;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RESPONSE_COMPRESSION;
+
+/**
+ * HTTP clients shared by all the invocations having the same pool settings, so that connections
+ * (and TLS sessions) are reused across requests instead of being opened and torn down for each one.
+ * <p>
+ * Each client has its own pooling connection manager. Expired connections, and connections idle for
+ * longer than {@link HttpConfiguration#POOL_IDLE_TIMEOUT}, are evicted by a background thread.
+ * The non-blocking clients used by {@link HttpInvocation#invokeAsync()} are pooled the same way.
+ */
+public final class HttpClientPool {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(HttpClientPool.class);
+
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    public static final long DEFAULT_KEEP_ALIVE = 30_000;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60_000;
+
+    private static final class PooledClient {
+        private final Closeable client;
+        private final Closeable closer;
+        private final ConnPoolControl<HttpRoute> connectionManager;
+
+        private PooledClient(Closeable client, Closeable closer, ConnPoolControl<HttpRoute> connectionManager) {
+            this.client = client;
+            this.closer = closer;
+            this.connectionManager = connectionManager;
+        }
+    }
+
+    private static final Map<String, PooledClient> CLIENTS = new ConcurrentHashMap<>();
+
+    // The async client has no evictor thread of its own
+    private static final ScheduledExecutorService ASYNC_EVICTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dynaql-async-connection-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static CloseableHttpClient client(HttpConfiguration configuration) {
+        int maxTotal = _intValue(configuration.get(POOL_MAX_TOTAL), DEFAULT_MAX_TOTAL);
+        int maxPerRoute = _intValue(configuration.get(POOL_MAX_PER_ROUTE), DEFAULT_MAX_PER_ROUTE);
+        long keepAlive = _longValue(configuration.get(KEEP_ALIVE), DEFAULT_KEEP_ALIVE);
+        long idleTimeout = _longValue(configuration.get(POOL_IDLE_TIMEOUT), DEFAULT_IDLE_TIMEOUT);
+        boolean compression = !Boolean.FALSE.equals(configuration.get(RESPONSE_COMPRESSION));
+
+        String key = maxTotal + "/" + maxPerRoute + "/" + keepAlive + "/" + idleTimeout + "/" + compression;
+        return (CloseableHttpClient) CLIENTS.computeIfAbsent(key, k -> _create(maxTotal, maxPerRoute, keepAlive, idleTimeout, compression)).client;
+    }
+
+    /*
+        Non-blocking client, started on first use: a single I/O reactor serves all the in-flight exchanges.
+    */
+    static CloseableHttpAsyncClient asyncClient(HttpConfiguration configuration) {
+        int maxTotal = _intValue(configuration.get(POOL_MAX_TOTAL), DEFAULT_MAX_TOTAL);
+        int maxPerRoute = _intValue(configuration.get(POOL_MAX_PER_ROUTE), DEFAULT_MAX_PER_ROUTE);
+        long keepAlive = _longValue(configuration.get(KEEP_ALIVE), DEFAULT_KEEP_ALIVE);
+        long idleTimeout = _longValue(configuration.get(POOL_IDLE_TIMEOUT), DEFAULT_IDLE_TIMEOUT);
+
+        String key = "async/" + maxTotal + "/" + maxPerRoute + "/" + keepAlive + "/" + idleTimeout;
+        return (CloseableHttpAsyncClient) CLIENTS.computeIfAbsent(key, k -> _createAsync(maxTotal, maxPerRoute, keepAlive, idleTimeout)).client;
+    }
+
+    private static PooledClient _create(int maxTotal, int maxPerRoute, long keepAlive, long idleTimeout, boolean compression) {
+        log.debug("Creating a pooled HTTP client: maxTotal=" + maxTotal + ", maxPerRoute=" + maxPerRoute
+                + ", keepAlive=" + keepAlive + ", idleTimeout=" + idleTimeout);
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+        HttpClientBuilder clientBuilder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(_keepAliveStrategy(keepAlive))
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        if (!compression) {
+            // Otherwise, the client sends Accept-Encoding: gzip,deflate and decompresses the content on the fly
+            clientBuilder.disableContentCompression();
+        }
+
+        CloseableHttpClient client = clientBuilder.build();
+        return new PooledClient(client, client, connectionManager);
+    }
+
+    private static PooledClient _createAsync(int maxTotal, int maxPerRoute, long keepAlive, long idleTimeout) {
+        log.debug("Creating a pooled async HTTP client: maxTotal=" + maxTotal + ", maxPerRoute=" + maxPerRoute
+                + ", keepAlive=" + keepAlive + ", idleTimeout=" + idleTimeout);
+
+        PoolingNHttpClientConnectionManager connectionManager;
+        try {
+            connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+        } catch (IOReactorException ex) {
+            throw new HttpInvocationException("Cannot start the async HTTP client", ex);
+        }
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(_keepAliveStrategy(keepAlive))
+                .build();
+        client.start();
+
+        long period = Math.max(1000, idleTimeout / 2);
+        ScheduledFuture<?> eviction = ASYNC_EVICTOR.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        return new PooledClient(client, () -> {
+            eviction.cancel(false);
+            client.close();
+        }, connectionManager);
+    }
+
+    /*
+        The Keep-Alive header of the server, capped by the configured duration.
+    */
+    private static ConnectionKeepAliveStrategy _keepAliveStrategy(long keepAlive) {
+        return (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+        };
+    }
+
+    /*
+        Leased, available and pending connections of all the pools, and their maximum.
+    */
+    public static PoolStats getTotalStats() {
+        int leased = 0;
+        int pending = 0;
+        int available = 0;
+        int max = 0;
+        for (PooledClient pooled : CLIENTS.values()) {
+            PoolStats stats = pooled.connectionManager.getTotalStats();
+            leased += stats.getLeased();
+            pending += stats.getPending();
+            available += stats.getAvailable();
+            max += stats.getMax();
+        }
+        return new PoolStats(leased, pending, available, max);
+    }
+
+    /*
+        Closes every pooled client and its connections: the next exchanges create new ones, including the
+        exchanges of invocations built before.
+    */
+    public static void closeAll() {
+        for (String key : CLIENTS.keySet()) {
+            PooledClient pooled = CLIENTS.remove(key);
+            if (pooled != null) {
+                try {
+                    pooled.closer.close();
+                } catch (IOException ex) {
+                    log.warn("Cannot close a pooled HTTP client", ex);
+                }
+            }
+        }
+    }
+
+    private static int _intValue(Object value, int defaultValue) {
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    private static long _longValue(Object value, long defaultValue) {
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    private HttpClientPool() {
+        // HideUtilityClassConstructor
+    }
+}
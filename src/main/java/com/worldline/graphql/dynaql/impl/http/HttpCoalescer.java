@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import com.worldline.graphql.dynaql.impl.DynaQLError;
+import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import org.eclipse.microprofile.graphql.client.Error;
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.eclipse.microprofile.graphql.client.core.Field;
+import org.eclipse.microprofile.graphql.client.core.Operation;
+import org.eclipse.microprofile.graphql.client.core.OperationType;
+import org.slf4j.LoggerFactory;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Merges the single root field queries submitted within a time window into one query,
+ * each root field under a generated alias, and splits the response back: every caller gets
+ * its own root field in the data, and the errors whose path starts with it.
+ * <p>
+ * Errors without a path are given to every caller. Identical root fields are only sent once.
+ * Documents that are not a single query with a single root field and no variables are sent as they are.
+ * <p>
+ * A query failing validation is not executed at all, whichever root field is invalid: when the
+ * coalesced query gets no data but errors without a path, each root field is sent again on its own,
+ * so that only the callers of an invalid field get its validation errors.
+ */
+public class HttpCoalescer extends RequestWindow<Field> {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(HttpCoalescer.class);
+
+    private static final String ALIAS_PREFIX = "_c";
+
+    private final HttpConfiguration configuration;
+    private final URI uri;
+    private final Map<String, String> headers;
+
+    protected HttpCoalescer(HttpConfiguration configuration, URI uri, Map<String, String> headers, Executor executor) {
+        super(configuration, executor);
+        this.configuration = configuration;
+        this.uri = uri;
+        this.headers = headers;
+    }
+
+    /*
+        Queries the given root field, along with the other ones submitted within the window.
+    */
+    public CompletableFuture<HttpResponse> submit(Field rootField) {
+        return enqueue(rootField);
+    }
+
+    public CompletableFuture<HttpResponse> submit(Document document) {
+        if (isCoalescable(document)) {
+            return enqueue(document.getOperations().get(0).getFields().get(0));
+        }
+
+        log.debug("Document not coalescable, sent as is");
+        return CompletableFuture.supplyAsync(() -> new HttpInvocation(configuration, uri, new DynaQLRequest(document.build()), headers).invoke(),
+                executor());
+    }
+
+    public static boolean isCoalescable(Document document) {
+        if (document.getOperations().size() != 1) {
+            return false;
+        }
+        Operation operation = document.getOperations().get(0);
+        return operation.getType() == OperationType.QUERY
+                && operation.getVariables().isEmpty()
+                && operation.getFields().size() == 1;
+    }
+
+    @Override
+    void send(List<Pending<Field>> batch) {
+        // Identical root fields share the same alias
+        Map<String, String> aliases = new LinkedHashMap<>();
+        StringBuilder query = new StringBuilder("query {");
+        String[] batchAliases = new String[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            String field = batch.get(i).item.build();
+            String alias = aliases.get(field);
+            if (alias == null) {
+                alias = ALIAS_PREFIX + aliases.size();
+                aliases.put(field, alias);
+                query.append(aliases.size() > 1 ? " " : "").append(alias).append(": ").append(field);
+            }
+            batchAliases[i] = alias;
+        }
+        query.append('}');
+        log.info("Coalesced " + batch.size() + " root fields into a query of " + aliases.size());
+
+        HttpResponse httpResponse = new HttpInvocation(configuration, uri, new DynaQLRequest(query.toString()), headers).invoke();
+        DynaQLResponse response = httpResponse.getGraphQLResponse();
+        if (aliases.size() > 1 && _isRejected(response)) {
+            log.warn("Coalesced query rejected, sending its " + aliases.size() + " root fields separately");
+            _sendSeparately(batch, aliases, batchAliases);
+            return;
+        }
+
+        Map<String, List<Error>> errors = _errorsByAlias(response, batch, batchAliases);
+
+        for (int i = 0; i < batch.size(); i++) {
+            String name = batch.get(i).item.getName();
+            String alias = batchAliases[i];
+
+            JsonObject data = null;
+            if (response.getData() != null && response.getData().containsKey(alias)) {
+                data = Json.createObjectBuilder().add(name, response.getData().get(alias)).build();
+            }
+
+            HttpResponse callerResponse = new HttpResponse();
+            httpResponse.getHeaders().forEach(callerResponse::header);
+            callerResponse.setGraphQLResponse(new DynaQLResponse(data, errors.get(alias)));
+            batch.get(i).future.complete(callerResponse);
+        }
+    }
+
+    /*
+        Not executed at all: no data, and errors about the whole query rather than a field of it.
+    */
+    private static boolean _isRejected(DynaQLResponse response) {
+        if (response.getData() != null || response.getErrors() == null || response.getErrors().isEmpty()) {
+            return false;
+        }
+        for (Error error : response.getErrors()) {
+            if (error.getPath() != null && error.getPath().length > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        Each distinct root field in its own query, a failure only failing the callers of that field.
+    */
+    private void _sendSeparately(List<Pending<Field>> batch, Map<String, String> aliases, String[] batchAliases) {
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            HttpResponse httpResponse = null;
+            RuntimeException failure = null;
+            try {
+                httpResponse = new HttpInvocation(configuration, uri, new DynaQLRequest("query {" + alias.getKey() + "}"), headers).invoke();
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (batchAliases[i].equals(alias.getValue())) {
+                    if (failure != null) {
+                        batch.get(i).future.completeExceptionally(failure);
+                    } else {
+                        batch.get(i).future.complete(httpResponse);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+        The errors of each alias, their path starting with the name of the root field instead of the alias.
+    */
+    private static Map<String, List<Error>> _errorsByAlias(DynaQLResponse response, List<Pending<Field>> batch, String[] batchAliases) {
+        Map<String, List<Error>> errors = new HashMap<>();
+        if (response.getErrors() == null) {
+            return errors;
+        }
+
+        Map<String, String> names = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            names.put(batchAliases[i], batch.get(i).item.getName());
+        }
+
+        for (Error error : response.getErrors()) {
+            Object[] path = error.getPath();
+            String name = path != null && path.length > 0 ? names.get(String.valueOf(path[0])) : null;
+            if (name == null) {
+                for (String alias : names.keySet()) {
+                    errors.computeIfAbsent(alias, k -> new ArrayList<>()).add(error);
+                }
+            } else {
+                Object[] callerPath = path.clone();
+                callerPath[0] = name;
+                errors.computeIfAbsent(String.valueOf(path[0]), k -> new ArrayList<>())
+                        .add(new DynaQLError(error.getMessage(), error.getLocations(), callerPath, error.getExtensions()));
+            }
+        }
+        return errors;
+    }
+
+}
@@ -39,6 +39,101 @@ public class HttpConfiguration {
     // The time waiting a connection from the pool/manager (specific to HTTP client)
     public static final String CONNECTION_MANAGER_TIMEOUT="http.connection.manager.timeout";
     
+    // Streams the request body with chunked transfer encoding instead of buffering it (Boolean)
+    public static final String REQUEST_CHUNKED="http.request.chunked";
+    
+    // Automatic Persisted Queries: sends the SHA-256 hash of the document instead of the document itself (Boolean)
+    public static final String PERSISTED_QUERIES="http.persisted.queries";
+    
+    // Automatic Persisted Queries: sends the document along with hashes not known to be registered yet, instead of the hash alone first (Boolean)
+    public static final String PERSISTED_QUERIES_DOCUMENT_FIRST="http.persisted.queries.document.first";
+    
+    // Sends query operations with HTTP GET, so that HTTP caches and CDNs can serve them (Boolean)
+    public static final String REQUEST_GET="http.request.get";
+    
+    // Beyond this URL length, queries are sent with POST (Integer, 2048 by default)
+    public static final String GET_MAX_URL_LENGTH="http.request.get.max.url.length";
+    
+    public static final int DEFAULT_GET_MAX_URL_LENGTH = 2048;
+    
+    // Number of GET responses kept for ETag revalidation, 0 disables it (Integer, 256 by default).
+    // The cache is shared by the whole JVM: the last configured size applies to every client
+    public static final String ETAG_CACHE_SIZE="http.etag.cache.size";
+    
+    // Compresses request bodies with this Content-Encoding: "gzip" or "deflate" (String)
+    public static final String REQUEST_COMPRESSION="http.request.compression";
+    
+    // Smaller request bodies are sent uncompressed (Integer, in bytes, 1024 by default)
+    public static final String REQUEST_COMPRESSION_THRESHOLD="http.request.compression.threshold";
+    
+    public static final int DEFAULT_REQUEST_COMPRESSION_THRESHOLD = 1024;
+    
+    // Sends Accept-Encoding and decompresses gzip/deflate responses while parsing them (Boolean, true by default)
+    public static final String RESPONSE_COMPRESSION="http.response.compression";
+    
+    // Media type of the request bodies, and preferred one for the responses (String, "application/json" by default)
+    public static final String CODEC="http.codec";
+    
+    // Maximum number of pooled connections, all routes together (Integer, 200 by default)
+    public static final String POOL_MAX_TOTAL="http.pool.max.total";
+    
+    // Maximum number of pooled connections to a same host (Integer, 20 by default)
+    public static final String POOL_MAX_PER_ROUTE="http.pool.max.per.route";
+    
+    // Pooled connections idle for longer are closed (Long, in milliseconds, 60000 by default)
+    public static final String POOL_IDLE_TIMEOUT="http.pool.idle.timeout";
+    
+    // Maximum time a connection is kept alive, when the server does not say less (Long, in milliseconds, 30000 by default)
+    public static final String KEEP_ALIVE="http.keep.alive";
+    
+    // Auto-batching and coalescing: requests submitted within this time window are sent together (Long, in milliseconds, 10 by default)
+    public static final String BATCH_WINDOW="http.batch.window";
+    
+    public static final long DEFAULT_BATCH_WINDOW = 10;
+    
+    // Auto-batching and coalescing: a batch is sent as soon as it holds this number of requests (Integer, 25 by default)
+    public static final String BATCH_MAX_SIZE="http.batch.max.size";
+    
+    public static final int DEFAULT_BATCH_MAX_SIZE = 25;
+    
+    // Identical requests in flight at the same time share a single exchange (Boolean)
+    public static final String SINGLE_FLIGHT="http.single.flight";
+    
+    // Mutations share exchanges too, when identical requests are shared (Boolean, false by default)
+    public static final String SINGLE_FLIGHT_MUTATIONS="http.single.flight.mutations";
+    
+    // Client-side cache of query responses, honouring Cache-Control (ResponseCache)
+    public static final String RESPONSE_CACHE="http.response.cache";
+    
+    // Request headers the cached responses depend on, comma-separated (String, all the headers by default)
+    public static final String RESPONSE_CACHE_KEY_HEADERS="http.response.cache.key.headers";
+    
+    // Attempts of a query, the first one included: connection refused, 502, 503, 504 and 429 with Retry-After are retried (Integer, 1 by default)
+    public static final String RETRY_MAX_ATTEMPTS="http.retry.max.attempts";
+    
+    // Base of the exponential backoff between attempts, fully jittered (Long, in milliseconds, 100 by default)
+    public static final String RETRY_BASE_DELAY="http.retry.base.delay";
+    
+    public static final long DEFAULT_RETRY_BASE_DELAY = 100;
+    
+    // Longest wait before an attempt, a longer Retry-After is not waited for (Long, in milliseconds, 10000 by default)
+    public static final String RETRY_MAX_DELAY="http.retry.max.delay";
+    
+    public static final long DEFAULT_RETRY_MAX_DELAY = 10000;
+    
+    // Retries earned per request sent to an endpoint, whose budget starts at and is capped to 10 retries (Double, 0.1 by default)
+    public static final String RETRY_BUDGET="http.retry.budget";
+    
+    public static final double DEFAULT_RETRY_BUDGET = 0.1;
+    
+    // Consecutive failures opening the circuit breaker of an endpoint, which is disabled when not set (Integer)
+    public static final String CIRCUIT_BREAKER_THRESHOLD="http.circuit.breaker.threshold";
+    
+    // Time an open circuit breaker fails requests before letting a probe through (Long, in milliseconds, 30000 by default)
+    public static final String CIRCUIT_BREAKER_OPEN_DURATION="http.circuit.breaker.open.duration";
+    
+    public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 30000;
+    
     private final Properties properties = new Properties();
     
     protected HttpConfiguration() {}
@@ -15,37 +15,73 @@
  */
 package com.worldline.graphql.dynaql.impl.http;
 
-import com.worldline.graphql.dynaql.impl.DynaQLError;
+import com.worldline.graphql.dynaql.impl.DynaQLRequest;
 import com.worldline.graphql.dynaql.impl.DynaQLResponse;
-import org.apache.commons.io.IOUtils;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodec;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodecs;
+import com.worldline.graphql.dynaql.impl.json.JsonValueWriter;
 import org.apache.http.Header;
-import org.apache.http.client.HttpResponseException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.entity.DeflateInputStream;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.eclipse.microprofile.graphql.client.Error;
+import org.apache.http.util.EntityUtils;
 import org.eclipse.microprofile.graphql.client.Request;
 import org.slf4j.LoggerFactory;
 
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import javax.json.bind.Jsonb;
-import javax.json.bind.JsonbBuilder;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.CODEC;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.GET_MAX_URL_LENGTH;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.PERSISTED_QUERIES;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.PERSISTED_QUERIES_DOCUMENT_FIRST;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.REQUEST_CHUNKED;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.REQUEST_COMPRESSION;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.REQUEST_COMPRESSION_THRESHOLD;
 import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.REQUEST_CONFIG;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.REQUEST_GET;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RESPONSE_CACHE;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RESPONSE_CACHE_KEY_HEADERS;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RESPONSE_COMPRESSION;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.SINGLE_FLIGHT;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.SINGLE_FLIGHT_MUTATIONS;
 
 
 public class HttpInvocation {
@@ -59,6 +95,8 @@ public class HttpInvocation {
 
     private static final int MAX_LOG_LENGTH = 128;
 
+    private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(null);
+
     protected HttpInvocation(HttpConfiguration configuration, URI uri, Request request, Map<String, String> headers) {
         this.configuration = configuration;
         this.uri = uri;
@@ -66,92 +104,720 @@ public class HttpInvocation {
         this.headers = headers;
     }
 
-    private String postHttp(StringEntity stringEntity, HttpResponse httpResponse) throws IOException {
+    private void _prepareRequest(HttpRequestBase httpRequest) {
+        prepareRequest(httpRequest, configuration, headers, codec());
+    }
+
+    static void prepareRequest(HttpRequestBase httpRequest, HttpConfiguration configuration, Map<String, String> headers, GraphQLCodec codec) {
+        httpRequest.setConfig((RequestConfig) configuration.get(REQUEST_CONFIG));
+
+        // Set the HTTP headers
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                httpRequest.addHeader(header.getKey(), header.getValue());
+            }
+        }
+        if (!httpRequest.containsHeader(HttpHeaders.ACCEPT)) {
+            httpRequest.addHeader(HttpHeaders.ACCEPT, GraphQLCodecs.accept(codec));
+        }
+        if (!Boolean.FALSE.equals(configuration.get(RESPONSE_COMPRESSION)) && !httpRequest.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            httpRequest.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip,deflate");
+        }
+    }
+
+    /*
+        Returns the decoded response body, or null when the server answered 304 Not Modified.
+    */
+    private DynaQLResponse executeHttp(HttpRequestBase httpRequest, HttpResponse httpResponse) throws IOException {
+        _prepareRequest(httpRequest);
+
+        // Shared by the invocations: neither the client nor its connections are closed here.
+        // Looked up for each exchange, so that an invocation built before HttpClientPool.closeAll() gets a new one
+        CloseableHttpClient httpClient = HttpClientPool.client(configuration);
+
+        try (CloseableHttpResponse serverResponse = httpClient.execute(httpRequest)) {
+            return _readResponse(serverResponse, httpResponse);
+        }
+    }
+
+    private DynaQLResponse _readResponse(org.apache.http.HttpResponse serverResponse, HttpResponse httpResponse) throws IOException {
+        Header[] headers = serverResponse.getAllHeaders();
+        for (int i = 0; i < headers.length; i++) {
+            httpResponse.header(headers[i].getName(), headers[i].getValue());
+        }
+
+        if (serverResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            log.info("Received GraphQL response: 304 Not Modified");
+            return null;
+        }
+
+        HttpEntity entity = serverResponse.getEntity();
+        ContentType contentType = ContentType.getOrDefault(entity);
+
+        if (serverResponse.getStatusLine().getStatusCode() != 200) {
+            String contentString = EntityUtils.toString(entity, StandardCharsets.UTF_8);
+            log.warn("HTTP response code NOK " + serverResponse.getStatusLine().getStatusCode());
+            Header retryAfter = serverResponse.getFirstHeader(HttpHeaders.RETRY_AFTER);
+            throw new HttpStatusException(serverResponse.getStatusLine().getStatusCode(), "The server responded with" + contentString,
+                    retryAfter != null ? retryAfter.getValue() : null);
+        }
 
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+        // Decoded according to the Content-Type chosen by the server, JSON when it is unknown
+        GraphQLCodec responseCodec = GraphQLCodecs.forMediaType(contentType.getMimeType());
+        if (responseCodec == null) {
+            responseCodec = GraphQLCodecs.json();
+        }
 
-            HttpPost httpPost = new HttpPost(uri);
+        // The (possibly decompressed) content is parsed as it is received, never held as a whole,
+        // and logged from its first bytes rather than serialized again
+        boolean logged = log.isInfoEnabled() && responseCodec == GraphQLCodecs.json();
+        DynaQLResponse response;
+        try (InputStream contentStream = logged
+                ? new PrefixCapturingInputStream(decodedContent(entity), MAX_LOG_LENGTH)
+                : decodedContent(entity)) {
+            response = responseCodec.readResponse(contentStream, contentType.getCharset());
+            if (logged) {
+                log.info("Received GraphQL response: " + contentStream);
+            }
+        }
+
+        return response;
+    }
+
+    /*
+        The blocking client decompresses by itself (and then drops the Content-Encoding), the async one does not.
+    */
+    static InputStream decodedContent(HttpEntity entity) throws IOException {
+        Header encoding = entity.getContentEncoding();
+        return decodedContent(entity.getContent(), encoding != null ? encoding.getValue() : null);
+    }
+
+    /*
+        Shared with the HTTP/2 transport, whose client does not decompress either.
+    */
+    static InputStream decodedContent(InputStream content, String encoding) throws IOException {
+        if (encoding != null) {
+            String value = encoding.trim();
+            if ("gzip".equalsIgnoreCase(value) || "x-gzip".equalsIgnoreCase(value)) {
+                return new GZIPInputStream(content, 8192);
+            } else if ("deflate".equalsIgnoreCase(value)) {
+                return new DeflateInputStream(content);
+            }
+        }
+        return content;
+    }
+
+    /*
+        Queries are sent with GET when configured, unless the URL would be too long: mutations always use POST.
+    */
+    private HttpRequestBase createRequest(boolean withQuery, boolean withPersistedQuery) {
+        return createRequest(withQuery, withPersistedQuery, true);
+    }
+
+    private HttpRequestBase createRequest(boolean withQuery, boolean withPersistedQuery, boolean streamable) {
+        if (Boolean.TRUE.equals(configuration.get(REQUEST_GET))
+                && graphqlRequest instanceof DynaQLRequest
+                && ((DynaQLRequest) graphqlRequest).getPreparedDocument().isQueryOnly()) {
+            String getUri = createGetUri((DynaQLRequest) graphqlRequest, withQuery, withPersistedQuery);
+
+            Integer maxLength = (Integer) configuration.get(GET_MAX_URL_LENGTH);
+            if (getUri.length() <= (maxLength != null ? maxLength : HttpConfiguration.DEFAULT_GET_MAX_URL_LENGTH)) {
+                log.info("Sending GraphQL request: GET " + getUri);
+                return new HttpGet(getUri);
+            }
+            log.debug("GET URL too long (" + getUri.length() + " characters), sending the request with POST");
+        }
+
+        HttpPost httpPost = new HttpPost(uri);
+        httpPost.setEntity(createRequestEntity(withQuery, withPersistedQuery, streamable));
+        return httpPost;
+    }
+
+    private String createGetUri(DynaQLRequest request, boolean withQuery, boolean withPersistedQuery) {
+        StringBuilder builder = new StringBuilder(uri.toString());
+        char separator = uri.getRawQuery() == null ? '?' : '&';
+        if (withQuery) {
+            builder.append(separator).append("query=").append(_urlEncode(request.getDocument()));
+            separator = '&';
+        }
+        if (request.getOperationName() != null) {
+            builder.append(separator).append("operationName=").append(_urlEncode(request.getOperationName()));
+            separator = '&';
+        }
+        if (!request.getVariables().isEmpty()) {
+            builder.append(separator).append("variables=").append(_urlEncode(request.toJsonVariables()));
+            separator = '&';
+        }
+        if (withPersistedQuery) {
+            String extensions = "{\"persistedQuery\":{\"version\":1,\"sha256Hash\":\"" + request.getPreparedDocument().getSha256Hex() + "\"}}";
+            builder.append(separator).append("extensions=").append(_urlEncode(extensions));
+        }
+        return builder.toString();
+    }
 
-            httpPost.setConfig((RequestConfig) configuration.get(REQUEST_CONFIG));
+    private static String _urlEncode(String value) {
+        try {
+            // Form encoding turns spaces into '+', percent-encoding is safer in a query string
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private GraphQLCodec codec() {
+        String mediaType = (String) configuration.get(CODEC);
+        if (mediaType == null) {
+            return GraphQLCodecs.json();
+        }
+        GraphQLCodec codec = GraphQLCodecs.forMediaType(mediaType);
+        if (codec == null) {
+            throw new IllegalArgumentException("No GraphQL codec registered for " + mediaType);
+        }
+        return codec;
+    }
+
+    private AbstractHttpEntity createRequestEntity(boolean withQuery, boolean withPersistedQuery, boolean streamable) {
+        GraphQLCodec codec = codec();
+        ContentType contentType = ContentType.parse(codec.getContentType());
+        String compression = (String) configuration.get(REQUEST_COMPRESSION);
+
+        // The async client needs a repeatable entity, it cannot stream one
+        if (streamable && Boolean.TRUE.equals(configuration.get(REQUEST_CHUNKED))) {
+            // Large variables are written straight to the socket, never buffered as a whole
+            log.info("Sending GraphQL request (chunked): " + graphqlRequest);
+            EntityTemplate entity;
+            if (compression == null) {
+                entity = new EntityTemplate(out -> codec.writeRequest(graphqlRequest, withQuery, withPersistedQuery, out));
+            } else {
+                // The size is unknown up front: a streamed body is always compressed
+                entity = new EntityTemplate(out -> {
+                    DeflaterOutputStream compressed = _compressingStream(out, compression);
+                    codec.writeRequest(graphqlRequest, withQuery, withPersistedQuery, compressed);
+                    compressed.finish();
+                });
+                entity.setContentEncoding(compression);
+            }
+            entity.setContentType(contentType.toString());
+            entity.setChunked(true);
+            return entity;
+        }
+
+        // With JSON, the query and operation name are pre-encoded once per request, only the variables are serialized here
+        byte[] body = codec.encodeRequest(graphqlRequest, withQuery, withPersistedQuery);
+        if (log.isInfoEnabled()) {
+            log.info("Sending GraphQL request: " + (codec == GraphQLCodecs.json() ? new String(body, StandardCharsets.UTF_8) : graphqlRequest.toString()));
+        }
+        return bytesEntity(body, contentType, configuration);
+    }
+
+    static AbstractHttpEntity bytesEntity(byte[] body, ContentType contentType, HttpConfiguration configuration) {
+        String compression = requestCompression(configuration, body.length);
+        if (compression == null) {
+            return new ByteArrayEntity(body, contentType);
+        }
+
+        ByteArrayEntity entity = new ByteArrayEntity(compress(body, compression), contentType);
+        entity.setContentEncoding(compression);
+        return entity;
+    }
+
+    /*
+        The Content-Encoding of a request body of the given length, null when it is sent as is.
+    */
+    static String requestCompression(HttpConfiguration configuration, int length) {
+        String compression = (String) configuration.get(REQUEST_COMPRESSION);
+        Integer threshold = (Integer) configuration.get(REQUEST_COMPRESSION_THRESHOLD);
+        return compression == null || length < (threshold != null ? threshold : HttpConfiguration.DEFAULT_REQUEST_COMPRESSION_THRESHOLD)
+                ? null : compression;
+    }
+
+    static byte[] compress(byte[] body, String compression) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try {
+            DeflaterOutputStream compressed = _compressingStream(out, compression);
+            compressed.write(body);
+            compressed.close();
+        } catch (IOException ex) {
+            throw new HttpInvocationException(ex);
+        }
+        log.debug("Request compressed with " + compression + ": " + body.length + " -> " + out.size() + " bytes");
+        return out.toByteArray();
+    }
+
+    private static DeflaterOutputStream _compressingStream(OutputStream out, String compression) throws IOException {
+        if ("gzip".equalsIgnoreCase(compression)) {
+            return new GZIPOutputStream(out, 8192);
+        } else if ("deflate".equalsIgnoreCase(compression)) {
+            // HTTP "deflate" is the zlib format, as written by DeflaterOutputStream
+            return new DeflaterOutputStream(out);
+        }
+        throw new IllegalArgumentException("Unsupported request compression: " + compression);
+    }
+
+    public HttpResponse invoke() {
+        ResponseCache cache = (ResponseCache) configuration.get(RESPONSE_CACHE);
+        if (cache != null
+                && graphqlRequest instanceof DynaQLRequest
+                && ((DynaQLRequest) graphqlRequest).getPreparedDocument().isQueryOnly()) {
+            return cache.invoke(_requestKey((DynaQLRequest) graphqlRequest, (String) configuration.get(RESPONSE_CACHE_KEY_HEADERS)), this::_invokeShared);
+        }
+
+        return _invokeShared();
+    }
+
+    private HttpResponse _invokeShared() {
+        if (Boolean.TRUE.equals(configuration.get(SINGLE_FLIGHT))
+                && graphqlRequest instanceof DynaQLRequest
+                && (((DynaQLRequest) graphqlRequest).getPreparedDocument().isQueryOnly()
+                    || Boolean.TRUE.equals(configuration.get(SINGLE_FLIGHT_MUTATIONS)))) {
+            return SingleFlight.invoke(_requestKey((DynaQLRequest) graphqlRequest, null), this::_invokeResilient);
+        }
+
+        return _invokeResilient();
+    }
+
+    /*
+        Retries and circuit breaker, when configured: only queries are retried, mutations not being idempotent.
+    */
+    private HttpResponse _invokeResilient() {
+        boolean retried = RetryPolicy.isEnabled(configuration)
+                && graphqlRequest instanceof DynaQLRequest
+                && ((DynaQLRequest) graphqlRequest).getPreparedDocument().isQueryOnly();
+        boolean broken = CircuitBreaker.isEnabled(configuration);
+        if (!retried && !broken) {
+            return _invoke();
+        }
+
+        if (retried) {
+            RetryPolicy.requested(configuration, uri);
+        }
+        for (int attempts = 1; ; attempts++) {
+            if (broken && !CircuitBreaker.allow(configuration, uri)) {
+                throw new HttpInvocationException("Circuit breaker open for " + uri);
+            }
+
+            try {
+                HttpResponse httpResponse = _invoke();
+                if (broken) {
+                    CircuitBreaker.success(uri);
+                }
+                return httpResponse;
+            } catch (HttpInvocationException ex) {
+                if (broken) {
+                    if (RetryPolicy.isEndpointFailure(ex)) {
+                        CircuitBreaker.failure(configuration, uri);
+                    } else {
+                        CircuitBreaker.success(uri);
+                    }
+                }
 
-            // Set the HTTP headers
-            if (headers != null) {
-                for (Map.Entry<String, String> header : headers.entrySet()) {
-                    httpPost.addHeader(header.getKey(), header.getValue());
+                long delay = retried ? RetryPolicy.retryDelay(configuration, uri, attempts, ex) : -1;
+                if (delay < 0) {
+                    throw ex;
+                }
+                log.warn("Attempt " + attempts + " failed, retrying in " + delay + " ms: " + ex.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
                 }
             }
+        }
+    }
+
+    private HttpResponse _invoke() {
+        if (Boolean.TRUE.equals(configuration.get(PERSISTED_QUERIES))
+                && graphqlRequest instanceof DynaQLRequest
+                && PersistedQueries.isSupported(uri)) {
+            return invokePersistedQuery();
+        }
 
-            httpPost.setEntity(stringEntity);
+        return send(createRequest(true, false));
+    }
 
-            try (CloseableHttpResponse serverResponse = httpClient.execute(httpPost)) {
+    /*
+        Identical requests: same endpoint, headers, canonical document, operation name and variables, whatever their order.
+        Only the given headers (comma-separated names) are compared, all of them when null.
+    */
+    private String _requestKey(DynaQLRequest request, String headerNames) {
+        StringWriter variables = new StringWriter(64);
+        try (JsonGenerator generator = GENERATOR_FACTORY.createGenerator(variables)) {
+            JsonValueWriter.writeObject(generator, new TreeMap<>(request.getVariables()));
+        }
 
-                Header[] headers = serverResponse.getAllHeaders();
-                for (int i = 0; i < headers.length; i++) {
-                    httpResponse.header(headers[i].getName(), headers[i].getValue());
+        Map<String, String> keyHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            keyHeaders.putAll(headers);
+            if (headerNames != null) {
+                Set<String> selected = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                for (String name : headerNames.split(",")) {
+                    selected.add(name.trim());
                 }
+                keyHeaders.keySet().retainAll(selected);
+            }
+        }
+
+        return uri + " " + keyHeaders
+                + " " + request.getOperationName()
+                + " " + variables
+                + " " + request.getPreparedDocument().getCanonicalSha256Hex();
+    }
 
-                InputStream contentStream = serverResponse.getEntity().getContent();
+    /*
+        Non-blocking invocation: the response is decoded, and the future completed, on the common ForkJoinPool.
+    */
+    public CompletableFuture<HttpResponse> invokeAsync() {
+        return invokeAsync(ForkJoinPool.commonPool());
+    }
+
+    /*
+        Non-blocking invocation: the response is decoded, and the future completed, on the given executor,
+        never on the I/O thread. Cancelling the future aborts the exchange in flight.
+        Like invoke(), it goes through the response cache, single flight, retries and circuit breaker when
+        configured: a response served from the cache completes the future right away, on the calling thread,
+        and the backoff between attempts is scheduled, never blocking a thread.
+    */
+    public CompletableFuture<HttpResponse> invokeAsync(Executor executor) {
+        ResponseCache cache = (ResponseCache) configuration.get(RESPONSE_CACHE);
+        if (cache != null
+                && graphqlRequest instanceof DynaQLRequest
+                && ((DynaQLRequest) graphqlRequest).getPreparedDocument().isQueryOnly()) {
+            return cache.invokeAsync(_requestKey((DynaQLRequest) graphqlRequest, (String) configuration.get(RESPONSE_CACHE_KEY_HEADERS)),
+                    () -> _invokeSharedAsync(executor));
+        }
+
+        return _invokeSharedAsync(executor);
+    }
+
+    private CompletableFuture<HttpResponse> _invokeSharedAsync(Executor executor) {
+        if (Boolean.TRUE.equals(configuration.get(SINGLE_FLIGHT))
+                && graphqlRequest instanceof DynaQLRequest
+                && (((DynaQLRequest) graphqlRequest).getPreparedDocument().isQueryOnly()
+                    || Boolean.TRUE.equals(configuration.get(SINGLE_FLIGHT_MUTATIONS)))) {
+            return SingleFlight.invokeAsync(_requestKey((DynaQLRequest) graphqlRequest, null), () -> _invokeResilientAsync(executor));
+        }
+
+        return _invokeResilientAsync(executor);
+    }
 
-                String contentString = IOUtils.toString(contentStream, "UTF-8");
+    /*
+        Same retries and circuit breaker as _invokeResilient(), but the backoff is scheduled rather than slept:
+        the next attempt is started on the executor once the delay has elapsed.
+    */
+    private CompletableFuture<HttpResponse> _invokeResilientAsync(Executor executor) {
+        boolean retried = RetryPolicy.isEnabled(configuration)
+                && graphqlRequest instanceof DynaQLRequest
+                && ((DynaQLRequest) graphqlRequest).getPreparedDocument().isQueryOnly();
+        boolean broken = CircuitBreaker.isEnabled(configuration);
+        if (!retried && !broken) {
+            return _invokeAsync(executor);
+        }
 
-                if (serverResponse.getStatusLine().getStatusCode() != 200) {
-                    log.warn("HTTP response code NOK " + serverResponse.getStatusLine().getStatusCode());
-                    throw new HttpResponseException(serverResponse.getStatusLine().getStatusCode(), "The server responded with" + contentString);
+        if (retried) {
+            RetryPolicy.requested(configuration, uri);
+        }
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+
+        // The attempt in flight, or the next one waiting for its delay, aborted when the result is cancelled
+        AtomicReference<Future<?>> inFlight = new AtomicReference<>();
+        result.whenComplete((r, ex) -> {
+            Future<?> pending = inFlight.get();
+            if (result.isCancelled() && pending != null) {
+                pending.cancel(false);
+            }
+        });
+
+        _attemptAsync(executor, result, inFlight, 1, retried, broken);
+        return result;
+    }
+
+    private void _attemptAsync(Executor executor, CompletableFuture<HttpResponse> result, AtomicReference<Future<?>> inFlight,
+                               int attempts, boolean retried, boolean broken) {
+        if (result.isDone()) {
+            return;
+        }
+        if (broken && !CircuitBreaker.allow(configuration, uri)) {
+            result.completeExceptionally(new HttpInvocationException("Circuit breaker open for " + uri));
+            return;
+        }
+
+        CompletableFuture<HttpResponse> attempt;
+        try {
+            attempt = _invokeAsync(executor);
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+            return;
+        }
+        inFlight.set(attempt);
+        if (result.isCancelled()) {
+            attempt.cancel(false);
+        }
+
+        attempt.whenComplete((httpResponse, failure) -> {
+            if (failure == null) {
+                if (broken) {
+                    CircuitBreaker.success(uri);
                 }
+                result.complete(httpResponse);
+                return;
+            }
 
-                log.info("Received GraphQL response: " + (contentString.length() <= MAX_LOG_LENGTH ? contentString : contentString.substring(0, MAX_LOG_LENGTH) + " etc..."));
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if (!(cause instanceof HttpInvocationException)) {
+                /* Cancelled or rejected by the executor: the endpoint is not to blame */
+                result.completeExceptionally(cause);
+                return;
+            }
+            HttpInvocationException ex = (HttpInvocationException) cause;
+            if (broken) {
+                if (RetryPolicy.isEndpointFailure(ex)) {
+                    CircuitBreaker.failure(configuration, uri);
+                } else {
+                    CircuitBreaker.success(uri);
+                }
+            }
 
-                return contentString;
+            long delay = retried ? RetryPolicy.retryDelay(configuration, uri, attempts, ex) : -1;
+            if (delay < 0 || result.isDone()) {
+                result.completeExceptionally(ex);
+                return;
+            }
+            log.warn("Attempt " + attempts + " failed, retrying in " + delay + " ms: " + ex.getMessage());
+            inFlight.set(RetryPolicy.schedule(() -> {
+                try {
+                    executor.execute(() -> _attemptAsync(executor, result, inFlight, attempts + 1, retried, broken));
+                } catch (RejectedExecutionException rejected) {
+                    result.completeExceptionally(rejected);
+                }
+            }, delay));
+            if (result.isCancelled()) {
+                inFlight.get().cancel(false);
             }
+        });
+    }
 
+    private CompletableFuture<HttpResponse> _invokeAsync(Executor executor) {
+        if (Boolean.TRUE.equals(configuration.get(PERSISTED_QUERIES))
+                && graphqlRequest instanceof DynaQLRequest
+                && PersistedQueries.isSupported(uri)) {
+            return invokePersistedQueryAsync(executor);
         }
 
+        return sendAsync(createRequest(true, false, false), executor);
     }
 
-    public HttpResponse invoke() {
-        String jsonRequest = graphqlRequest.toJson();
-        log.info("Sending GraphQL request: " + jsonRequest);
+    /*
+        Automatic Persisted Queries: the hash alone, then the document along with the hash when the server does
+        not know it. With PERSISTED_QUERIES_DOCUMENT_FIRST, hashes not known to be registered are sent along with
+        their document right away: this saves the PersistedQueryNotFound round trip, but uploads every document
+        again after a restart or once its hash is evicted from PersistedQueries.
+    */
+    private HttpResponse invokePersistedQuery() {
+        HttpResponse httpResponse = send(createRequest(_isDocumentFirst(), true));
+
+        HttpRequestBase retry = persistedQueryRetry(httpResponse, true);
+        if (retry != null) {
+            httpResponse = send(retry);
+            persistedQueryRetried(httpResponse);
+        }
 
-        StringEntity stringEntity = new StringEntity(jsonRequest, ContentType.APPLICATION_JSON);
+        return httpResponse;
+    }
 
+    private CompletableFuture<HttpResponse> invokePersistedQueryAsync(Executor executor) {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+
+        // The exchange in flight, aborted when the result is cancelled
+        AtomicReference<CompletableFuture<HttpResponse>> inFlight = new AtomicReference<>(sendAsync(createRequest(_isDocumentFirst(), true, false), executor));
+        result.whenComplete((r, ex) -> {
+            if (result.isCancelled()) {
+                inFlight.get().cancel(false);
+            }
+        });
+
+        inFlight.get().whenComplete((httpResponse, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(ex);
+                return;
+            }
+            HttpRequestBase retry = persistedQueryRetry(httpResponse, false);
+            if (retry == null) {
+                result.complete(httpResponse);
+                return;
+            }
+            CompletableFuture<HttpResponse> retried = sendAsync(retry, executor);
+            inFlight.set(retried);
+            if (result.isCancelled()) {
+                retried.cancel(false);
+            }
+            retried.whenComplete((retriedResponse, retryEx) -> {
+                if (retryEx != null) {
+                    result.completeExceptionally(retryEx);
+                } else {
+                    persistedQueryRetried(retriedResponse);
+                    result.complete(retriedResponse);
+                }
+            });
+        });
+
+        return result;
+    }
+
+    private boolean _isDocumentFirst() {
+        return Boolean.TRUE.equals(configuration.get(PERSISTED_QUERIES_DOCUMENT_FIRST))
+                && !PersistedQueries.isKnown(uri, ((DynaQLRequest) graphqlRequest).getPreparedDocument().getSha256Hex());
+    }
+
+    /*
+        What to send after the hash alone, null when the server knew the hash.
+    */
+    private HttpRequestBase persistedQueryRetry(HttpResponse httpResponse, boolean streamable) {
+        String hash = ((DynaQLRequest) graphqlRequest).getPreparedDocument().getSha256Hex();
+        DynaQLResponse response = httpResponse.getGraphQLResponse();
+
+        if (PersistedQueries.hasError(response, PersistedQueries.NOT_FOUND)) {
+            log.info("Persisted query " + hash + " not found, sending the full document");
+            PersistedQueries.forget(uri, hash);
+            return createRequest(true, true, streamable);
+        } else if (PersistedQueries.hasError(response, PersistedQueries.NOT_SUPPORTED)) {
+            log.warn("Persisted queries not supported by " + uri + ", sending full documents from now on");
+            PersistedQueries.unsupported(uri);
+            return createRequest(true, false, streamable);
+        }
+
+        PersistedQueries.known(uri, hash);
+        return null;
+    }
+
+    private void persistedQueryRetried(HttpResponse httpResponse) {
+        if (PersistedQueries.isSupported(uri)
+                && !PersistedQueries.hasError(httpResponse.getGraphQLResponse(), PersistedQueries.NOT_SUPPORTED)) {
+            PersistedQueries.known(uri, ((DynaQLRequest) graphqlRequest).getPreparedDocument().getSha256Hex());
+        }
+    }
+
+    private HttpResponse send(HttpRequestBase httpRequest) {
         HttpResponse httpResponse = new HttpResponse();
+        String etagKey = _etagKey(httpRequest);
+        EntityTags.CachedResponse cached = _revalidate(httpRequest, etagKey);
 
-        String responseBody;
+        DynaQLResponse response;
         try {
-            responseBody = postHttp(stringEntity, httpResponse);
+            response = executeHttp(httpRequest, httpResponse);
         } catch (IOException ex) {
             throw new HttpInvocationException(ex);
         }
 
-        JsonReader jsonReader = Json.createReader(new StringReader(responseBody));
-        JsonObject jsonResponse = jsonReader.readObject();
+        return _complete(httpResponse, response, etagKey, cached);
+    }
 
-        JsonObject data = null;
-        if (jsonResponse.containsKey("data")) {
-            if (!jsonResponse.isNull("data")) {
-               data = jsonResponse.getJsonObject("data");
-            } else {
-                log.warn("GraphQL data element is null");
+    private CompletableFuture<HttpResponse> sendAsync(HttpRequestBase httpRequest, Executor executor) {
+        HttpResponse httpResponse = new HttpResponse();
+        String etagKey = _etagKey(httpRequest);
+        EntityTags.CachedResponse cached = _revalidate(httpRequest, etagKey);
+        _prepareRequest(httpRequest);
+
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        Future<org.apache.http.HttpResponse> exchange = HttpClientPool.asyncClient(configuration).execute(httpRequest, new FutureCallback<org.apache.http.HttpResponse>() {
+            @Override
+            public void completed(org.apache.http.HttpResponse serverResponse) {
+                _dispatch(executor, future, () -> {
+                    try {
+                        return _complete(httpResponse, _readResponse(serverResponse, httpResponse), etagKey, cached);
+                    } catch (IOException ex) {
+                        throw new HttpInvocationException(ex);
+                    }
+                });
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                _dispatch(executor, future, () -> {
+                    throw new HttpInvocationException(ex);
+                });
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+
+        future.whenComplete((r, ex) -> {
+            if (future.isCancelled()) {
+                exchange.cancel(true);
             }
+        });
+        return future;
+    }
+
+    /*
+        Runs the completion on the executor: neither decoding nor the caller's stages run on the I/O reactor thread.
+    */
+    private static void _dispatch(Executor executor, CompletableFuture<HttpResponse> future, Supplier<HttpResponse> completion) {
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(completion.get());
+                } catch (RuntimeException ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
         }
+    }
 
-        List<Error> errors = null;
-        if (jsonResponse.containsKey("errors")) {
-            log.warn("GraphQL errors element detected");
-            JsonArray rawErrors = jsonResponse.getJsonArray("errors");
-            Jsonb jsonb = JsonbBuilder.create();
-            errors = jsonb.fromJson(rawErrors.toString(), new ArrayList<DynaQLError>() {
-            }.getClass().getGenericSuperclass());
-            try {
-                jsonb.close();
-            } catch (Exception ignore) {
-            } // Ugly!!!
+    /*
+        GET responses are revalidated with their ETag.
+    */
+    private String _etagKey(HttpRequestBase httpRequest) {
+        if (httpRequest instanceof HttpGet) {
+            return httpRequest.getURI() + " " + (headers == null ? "{}" : new TreeMap<>(headers));
         }
+        return null;
+    }
 
-        httpResponse.setGraphQLResponse(new DynaQLResponse(data, errors));
+    private static EntityTags.CachedResponse _revalidate(HttpRequestBase httpRequest, String etagKey) {
+        EntityTags.CachedResponse cached = etagKey == null ? null : EntityTags.get(etagKey);
+        if (cached != null) {
+            httpRequest.addHeader(HttpHeaders.IF_NONE_MATCH, cached.getETag());
+        }
+        return cached;
+    }
+
+    private static HttpResponse _complete(HttpResponse httpResponse, DynaQLResponse response, String etagKey, EntityTags.CachedResponse cached) {
+        if (response == null) {
+            if (cached == null) {
+                throw new HttpInvocationException("304 Not Modified received without a cached response");
+            }
+            httpResponse.setGraphQLResponse(cached.getResponse());
+            return httpResponse;
+        }
+
+        httpResponse.setGraphQLResponse(response);
+
+        if (etagKey != null) {
+            String etag = _header(httpResponse, HttpHeaders.ETAG);
+            if (etag != null) {
+                EntityTags.put(etagKey, etag, response);
+            } else if (cached != null) {
+                EntityTags.remove(etagKey);
+            }
+        }
         return httpResponse;
     }
 
+    private static String _header(HttpResponse httpResponse, String name) {
+        for (Map.Entry<String, String> header : httpResponse.getHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
     public Object getConfiguration(String key) {
         return configuration.get(key);
     }
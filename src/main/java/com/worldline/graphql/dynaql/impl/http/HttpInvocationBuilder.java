@@ -74,7 +74,7 @@ public class HttpInvocationBuilder {
         return this;
     }
 
-    private void setProxy(RequestConfig.Builder configBuilder) {
+    private static void setProxy(HttpConfiguration configuration, RequestConfig.Builder configBuilder) {
 
         String hostname = (String) configuration.get(HttpConfiguration.PROXY_HOSTNAME);
         if (hostname == null) {
@@ -90,7 +90,7 @@ public class HttpInvocationBuilder {
 
     }
 
-    private void setTimeout(RequestConfig.Builder configBuilder) {
+    private static void setTimeout(HttpConfiguration configuration, RequestConfig.Builder configBuilder) {
 
         // Socket connection timeout
         Long connectTimeout = (Long) configuration.get(HttpConfiguration.CONNECT_TIMEOUT);
@@ -118,13 +118,26 @@ public class HttpInvocationBuilder {
     }
 
     public HttpInvocation build() {
+        configure(configuration);
+
+        return new HttpInvocation(configuration, uri, graphqlRequest, headers);
+    }
+
+    /*
+        Completes the configuration with what the invocations share: the request config. The pooled client
+        is looked up for each exchange, see HttpClientPool.closeAll().
+    */
+    static void configure(HttpConfiguration configuration) {
         RequestConfig.Builder configBuilder = RequestConfig.custom();
-        setProxy(configBuilder);
-        setTimeout(configBuilder);
-        
+        setProxy(configuration, configBuilder);
+        setTimeout(configuration, configBuilder);
+
         configuration.property(HttpConfiguration.REQUEST_CONFIG, configBuilder.build());
-        
-        return new HttpInvocation(configuration, uri, graphqlRequest, headers);
+
+        Integer etagCacheSize = (Integer) configuration.get(HttpConfiguration.ETAG_CACHE_SIZE);
+        if (etagCacheSize != null) {
+            EntityTags.resize(etagCacheSize);
+        }
     }
 
 }
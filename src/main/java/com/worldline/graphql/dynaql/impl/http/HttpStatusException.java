@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.apache.http.client.HttpResponseException;
+
+/**
+ * A response other than 200 OK, with the Retry-After header the server may have sent along.
+ */
+public class HttpStatusException extends HttpResponseException {
+
+    private final String retryAfter;
+
+    public HttpStatusException(int statusCode, String reasonPhrase, String retryAfter) {
+        super(statusCode, reasonPhrase);
+        this.retryAfter = retryAfter;
+    }
+
+    /*
+        A number of seconds or an HTTP date, null when the header was not sent.
+    */
+    public String getRetryAfter() {
+        return retryAfter;
+    }
+}
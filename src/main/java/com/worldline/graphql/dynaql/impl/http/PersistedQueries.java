@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 jefrajames.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import org.eclipse.microprofile.graphql.client.Error;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the client learnt about Automatic Persisted Queries, per endpoint: the hashes the
+ * server is known to have registered, and the endpoints that do not support persisted queries.
+ * <p>
+ * Hashes are sent alone first. With {@link HttpConfiguration#PERSISTED_QUERIES_DOCUMENT_FIRST}, only
+ * the known ones are, the other ones being sent along with their document. Only the most recently
+ * used hashes of each endpoint are remembered: with dynamic documents, the others are forgotten
+ * instead of accumulating for the life of the JVM.
+ */
+public final class PersistedQueries {
+
+    static final String NOT_FOUND = "PersistedQueryNotFound";
+    static final String NOT_SUPPORTED = "PersistedQueryNotSupported";
+
+    // Known hashes per endpoint
+    public static final int MAX_KNOWN_HASHES = 1024;
+
+    private static final Map<URI, Map<String, Boolean>> KNOWN_HASHES = new ConcurrentHashMap<>();
+    private static final Set<URI> UNSUPPORTED = ConcurrentHashMap.newKeySet();
+
+    public static boolean isKnown(URI endpoint, String sha256Hash) {
+        Map<String, Boolean> hashes = KNOWN_HASHES.get(endpoint);
+        return hashes != null && hashes.get(sha256Hash) != null;
+    }
+
+    /*
+        Number of hashes remembered for the endpoint.
+    */
+    public static int knownCount(URI endpoint) {
+        Map<String, Boolean> hashes = KNOWN_HASHES.get(endpoint);
+        return hashes == null ? 0 : hashes.size();
+    }
+
+    public static boolean isSupported(URI endpoint) {
+        return !UNSUPPORTED.contains(endpoint);
+    }
+
+    public static void clear() {
+        KNOWN_HASHES.clear();
+        UNSUPPORTED.clear();
+    }
+
+    static void known(URI endpoint, String sha256Hash) {
+        KNOWN_HASHES.computeIfAbsent(endpoint, k -> _newLru()).put(sha256Hash, Boolean.TRUE);
+    }
+
+    static void forget(URI endpoint, String sha256Hash) {
+        Map<String, Boolean> hashes = KNOWN_HASHES.get(endpoint);
+        if (hashes != null) {
+            hashes.remove(sha256Hash);
+        }
+    }
+
+    static void unsupported(URI endpoint) {
+        UNSUPPORTED.add(endpoint);
+        KNOWN_HASHES.remove(endpoint);
+    }
+
+    /*
+        Both the Apollo message and the error code of the extensions are recognized.
+    */
+    static boolean hasError(DynaQLResponse response, String error) {
+        if (response.getErrors() == null) {
+            return false;
+        }
+        String code = NOT_FOUND.equals(error) ? "PERSISTED_QUERY_NOT_FOUND" : "PERSISTED_QUERY_NOT_SUPPORTED";
+        for (Error e : response.getErrors()) {
+            if (error.equals(e.getMessage())
+                    || (e.getExtensions() != null && code.equals(e.getExtensions().get("code")))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+        In access order: get() marks a hash as recently used, the least recently used one is removed when full.
+    */
+    private static Map<String, Boolean> _newLru() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_KNOWN_HASHES;
+            }
+        });
+    }
+
+    private PersistedQueries() {
+        // HideUtilityClassConstructor
+    }
+}
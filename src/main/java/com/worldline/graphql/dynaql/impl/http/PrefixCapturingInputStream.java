@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps a copy of the first bytes read through it, so that a response can be logged without
+ * being serialized again once parsed.
+ */
+final class PrefixCapturingInputStream extends FilterInputStream {
+
+    private final byte[] prefix;
+    private int length;
+    private long count;
+
+    PrefixCapturingInputStream(InputStream in, int maxLength) {
+        super(in);
+        this.prefix = new byte[maxLength];
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            if (length < prefix.length) {
+                prefix[length++] = (byte) b;
+            }
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            int captured = Math.min(n, prefix.length - length);
+            if (captured > 0) {
+                System.arraycopy(b, off, prefix, length, captured);
+                length += captured;
+            }
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /*
+        The bytes read so far, as UTF-8 text truncated to the maximum length.
+    */
+    @Override
+    public String toString() {
+        String text = new String(prefix, 0, length, StandardCharsets.UTF_8);
+        return count <= length ? text : text + " etc... (" + count + " bytes)";
+    }
+}
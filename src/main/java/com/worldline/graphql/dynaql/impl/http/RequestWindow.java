@@ -0,0 +1,165 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.BATCH_MAX_SIZE;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.BATCH_WINDOW;
+
+/**
+ * Collects the items submitted within a time window, then hands them over together to {@link #send}:
+ * when the window of the first item elapses, or as soon as the maximum size is reached.
+ */
+abstract class RequestWindow<T> implements AutoCloseable {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(RequestWindow.class);
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "graphql-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ExecutorService SENDERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "graphql-batch-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static final class Pending<T> {
+        final T item;
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+
+        private Pending(T item) {
+            this.item = item;
+        }
+    }
+
+    private final Executor executor;
+    private final long window;
+    private final int maxSize;
+
+    private List<Pending<T>> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+
+    RequestWindow(HttpConfiguration configuration, Executor executor) {
+        this.executor = executor != null ? executor : SENDERS;
+
+        Number window = (Number) configuration.get(BATCH_WINDOW);
+        this.window = window != null ? window.longValue() : HttpConfiguration.DEFAULT_BATCH_WINDOW;
+        Number maxSize = (Number) configuration.get(BATCH_MAX_SIZE);
+        this.maxSize = maxSize != null ? maxSize.intValue() : HttpConfiguration.DEFAULT_BATCH_MAX_SIZE;
+        if (this.maxSize < 1) {
+            throw new IllegalArgumentException(BATCH_MAX_SIZE + " must be positive: " + this.maxSize);
+        }
+    }
+
+    Executor executor() {
+        return executor;
+    }
+
+    /*
+        Sends the given items together, on the executor: each future is to be completed, normally or exceptionally.
+    */
+    abstract void send(List<Pending<T>> batch);
+
+    CompletableFuture<HttpResponse> enqueue(T item) {
+        Pending<T> pendingItem = new Pending<>(item);
+        List<Pending<T>> full = null;
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException(getClass().getSimpleName() + " closed");
+            }
+            pending.add(pendingItem);
+            if (pending.size() >= maxSize) {
+                full = _drain();
+            } else if (pending.size() == 1) {
+                scheduledFlush = TIMER.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (full != null) {
+            _send(full);
+        }
+        return pendingItem.future;
+    }
+
+    /*
+        Sends the pending items now, without waiting for the end of the window.
+    */
+    public void flush() {
+        List<Pending<T>> batch;
+        synchronized (this) {
+            batch = _drain();
+        }
+        if (!batch.isEmpty()) {
+            _send(batch);
+        }
+    }
+
+    /*
+        Sends the pending items, then refuses new ones.
+    */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+    }
+
+    private List<Pending<T>> _drain() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<Pending<T>> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void _send(List<Pending<T>> batch) {
+        try {
+            executor.execute(() -> {
+                try {
+                    send(batch);
+                } catch (RuntimeException ex) {
+                    log.warn("GraphQL batch of " + batch.size() + " requests failed: " + ex.getMessage());
+                    for (Pending<T> pendingItem : batch) {
+                        pendingItem.future.completeExceptionally(ex);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            for (Pending<T> pendingItem : batch) {
+                pendingItem.future.completeExceptionally(ex);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import com.worldline.graphql.dynaql.impl.cache.CacheEntry;
+import com.worldline.graphql.dynaql.impl.cache.HeapResponseStore;
+import com.worldline.graphql.dynaql.impl.cache.ResponseStore;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Client-side cache of query responses, set on the invocations with {@link HttpConfiguration#RESPONSE_CACHE}.
+ * <p>
+ * Only responses without errors, carrying a Cache-Control max-age, are stored: for max-age minus their Age,
+ * plus their stale-while-revalidate duration during which they are served while being refreshed in the
+ * background. no-store and no-cache responses are never stored.
+ */
+public class ResponseCache {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(ResponseCache.class);
+
+    private static final ExecutorService REFRESHERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "graphql-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ResponseStore store;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    // Keys being refreshed in the background
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public ResponseCache(ResponseStore store) {
+        this.store = store;
+    }
+
+    /*
+        An LRU cache on the heap, bounded by its number of entries and their size in bytes.
+    */
+    public ResponseCache(int maxEntries, long maxBytes) {
+        this(new HeapResponseStore(maxEntries, maxBytes));
+    }
+
+    public ResponseStore getStore() {
+        return store;
+    }
+
+    /*
+        Responses served from the cache, stale ones included.
+    */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /*
+        Stale responses served while being refreshed in the background.
+    */
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return store.getEvictionCount();
+    }
+
+    public void clear() {
+        store.clear();
+    }
+
+    HttpResponse invoke(String key, Supplier<HttpResponse> exchange) {
+        long now = System.currentTimeMillis();
+        CacheEntry entry = store.get(key);
+
+        if (entry != null && entry.isFresh(now)) {
+            hitCount.incrementAndGet();
+            return _toHttpResponse(entry);
+        }
+
+        if (entry != null && entry.isUsable(now)) {
+            hitCount.incrementAndGet();
+            staleHitCount.incrementAndGet();
+            _refresh(key, exchange);
+            return _toHttpResponse(entry);
+        }
+
+        missCount.incrementAndGet();
+        HttpResponse httpResponse = exchange.get();
+        _store(key, httpResponse);
+        return httpResponse;
+    }
+
+    /*
+        Non-blocking variant: a cached response completes the future right away, on the calling thread.
+        Stale responses are refreshed in the background as well. Cancelling the future of a miss aborts the exchange.
+    */
+    CompletableFuture<HttpResponse> invokeAsync(String key, Supplier<CompletableFuture<HttpResponse>> exchange) {
+        long now = System.currentTimeMillis();
+        CacheEntry entry = store.get(key);
+
+        if (entry != null && entry.isFresh(now)) {
+            hitCount.incrementAndGet();
+            return CompletableFuture.completedFuture(_toHttpResponse(entry));
+        }
+
+        if (entry != null && entry.isUsable(now)) {
+            hitCount.incrementAndGet();
+            staleHitCount.incrementAndGet();
+            _refresh(key, () -> exchange.get().join());
+            return CompletableFuture.completedFuture(_toHttpResponse(entry));
+        }
+
+        missCount.incrementAndGet();
+        CompletableFuture<HttpResponse> exchanged = exchange.get();
+        CompletableFuture<HttpResponse> result = exchanged.thenApply(httpResponse -> {
+            _store(key, httpResponse);
+            return httpResponse;
+        });
+        result.whenComplete((r, ex) -> {
+            if (result.isCancelled()) {
+                exchanged.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private void _refresh(String key, Supplier<HttpResponse> exchange) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            REFRESHERS.execute(() -> {
+                try {
+                    _store(key, exchange.get());
+                } catch (RuntimeException ex) {
+                    log.warn("Cannot refresh a cached GraphQL response: " + ex.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            refreshing.remove(key);
+        }
+    }
+
+    private void _store(String key, HttpResponse httpResponse) {
+        DynaQLResponse response = httpResponse.getGraphQLResponse();
+        if (response == null || response.hasError() || !response.hasData()) {
+            return;
+        }
+
+        String cacheControl = _header(httpResponse.getHeaders(), "Cache-Control");
+        if (cacheControl == null) {
+            return;
+        }
+
+        long maxAge = -1;
+        long staleWhileRevalidate = 0;
+        for (String directive : cacheControl.split(",")) {
+            String name = directive.trim().toLowerCase();
+            String value = null;
+            int equals = name.indexOf('=');
+            if (equals > 0) {
+                value = name.substring(equals + 1).trim().replace("\"", "");
+                name = name.substring(0, equals).trim();
+            }
+            if ("no-store".equals(name) || "no-cache".equals(name)) {
+                store.remove(key);
+                return;
+            } else if ("max-age".equals(name)) {
+                maxAge = _seconds(value);
+            } else if ("stale-while-revalidate".equals(name)) {
+                staleWhileRevalidate = Math.max(0, _seconds(value));
+            }
+        }
+
+        // The time already spent in upstream caches counts
+        long age = Math.max(0, _seconds(_header(httpResponse.getHeaders(), "Age")));
+        long freshness = maxAge - age;
+        if (maxAge < 0 || freshness + staleWhileRevalidate <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long expiresAt = now + 1000 * freshness;
+        byte[] body = ("{\"data\":" + response.getData() + "}").getBytes(StandardCharsets.UTF_8);
+        store.put(new CacheEntry(key, expiresAt, expiresAt + 1000 * staleWhileRevalidate, httpResponse.getHeaders(), body));
+    }
+
+    private static HttpResponse _toHttpResponse(CacheEntry entry) {
+        HttpResponse httpResponse = new HttpResponse();
+        entry.getHeaders().forEach(httpResponse::header);
+        httpResponse.setGraphQLResponse(entry.getResponse());
+        return httpResponse;
+    }
+
+    private static long _seconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static String _header(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCache{" + "size=" + store.size() + ", hits=" + hitCount + ", staleHits=" + staleHitCount
+                + ", misses=" + missCount + ", evictions=" + store.getEvictionCount() + '}';
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RETRY_BASE_DELAY;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RETRY_BUDGET;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RETRY_MAX_ATTEMPTS;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RETRY_MAX_DELAY;
+
+/**
+ * When to retry a failed query: only when the server is known not to have processed it (connection
+ * refused, 502, 503 and 504) or asked for it (429 with a Retry-After), after an exponential backoff
+ * with full jitter.
+ * <p>
+ * Retries draw on a budget per endpoint, refilled by the requests sent to it: during an outage,
+ * retries stop once the budget is spent instead of multiplying the load on the server. The budget
+ * starts at, and never exceeds, a reserve of 10 retries: once it is spent, retries are limited to
+ * the configured ratio of the requests.
+ */
+public final class RetryPolicy {
+
+    // Retries allowed before any request was sent, and at most
+    static final double BUDGET_RESERVE = 10;
+
+    // Budgets are counted in thousandths of a retry, updated without locking
+    private static final long UNIT = 1000;
+    private static final long RESERVE_UNITS = (long) (BUDGET_RESERVE * UNIT);
+
+    private static final Map<URI, AtomicLong> BUDGETS = new ConcurrentHashMap<>();
+
+    // Waits out the backoff of non-blocking invocations, which must not sleep
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dynaql-retry-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static boolean isEnabled(HttpConfiguration configuration) {
+        Number maxAttempts = (Number) configuration.get(RETRY_MAX_ATTEMPTS);
+        return maxAttempts != null && maxAttempts.intValue() > 1;
+    }
+
+    /*
+        A request is about to be sent to the endpoint, for the first time: the budget grows.
+    */
+    static void requested(HttpConfiguration configuration, URI endpoint) {
+        Number ratio = (Number) configuration.get(RETRY_BUDGET);
+        long deposit = Math.round((ratio != null ? ratio.doubleValue() : HttpConfiguration.DEFAULT_RETRY_BUDGET) * UNIT);
+        AtomicLong budget = _budget(endpoint);
+        if (budget.get() < RESERVE_UNITS) {
+            budget.accumulateAndGet(deposit, (units, added) -> Math.min(RESERVE_UNITS, units + added));
+        }
+    }
+
+    /*
+        The time to wait before the next attempt, in milliseconds, or -1 when the failure is not retried.
+    */
+    static long retryDelay(HttpConfiguration configuration, URI endpoint, int attempts, HttpInvocationException failure) {
+        Number maxAttempts = (Number) configuration.get(RETRY_MAX_ATTEMPTS);
+        if (maxAttempts == null || attempts >= maxAttempts.intValue()) {
+            return -1;
+        }
+
+        Number maxDelayValue = (Number) configuration.get(RETRY_MAX_DELAY);
+        long maxDelay = maxDelayValue != null ? maxDelayValue.longValue() : HttpConfiguration.DEFAULT_RETRY_MAX_DELAY;
+
+        long delay;
+        Throwable cause = failure.getCause();
+        if (cause instanceof ConnectException) {
+            delay = _backoff(configuration, attempts, maxDelay);
+        } else if (cause instanceof HttpResponseException) {
+            int status = ((HttpResponseException) cause).getStatusCode();
+            if (status == HttpStatus.SC_BAD_GATEWAY || status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == HttpStatus.SC_GATEWAY_TIMEOUT) {
+                delay = _backoff(configuration, attempts, maxDelay);
+            } else if (status == 429 && cause instanceof HttpStatusException) {
+                delay = _retryAfter(((HttpStatusException) cause).getRetryAfter());
+                if (delay > maxDelay) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        } else {
+            return -1;
+        }
+
+        return _withdraw(endpoint) ? delay : -1;
+    }
+
+    /*
+        Runs the next attempt of a non-blocking invocation once the delay has elapsed.
+    */
+    static ScheduledFuture<?> schedule(Runnable attempt, long delay) {
+        return SCHEDULER.schedule(attempt, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+        Failures telling that the endpoint is unavailable or overloaded, rather than that the request is wrong.
+    */
+    static boolean isEndpointFailure(HttpInvocationException failure) {
+        Throwable cause = failure.getCause();
+        if (cause instanceof HttpResponseException) {
+            int status = ((HttpResponseException) cause).getStatusCode();
+            return status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == 429;
+        }
+        return cause instanceof IOException;
+    }
+
+    /*
+        Retries still allowed to the endpoint.
+    */
+    public static double getBudget(URI endpoint) {
+        AtomicLong budget = BUDGETS.get(endpoint);
+        return budget == null ? BUDGET_RESERVE : (double) budget.get() / UNIT;
+    }
+
+    public static void clear() {
+        BUDGETS.clear();
+    }
+
+    /*
+        Full jitter: anywhere between 0 and base * 2^(attempts - 1), up to the maximum delay.
+    */
+    private static long _backoff(HttpConfiguration configuration, int attempts, long maxDelay) {
+        Number baseDelay = (Number) configuration.get(RETRY_BASE_DELAY);
+        long base = Math.max(0, baseDelay != null ? baseDelay.longValue() : HttpConfiguration.DEFAULT_RETRY_BASE_DELAY);
+        // Compared before shifting, so that the shift never overflows
+        int shift = Math.min(attempts - 1, 62);
+        long ceiling = base > maxDelay >> shift ? maxDelay : base << shift;
+        return ThreadLocalRandom.current().nextLong(ceiling < Long.MAX_VALUE ? ceiling + 1 : ceiling);
+    }
+
+    private static long _retryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            long seconds = Long.parseLong(retryAfter.trim());
+            return seconds > Long.MAX_VALUE / 1000 ? Long.MAX_VALUE : Math.max(0, 1000 * seconds);
+        } catch (NumberFormatException ex) {
+            Date date = DateUtils.parseDate(retryAfter);
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : Long.MAX_VALUE;
+        }
+    }
+
+    private static boolean _withdraw(URI endpoint) {
+        AtomicLong budget = _budget(endpoint);
+        long units;
+        do {
+            units = budget.get();
+            if (units < UNIT) {
+                return false;
+            }
+        } while (!budget.compareAndSet(units, units - UNIT));
+        return true;
+    }
+
+    private static AtomicLong _budget(URI endpoint) {
+        return BUDGETS.computeIfAbsent(endpoint, k -> new AtomicLong(RESERVE_UNITS));
+    }
+
+    private RetryPolicy() {
+        // HideUtilityClassConstructor
+    }
+}
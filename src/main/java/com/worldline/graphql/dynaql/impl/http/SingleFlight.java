@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Identical requests in flight at the same time share a single exchange: the first caller sends
+ * the request, the other ones wait for its response (or its failure) instead of sending their own.
+ * Nothing is kept once the exchange is over.
+ */
+public final class SingleFlight {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(SingleFlight.class);
+
+    private static final Map<String, CompletableFuture<HttpResponse>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    /*
+        Number of distinct requests currently in flight.
+    */
+    public static int size() {
+        return IN_FLIGHT.size();
+    }
+
+    static HttpResponse invoke(String key, Supplier<HttpResponse> exchange) {
+        CompletableFuture<HttpResponse> flight = new CompletableFuture<>();
+        CompletableFuture<HttpResponse> leader = IN_FLIGHT.putIfAbsent(key, flight);
+        if (leader != null) {
+            log.debug("Joining the request in flight");
+            return _share(_join(leader));
+        }
+
+        try {
+            HttpResponse httpResponse = exchange.get();
+            flight.complete(httpResponse);
+            return httpResponse;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            IN_FLIGHT.remove(key, flight);
+        }
+    }
+
+    /*
+        Non-blocking variant: the callers joining the exchange get a future of their own, completed with a copy of
+        the response. Cancelling the future of the first caller aborts the shared exchange, which fails theirs.
+    */
+    static CompletableFuture<HttpResponse> invokeAsync(String key, Supplier<CompletableFuture<HttpResponse>> exchange) {
+        CompletableFuture<HttpResponse> flight = new CompletableFuture<>();
+        CompletableFuture<HttpResponse> leader = IN_FLIGHT.putIfAbsent(key, flight);
+        if (leader != null) {
+            log.debug("Joining the request in flight");
+            return leader.thenApply(SingleFlight::_share);
+        }
+
+        CompletableFuture<HttpResponse> exchanged;
+        try {
+            exchanged = exchange.get();
+        } catch (RuntimeException | Error ex) {
+            IN_FLIGHT.remove(key, flight);
+            flight.completeExceptionally(ex);
+            throw ex;
+        }
+        exchanged.whenComplete((httpResponse, ex) -> {
+            IN_FLIGHT.remove(key, flight);
+            if (ex != null) {
+                flight.completeExceptionally(ex);
+            } else {
+                flight.complete(httpResponse);
+            }
+        });
+        return exchanged;
+    }
+
+    private static HttpResponse _join(CompletableFuture<HttpResponse> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new HttpInvocationException(cause);
+        }
+    }
+
+    /*
+        The parsed response is shared, the headers are copied: they can be modified by the callers.
+    */
+    private static HttpResponse _share(HttpResponse httpResponse) {
+        HttpResponse shared = new HttpResponse();
+        httpResponse.getHeaders().forEach(shared::header);
+        shared.setGraphQLResponse(httpResponse.getGraphQLResponse());
+        return shared;
+    }
+
+    private SingleFlight() {
+        // HideUtilityClassConstructor
+    }
+}
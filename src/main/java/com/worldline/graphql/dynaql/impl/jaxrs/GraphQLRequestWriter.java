@@ -14,6 +14,9 @@
 package com.worldline.graphql.dynaql.impl.jaxrs;
 
 import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.codec.CborCodec;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodec;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodecs;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.Produces;
@@ -24,29 +27,33 @@ import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 
 @Provider
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, CborCodec.MEDIA_TYPE})
 public class GraphQLRequestWriter implements MessageBodyWriter<DynaQLRequest> {
 
     private static final org.slf4j.Logger log = LoggerFactory.getLogger(GraphQLRequestWriter.class);
 
     @Override
     public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
-        return type == DynaQLRequest.class;
+        return type == DynaQLRequest.class && (mediaType == null || GraphQLCodecs.forMediaType(mediaType.toString()) != null);
+    }
+
+    @Override
+    public long getSize(DynaQLRequest request, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
     }
 
     @Override
     public void writeTo(DynaQLRequest request, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
-        String jsonRequest = request.toJson();
-        log.warn("Sending GraphQL request: " + jsonRequest);
-        Writer writer = new PrintWriter(entityStream);
-        writer.write(jsonRequest);
-        writer.flush();
-        writer.close();
+        if (log.isDebugEnabled()) {
+            log.debug("Sending GraphQL request: " + request);
+        }
+        GraphQLCodec codec = mediaType == null ? null : GraphQLCodecs.forMediaType(mediaType.toString());
+        // Streamed without knowing the size upfront, so that large payloads can use chunked transfer
+        (codec != null ? codec : GraphQLCodecs.json()).writeRequest(request, true, false, entityStream);
+        entityStream.flush();
     }
 }
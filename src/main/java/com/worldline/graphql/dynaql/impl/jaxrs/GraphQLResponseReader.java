@@ -13,18 +13,13 @@
  */
 package com.worldline.graphql.dynaql.impl.jaxrs;
 
-import com.worldline.graphql.dynaql.impl.DynaQLError;
 import com.worldline.graphql.dynaql.impl.DynaQLResponse;
-import org.eclipse.microprofile.graphql.client.Error;
+import com.worldline.graphql.dynaql.impl.codec.CborCodec;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodec;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodecs;
 import org.eclipse.microprofile.graphql.client.Response;
 import org.slf4j.LoggerFactory;
 
-import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import javax.json.bind.Jsonb;
-import javax.json.bind.JsonbBuilder;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
@@ -33,15 +28,13 @@ import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.Charset;
 
 
 @Provider
-@Consumes("application/json")
+@Consumes({MediaType.APPLICATION_JSON, CborCodec.MEDIA_TYPE})
 public class GraphQLResponseReader implements MessageBodyReader<Response> {
 
     private static final int MAX_LOG_LENGTH = 128;
@@ -58,37 +51,18 @@ public class GraphQLResponseReader implements MessageBodyReader<Response> {
                                    MediaType mediaType, MultivaluedMap<String, String> httpHeaders,
                                    InputStream entityStream) throws IOException, WebApplicationException {
 
-        JsonReader jsonReader = Json.createReader(new InputStreamReader(entityStream));
+        GraphQLCodec codec = mediaType == null ? null : GraphQLCodecs.forMediaType(mediaType.toString());
+        String charset = mediaType == null ? null : mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
 
-        JsonObject jsonResponse = jsonReader.readObject();
-        log.warn("Received GraphQL response: "
-                + (jsonResponse.toString().length() <= MAX_LOG_LENGTH ? jsonResponse.toString() : jsonResponse.toString().substring(0, MAX_LOG_LENGTH) + " etc..."));
-
-
-        JsonObject data = null;
-        if (jsonResponse.containsKey("data")) {
-            if (!jsonResponse.isNull("data")) {
-                data = jsonResponse.getJsonObject("data");
-            } else {
-                log.warn("No data in GraphQLResponse");
-            }
-        }
-
-        List<Error> errors = null;
-        if (jsonResponse.containsKey("errors")) {
-            log.warn("GraphQL errors detected in the response");
-            JsonArray rawErrors = jsonResponse.getJsonArray("errors");
-            Jsonb jsonb = JsonbBuilder.create();
-            errors = jsonb.fromJson(
-                    rawErrors.toString(),
-                    new ArrayList<DynaQLError>() {}.getClass().getGenericSuperclass());
-            try {
-                jsonb.close();
-            } catch (Exception ignore) {
-            } // Ugly!!!
+        DynaQLResponse response = (codec != null ? codec : GraphQLCodecs.json())
+                .readResponse(entityStream, charset == null ? null : Charset.forName(charset));
+        if (log.isWarnEnabled()) {
+            String content = response.toString();
+            log.warn("Received GraphQL response: "
+                    + (content.length() <= MAX_LOG_LENGTH ? content : content.substring(0, MAX_LOG_LENGTH) + " etc..."));
         }
 
-        return new DynaQLResponse(data, errors);
+        return response;
     }
 
 }
@@ -0,0 +1,157 @@
+package com.worldline.graphql.dynaql.impl.json;
+
+import javax.json.JsonException;
+import javax.json.bind.annotation.JsonbDateFormat;
+import javax.json.bind.annotation.JsonbProperty;
+import javax.json.bind.annotation.JsonbTransient;
+import javax.json.stream.JsonGenerator;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Readable properties of a bean class, introspected once per class by {@link JsonValueWriter}.
+ */
+final class BeanMetadata {
+
+    private static final class Property {
+        private final String name;
+        private final Method getter;
+        private final java.lang.reflect.Field field;
+        private final DateTimeFormatter dateFormatter;
+
+        private Property(String name, Method getter, java.lang.reflect.Field field, DateTimeFormatter dateFormatter) {
+            this.name = name;
+            this.getter = getter;
+            this.field = field;
+            this.dateFormatter = dateFormatter;
+        }
+
+        private Object get(Object bean) throws IllegalAccessException, InvocationTargetException {
+            return getter != null ? getter.invoke(bean) : field.get(bean);
+        }
+    }
+
+    private final Property[] properties;
+
+    private BeanMetadata(Property[] properties) {
+        this.properties = properties;
+    }
+
+    static BeanMetadata of(Class<?> type) {
+        List<Property> properties = new ArrayList<>();
+
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors()) {
+                Method getter = descriptor.getReadMethod();
+                if (getter == null) {
+                    continue;
+                }
+                java.lang.reflect.Field field = _declaredField(type, descriptor.getName());
+                if (_isTransient(getter) || (field != null && _isTransient(field))) {
+                    continue;
+                }
+                _makeAccessible(getter);
+                properties.add(new Property(_jsonName(descriptor.getName(), getter, field), getter, null, _dateFormatter(getter, field)));
+            }
+        } catch (IntrospectionException ex) {
+            throw new JsonException("Cannot introspect " + type.getName(), ex);
+        }
+
+        // Public fields without getter
+        for (java.lang.reflect.Field field : type.getFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || _isTransient(field)) {
+                continue;
+            }
+            String name = _jsonName(field.getName(), null, field);
+            if (properties.stream().noneMatch(p -> p.name.equals(name))) {
+                properties.add(new Property(name, null, field, _dateFormatter(null, field)));
+            }
+        }
+
+        // JSON-B default ordering is lexicographical
+        properties.sort(Comparator.comparing(p -> p.name));
+        return new BeanMetadata(properties.toArray(new Property[0]));
+    }
+
+    void write(JsonGenerator generator, Object bean) {
+        generator.writeStartObject();
+        for (Property property : properties) {
+            Object value;
+            try {
+                value = property.get(bean);
+            } catch (IllegalAccessException | InvocationTargetException ex) {
+                throw new JsonException("Cannot read property " + property.name + " of " + bean.getClass().getName(), ex);
+            }
+            if (value == null) {
+                continue;
+            }
+            generator.writeKey(property.name);
+            if (property.dateFormatter != null && value instanceof TemporalAccessor) {
+                generator.write(property.dateFormatter.format((TemporalAccessor) value));
+            } else {
+                JsonValueWriter.write(generator, value);
+            }
+        }
+        generator.writeEnd();
+    }
+
+    private static String _jsonName(String name, Method getter, java.lang.reflect.Field field) {
+        JsonbProperty annotation = getter != null ? getter.getAnnotation(JsonbProperty.class) : null;
+        if (annotation == null && field != null) {
+            annotation = field.getAnnotation(JsonbProperty.class);
+        }
+        return annotation != null && !annotation.value().isEmpty() ? annotation.value() : name;
+    }
+
+    private static DateTimeFormatter _dateFormatter(Method getter, java.lang.reflect.Field field) {
+        JsonbDateFormat annotation = getter != null ? getter.getAnnotation(JsonbDateFormat.class) : null;
+        if (annotation == null && field != null) {
+            annotation = field.getAnnotation(JsonbDateFormat.class);
+        }
+        if (annotation == null || JsonbDateFormat.DEFAULT_FORMAT.equals(annotation.value())
+                || JsonbDateFormat.TIME_IN_MILLIS.equals(annotation.value())) {
+            return null;
+        }
+        return JsonbDateFormat.DEFAULT_LOCALE.equals(annotation.locale())
+                ? DateTimeFormatter.ofPattern(annotation.value())
+                : DateTimeFormatter.ofPattern(annotation.value(), Locale.forLanguageTag(annotation.locale()));
+    }
+
+    private static boolean _isTransient(AnnotatedElement element) {
+        return element.isAnnotationPresent(JsonbTransient.class);
+    }
+
+    private static java.lang.reflect.Field _declaredField(Class<?> type, String name) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException ignore) {
+                // Look in the superclass
+            }
+        }
+        return null;
+    }
+
+    private static void _makeAccessible(Method method) {
+        // Public getters of non public classes
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            try {
+                method.setAccessible(true);
+            } catch (RuntimeException ignore) {
+                // Left as is, reading will report the failure
+            }
+        }
+    }
+}
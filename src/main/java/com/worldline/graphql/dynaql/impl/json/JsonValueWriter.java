@@ -0,0 +1,228 @@
+package com.worldline.graphql.dynaql.impl.json;
+
+import com.worldline.graphql.dynaql.impl.core.DynaQLEnum;
+import com.worldline.graphql.dynaql.impl.core.DynaQLInputObject;
+import org.eclipse.microprofile.graphql.client.core.InputObjectField;
+
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * Writes any variable value directly to a {@link JsonGenerator}, without building a JSON tree first.
+ * <p>
+ * The way to write a class is resolved once and cached in a {@link ClassValue}. Beans are written
+ * as JSON objects from their properties, following the JSON-B defaults: null properties are omitted,
+ * {@code @JsonbProperty} renames a property, {@code @JsonbTransient} excludes it and {@code @JsonbDateFormat}
+ * formats a date property.
+ */
+public final class JsonValueWriter {
+
+    @FunctionalInterface
+    private interface ValueWriter {
+        void write(JsonGenerator generator, Object value);
+    }
+
+    private static final ClassValue<ValueWriter> WRITERS = new ClassValue<ValueWriter>() {
+        @Override
+        protected ValueWriter computeValue(Class<?> type) {
+            return _resolve(type);
+        }
+    };
+
+    public static void write(JsonGenerator generator, Object value) {
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            WRITERS.get(value.getClass()).write(generator, value);
+        }
+    }
+
+    /*
+        Writes the entries of the map as the members of a JSON object.
+    */
+    public static void writeObject(JsonGenerator generator, Map<?, ?> map) {
+        generator.writeStartObject();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            generator.writeKey(String.valueOf(entry.getKey()));
+            write(generator, entry.getValue());
+        }
+        generator.writeEnd();
+    }
+
+    private static ValueWriter _resolve(Class<?> type) {
+        // JSON scalars
+        if (type == String.class) {
+            return (generator, value) -> generator.write((String) value);
+        } else if (type == Integer.class || type == Short.class || type == Byte.class) {
+            return (generator, value) -> generator.write(((Number) value).intValue());
+        } else if (type == Long.class) {
+            return (generator, value) -> generator.write((Long) value);
+        } else if (type == Double.class || type == Float.class) {
+            return (generator, value) -> generator.write(((Number) value).doubleValue());
+        } else if (type == BigDecimal.class) {
+            return (generator, value) -> generator.write((BigDecimal) value);
+        } else if (type == BigInteger.class) {
+            return (generator, value) -> generator.write((BigInteger) value);
+        } else if (type == Boolean.class) {
+            return (generator, value) -> generator.write((Boolean) value);
+        } else if (Number.class.isAssignableFrom(type)) {
+            return (generator, value) -> generator.write(new BigDecimal(value.toString()));
+        } else if (JsonValue.class.isAssignableFrom(type)) {
+            return (generator, value) -> generator.write((JsonValue) value);
+        }
+
+        // Values written as JSON strings
+        if (type == Character.class || type == UUID.class || CharSequence.class.isAssignableFrom(type)
+                || TemporalAccessor.class.isAssignableFrom(type)
+                || type == java.net.URI.class || type == java.net.URL.class) {
+            return (generator, value) -> generator.write(value.toString());
+        } else if (java.sql.Date.class.isAssignableFrom(type)) {
+            // No time part: toInstant() throws, written as a local date like JSON-B does
+            return (generator, value) -> generator.write(((java.sql.Date) value).toLocalDate().toString());
+        } else if (java.sql.Time.class.isAssignableFrom(type)) {
+            return (generator, value) -> generator.write(((java.sql.Time) value).toLocalTime().toString());
+        } else if (Date.class.isAssignableFrom(type)) {
+            return (generator, value) -> generator.write(((Date) value).toInstant().toString());
+        } else if (Calendar.class.isAssignableFrom(type)) {
+            return (generator, value) -> generator.write(((Calendar) value).toInstant().toString());
+        } else if (Enum.class.isAssignableFrom(type)) {
+            return (generator, value) -> generator.write(((Enum<?>) value).name());
+        } else if (type == DynaQLEnum.class) {
+            return (generator, value) -> generator.write(((DynaQLEnum) value).getValue());
+        }
+
+        // Containers
+        if (type.isArray()) {
+            return _arrayWriter(type.getComponentType());
+        } else if (Optional.class == type) {
+            return (generator, value) -> write(generator, ((Optional<?>) value).orElse(null));
+        } else if (Map.class.isAssignableFrom(type)) {
+            return (generator, value) -> writeObject(generator, (Map<?, ?>) value);
+        } else if (Iterable.class.isAssignableFrom(type)) {
+            return JsonValueWriter::_writeIterable;
+        } else if (DynaQLInputObject.class.isAssignableFrom(type)) {
+            return JsonValueWriter::_writeInputObject;
+        }
+
+        // Anything else is mapped as a bean
+        BeanMetadata metadata = BeanMetadata.of(type);
+        return metadata::write;
+    }
+
+    private static void _writeIterable(JsonGenerator generator, Object value) {
+        generator.writeStartArray();
+        if (value instanceof List && value instanceof RandomAccess) {
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                write(generator, list.get(i));
+            }
+        } else {
+            Iterator<?> iterator = ((Iterable<?>) value).iterator();
+            while (iterator.hasNext()) {
+                write(generator, iterator.next());
+            }
+        }
+        generator.writeEnd();
+    }
+
+    private static void _writeInputObject(JsonGenerator generator, Object value) {
+        generator.writeStartObject();
+        for (InputObjectField field : ((DynaQLInputObject) value).getInputObjectFields()) {
+            generator.writeKey(field.getName());
+            write(generator, field.getValue());
+        }
+        generator.writeEnd();
+    }
+
+    private static ValueWriter _arrayWriter(Class<?> componentType) {
+        // Primitive arrays are read directly, without reflection nor boxing
+        if (componentType == int.class) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (int i : (int[]) value) {
+                    generator.write(i);
+                }
+                generator.writeEnd();
+            };
+        } else if (componentType == long.class) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (long l : (long[]) value) {
+                    generator.write(l);
+                }
+                generator.writeEnd();
+            };
+        } else if (componentType == double.class) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (double d : (double[]) value) {
+                    generator.write(d);
+                }
+                generator.writeEnd();
+            };
+        } else if (componentType == float.class) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (float f : (float[]) value) {
+                    generator.write(f);
+                }
+                generator.writeEnd();
+            };
+        } else if (componentType == boolean.class) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (boolean b : (boolean[]) value) {
+                    generator.write(b);
+                }
+                generator.writeEnd();
+            };
+        } else if (componentType == short.class) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (short s : (short[]) value) {
+                    generator.write(s);
+                }
+                generator.writeEnd();
+            };
+        } else if (componentType == byte.class) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (byte b : (byte[]) value) {
+                    generator.write(b);
+                }
+                generator.writeEnd();
+            };
+        } else if (componentType == char.class) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (char c : (char[]) value) {
+                    generator.write(String.valueOf(c));
+                }
+                generator.writeEnd();
+            };
+        } else {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                for (Object item : (Object[]) value) {
+                    write(generator, item);
+                }
+                generator.writeEnd();
+            };
+        }
+    }
+
+    private JsonValueWriter() {
+        // HideUtilityClassConstructor
+    }
+}
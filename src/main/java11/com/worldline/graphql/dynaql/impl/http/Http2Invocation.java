@@ -0,0 +1,279 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.impl.http;
+
+import com.worldline.graphql.dynaql.impl.DynaQLResponse;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodec;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodecs;
+import org.eclipse.microprofile.graphql.client.Request;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.CODEC;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.CONNECT_TIMEOUT;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.PROXY_HOSTNAME;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.PROXY_PORT;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.READ_TIMEOUT;
+import static com.worldline.graphql.dynaql.impl.http.HttpConfiguration.RESPONSE_COMPRESSION;
+
+/**
+ * HTTP/2 transport, based on the HTTP client of the JDK.
+ * <p>
+ * The invocations sharing the same connect timeout and proxy share one client, hence one
+ * multiplexed connection per server: concurrent requests are streams of that connection.
+ * Servers not speaking HTTP/2 are reached with HTTP/1.1. Requests are always sent with POST,
+ * persisted queries and ETag revalidation are only supported by {@link HttpInvocation}.
+ */
+public class Http2Invocation {
+
+    private final HttpConfiguration configuration;
+    private final URI uri;
+    private final Request graphqlRequest;
+    private final Map<String, String> headers;
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(Http2Invocation.class);
+
+    private static final int MAX_LOG_LENGTH = 128;
+
+    private static final Map<String, HttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+    protected Http2Invocation(HttpConfiguration configuration, URI uri, Request request, Map<String, String> headers) {
+        this.configuration = configuration;
+        this.uri = uri;
+        this.graphqlRequest = request;
+        this.headers = headers;
+    }
+
+    /*
+        True when running on Java 11 or later.
+    */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    public HttpResponse invoke() {
+        HttpResponse httpResponse = new HttpResponse();
+        java.net.http.HttpResponse<InputStream> serverResponse;
+        try {
+            serverResponse = client().send(createRequest(), java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException ex) {
+            throw new HttpInvocationException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new HttpInvocationException(ex);
+        }
+        httpResponse.setGraphQLResponse(_readResponse(serverResponse, httpResponse));
+        return httpResponse;
+    }
+
+    /*
+        Non-blocking invocation: the response is decoded, and the future completed, on the common ForkJoinPool.
+    */
+    public CompletableFuture<HttpResponse> invokeAsync() {
+        return invokeAsync(ForkJoinPool.commonPool());
+    }
+
+    /*
+        Non-blocking invocation: the response is decoded, and the future completed, on the given executor.
+        Cancelling the future aborts the exchange in flight.
+    */
+    public CompletableFuture<HttpResponse> invokeAsync(Executor executor) {
+        CompletableFuture<java.net.http.HttpResponse<InputStream>> exchange = client()
+                .sendAsync(createRequest(), java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+        AtomicReference<InputStream> body = new AtomicReference<>();
+
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        exchange.whenCompleteAsync((serverResponse, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                future.completeExceptionally(cause instanceof HttpInvocationException ? cause : new HttpInvocationException(cause));
+                return;
+            }
+            body.set(serverResponse.body());
+            try {
+                HttpResponse httpResponse = new HttpResponse();
+                httpResponse.setGraphQLResponse(_readResponse(serverResponse, httpResponse));
+                future.complete(httpResponse);
+            } catch (RuntimeException readEx) {
+                future.completeExceptionally(readEx);
+            }
+        }, executor);
+
+        future.whenComplete((r, ex) -> {
+            if (future.isCancelled()) {
+                // Before the response headers, the exchange itself is cancelled, then its stream is reset
+                exchange.cancel(true);
+                InputStream in = body.get();
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                        // The exchange is being aborted
+                    }
+                }
+            }
+        });
+        return future;
+    }
+
+    /*
+        One client per connect timeout and proxy, kept for the lifetime of the application.
+    */
+    private HttpClient client() {
+        Long connectTimeout = (Long) configuration.get(CONNECT_TIMEOUT);
+        String proxyHostname = (String) configuration.get(PROXY_HOSTNAME);
+        Integer proxyPort = (Integer) configuration.get(PROXY_PORT);
+        if (proxyPort == null || proxyPort <= 0) {
+            proxyPort = HttpConfiguration.DEFAULT_HTTP_PROXY_PORT;
+        }
+
+        String key = connectTimeout + "/" + (proxyHostname == null ? "" : proxyHostname + ":" + proxyPort);
+        int port = proxyPort;
+        return CLIENTS.computeIfAbsent(key, k -> {
+            log.debug("Creating an HTTP/2 client: connectTimeout=" + connectTimeout + ", proxy=" + proxyHostname);
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NEVER);
+            if (connectTimeout != null) {
+                builder.connectTimeout(Duration.ofMillis(connectTimeout));
+            }
+            if (proxyHostname != null) {
+                builder.proxy(ProxySelector.of(new InetSocketAddress(proxyHostname, port)));
+            }
+            return builder.build();
+        });
+    }
+
+    private HttpRequest createRequest() {
+        GraphQLCodec codec = codec();
+        byte[] body = codec.encodeRequest(graphqlRequest, true, false);
+        if (log.isInfoEnabled()) {
+            log.info("Sending GraphQL request: " + (codec == GraphQLCodecs.json() ? new String(body, StandardCharsets.UTF_8) : graphqlRequest.toString()));
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        Long readTimeout = (Long) configuration.get(READ_TIMEOUT);
+        if (readTimeout != null) {
+            builder.timeout(Duration.ofMillis(readTimeout));
+        }
+
+        boolean accept = false;
+        boolean acceptEncoding = false;
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+                accept |= "Accept".equalsIgnoreCase(header.getKey());
+                acceptEncoding |= "Accept-Encoding".equalsIgnoreCase(header.getKey());
+            }
+        }
+        if (!accept) {
+            builder.header("Accept", GraphQLCodecs.accept(codec));
+        }
+        // Unlike the Apache client, the JDK one neither asks for nor decodes compressed responses
+        if (!acceptEncoding && !Boolean.FALSE.equals(configuration.get(RESPONSE_COMPRESSION))) {
+            builder.header("Accept-Encoding", "gzip,deflate");
+        }
+
+        String compression = HttpInvocation.requestCompression(configuration, body.length);
+        if (compression != null) {
+            body = HttpInvocation.compress(body, compression);
+            builder.header("Content-Encoding", compression);
+        }
+
+        return builder.header("Content-Type", codec.getContentType())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private GraphQLCodec codec() {
+        String mediaType = (String) configuration.get(CODEC);
+        if (mediaType == null) {
+            return GraphQLCodecs.json();
+        }
+        GraphQLCodec codec = GraphQLCodecs.forMediaType(mediaType);
+        if (codec == null) {
+            throw new IllegalArgumentException("No GraphQL codec registered for " + mediaType);
+        }
+        return codec;
+    }
+
+    private DynaQLResponse _readResponse(java.net.http.HttpResponse<InputStream> serverResponse, HttpResponse httpResponse) {
+        for (Map.Entry<String, List<String>> header : serverResponse.headers().map().entrySet()) {
+            for (String value : header.getValue()) {
+                httpResponse.header(header.getKey(), value);
+            }
+        }
+
+        String contentType = serverResponse.headers().firstValue("Content-Type").orElse(GraphQLCodecs.json().getMediaType());
+        String contentEncoding = serverResponse.headers().firstValue("Content-Encoding").orElse(null);
+
+        try (InputStream contentStream = HttpInvocation.decodedContent(serverResponse.body(), contentEncoding)) {
+            if (serverResponse.statusCode() != 200) {
+                String contentString = new String(contentStream.readAllBytes(), StandardCharsets.UTF_8);
+                log.warn("HTTP response code NOK " + serverResponse.statusCode());
+                // The same cause as with HttpInvocation, so that retries can read the status and Retry-After
+                throw new HttpStatusException(serverResponse.statusCode(), "The server responded with " + serverResponse.statusCode() + ": " + contentString,
+                        serverResponse.headers().firstValue("Retry-After").orElse(null));
+            }
+
+            // Decoded according to the Content-Type chosen by the server, JSON when it is unknown
+            int parameters = contentType.indexOf(';');
+            GraphQLCodec responseCodec = GraphQLCodecs.forMediaType((parameters < 0 ? contentType : contentType.substring(0, parameters)).trim());
+            if (responseCodec == null) {
+                responseCodec = GraphQLCodecs.json();
+            }
+
+            // Logged from its first bytes rather than serialized again
+            boolean logged = log.isInfoEnabled() && responseCodec == GraphQLCodecs.json();
+            InputStream responseStream = logged ? new PrefixCapturingInputStream(contentStream, MAX_LOG_LENGTH) : contentStream;
+            DynaQLResponse response = responseCodec.readResponse(responseStream, _charset(contentType));
+            if (logged) {
+                log.info("Received GraphQL response (" + serverResponse.version() + "): " + responseStream);
+            }
+            return response;
+        } catch (IOException | UncheckedIOException ex) {
+            throw new HttpInvocationException(ex);
+        }
+    }
+
+    private static Charset _charset(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && "charset".equalsIgnoreCase(parameter.substring(0, equals).trim())) {
+                return Charset.forName(parameter.substring(equals + 1).trim().replace("\"", ""));
+            }
+        }
+        return null;
+    }
+
+}
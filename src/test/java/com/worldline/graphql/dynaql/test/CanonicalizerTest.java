@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.test;
+
+import com.worldline.graphql.dynaql.impl.DynaQLCanonicalDocument;
+import com.worldline.graphql.dynaql.impl.DynaQLPreparedDocument;
+import com.worldline.graphql.dynaql.impl.core.utils.Canonicalizer;
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.eclipse.microprofile.graphql.client.core.Argument.arg;
+import static org.eclipse.microprofile.graphql.client.core.Argument.args;
+import static org.eclipse.microprofile.graphql.client.core.Document.document;
+import static org.eclipse.microprofile.graphql.client.core.Field.field;
+import static org.eclipse.microprofile.graphql.client.core.InputObject.inputObject;
+import static org.eclipse.microprofile.graphql.client.core.InputObjectField.prop;
+import static org.eclipse.microprofile.graphql.client.core.Operation.operation;
+import static org.eclipse.microprofile.graphql.client.core.ScalarType.GQL_INT;
+import static org.eclipse.microprofile.graphql.client.core.ScalarType.GQL_STRING;
+import static org.eclipse.microprofile.graphql.client.core.Variable.var;
+import static org.eclipse.microprofile.graphql.client.core.Variable.vars;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class CanonicalizerTest {
+
+    @Test
+    public void testWhitespaceEquivalentTexts() {
+        DynaQLCanonicalDocument compact = DynaQLCanonicalDocument.of("query people{person(id:1){name surname}}");
+        DynaQLCanonicalDocument formatted = DynaQLCanonicalDocument.of(
+                "# All the people\n"
+                        + "query people {\n"
+                        + "  person(id: 1) {\n"
+                        + "    name, surname # comment\n"
+                        + "  }\n"
+                        + "}\n");
+
+        assertEquals("query people{person(id:1){name surname}}", formatted.getText());
+        assertEquals(compact, formatted);
+        assertEquals(compact.getSha256Hex(), formatted.getSha256Hex());
+        assertEquals(compact.getHash64(), formatted.getHash64());
+    }
+
+    @Test
+    public void testStringValuesKeptVerbatim() {
+        assertEquals("{person(name:\"a  b, # c\"){id}}", Canonicalizer.minify("{ person(name: \"a  b, # c\") { id } }"));
+        assertEquals("{f(s:\"\"\" a \\\"\"\" b \"\"\")}", Canonicalizer.minify("{ f(s: \"\"\" a \\\"\"\" b \"\"\") }"));
+        assertNotEquals(DynaQLCanonicalDocument.of("{person(name:\"a b\"){id}}"),
+                DynaQLCanonicalDocument.of("{person(name:\"ab\"){id}}"));
+    }
+
+    @Test
+    public void testOrderEquivalentDocuments() {
+        Document document = document(
+                operation("people", vars(var("limit", GQL_INT), var("name", GQL_STRING)),
+                        field("people", args(arg("name", "JF"), arg("limit", 10), arg("filter", inputObject(prop("b", 2), prop("a", 1)))),
+                                field("surname"))));
+        Document reordered = document(
+                operation("people", vars(var("name", GQL_STRING), var("limit", GQL_INT)),
+                        field("people", args(arg("filter", inputObject(prop("a", 1), prop("b", 2))), arg("limit", 10), arg("name", "JF")),
+                                field("surname"))));
+
+        assertEquals(DynaQLCanonicalDocument.of(document).getSha256Hex(), DynaQLCanonicalDocument.of(reordered).getSha256Hex());
+        assertEquals(DynaQLPreparedDocument.prepare(document).getCanonicalSha256Hex(),
+                DynaQLPreparedDocument.prepare(reordered).getCanonicalSha256Hex());
+        // The text sent keeps the order of the caller
+        assertNotEquals(DynaQLPreparedDocument.prepare(document).getText(), DynaQLPreparedDocument.prepare(reordered).getText());
+    }
+
+    @Test
+    public void testSelectionOrderIsSignificant() {
+        assertNotEquals(DynaQLCanonicalDocument.of(document(operation(field("person", field("name"), field("surname"))))),
+                DynaQLCanonicalDocument.of(document(operation(field("person", field("surname"), field("name"))))));
+    }
+
+    @Test
+    public void testTextAndTreeAgree() {
+        // Unsorted variables, arguments and input object fields
+        Document document = document(
+                operation("people", vars(var("name", GQL_STRING), var("limit", GQL_INT)),
+                        field("people", args(arg("name", "JF"), arg("limit", 10), arg("filter", inputObject(prop("b", 2), prop("a", 1)))),
+                                field("surname"))));
+        assertEquals(DynaQLCanonicalDocument.of(document), DynaQLCanonicalDocument.of(document.build()));
+        assertEquals(DynaQLPreparedDocument.of(document.build()).getCanonicalSha256Hex(),
+                DynaQLPreparedDocument.prepare(document).getCanonicalSha256Hex());
+    }
+
+    @Test
+    public void testOrderEquivalentTexts() {
+        assertEquals("query q($a:Int=1$b:[String!]!@d(x:1 y:2)){f(a:$a b:{c:[{d:1 e:-1.5e-3}]z:null})@include(if:true){g}}",
+                Canonicalizer.canonicalize("query q($b: [String!]! @d(y: 2, x: 1), $a: Int = 1) {\n"
+                        + "  f(b: {z: null, c: [{e: -1.5e-3, d: 1}]}, a: $a) @include(if: true) { g }\n"
+                        + "}"));
+        // Fragments and selections are kept as they are
+        assertEquals("{...on Person{name surname}...F}fragment F on Person{id}",
+                Canonicalizer.canonicalize("{ ... on Person { name surname } ...F } fragment F on Person { id }"));
+        assertNotEquals(DynaQLCanonicalDocument.of("{person{name surname}}"), DynaQLCanonicalDocument.of("{person{surname name}}"));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.test;
+
+import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.codec.CborCodec;
+import com.worldline.graphql.dynaql.impl.codec.GraphQLCodecs;
+import org.junit.jupiter.api.Test;
+
+import javax.json.Json;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CborCodecTest {
+
+    private final CborCodec codec = new CborCodec();
+
+    @Test
+    public void testHalfFloats() throws IOException {
+        assertEquals(1.0, _readNumber(0xf9, 0x3c, 0x00).doubleValue());
+        assertEquals(-4.0, _readNumber(0xf9, 0xc4, 0x00).doubleValue());
+        assertEquals(65504.0, _readNumber(0xf9, 0x7b, 0xff).doubleValue());
+        assertEquals(0.00006103515625, _readNumber(0xf9, 0x04, 0x00).doubleValue());
+        // Subnormal
+        assertEquals(5.960464477539063e-8, _readNumber(0xf9, 0x00, 0x01).doubleValue());
+        // Infinity has no JSON representation
+        assertThrows(IOException.class, () -> _read(0xf9, 0x7c, 0x00));
+    }
+
+    @Test
+    public void testFloats() throws IOException {
+        assertEquals(100000.0, _readNumber(0xfa, 0x47, 0xc3, 0x50, 0x00).doubleValue());
+        assertEquals(1.1, _readNumber(0xfb, 0x3f, 0xf1, 0x99, 0x99, 0x99, 0x99, 0x99, 0x9a).doubleValue());
+    }
+
+    @Test
+    public void testUnsigned64BitValues() throws IOException {
+        assertEquals(Long.MAX_VALUE, _readNumber(0x1b, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff).longValueExact());
+        assertEquals(new BigInteger("9223372036854775808"), _readNumber(0x1b, 0x80, 0, 0, 0, 0, 0, 0, 0).bigIntegerValueExact());
+        assertEquals(new BigInteger("18446744073709551615"),
+                _readNumber(0x1b, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff).bigIntegerValueExact());
+        assertEquals(Long.MIN_VALUE, _readNumber(0x3b, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff).longValueExact());
+        assertEquals(new BigInteger("-18446744073709551616"),
+                _readNumber(0x3b, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff).bigIntegerValueExact());
+    }
+
+    @Test
+    public void testBignums() throws IOException {
+        assertEquals(new BigInteger("18446744073709551616"),
+                _readNumber(0xc2, 0x49, 0x01, 0, 0, 0, 0, 0, 0, 0, 0).bigIntegerValueExact());
+        assertEquals(new BigInteger("-18446744073709551617"),
+                _readNumber(0xc3, 0x49, 0x01, 0, 0, 0, 0, 0, 0, 0, 0).bigIntegerValueExact());
+    }
+
+    @Test
+    public void testDecimalFractions() throws IOException {
+        // 27315 * 10^-2
+        assertEquals(new BigDecimal("273.15"), _readNumber(0xc4, 0x82, 0x21, 0x19, 0x6a, 0xb3).bigDecimalValue());
+        // Bignum mantissa
+        assertEquals(new BigDecimal("1844674407370955161.6"),
+                _readNumber(0xc4, 0x82, 0x20, 0xc2, 0x49, 0x01, 0, 0, 0, 0, 0, 0, 0, 0).bigDecimalValue());
+    }
+
+    @Test
+    public void testIndefiniteLengths() throws IOException {
+        assertEquals(Json.createValue("streaming"),
+                _read(0x7f, 0x65, 's', 't', 'r', 'e', 'a', 0x64, 'm', 'i', 'n', 'g', 0xff));
+        // Byte strings as base64
+        assertEquals(Json.createValue("AQIDBAU="), _read(0x5f, 0x42, 0x01, 0x02, 0x43, 0x03, 0x04, 0x05, 0xff));
+        assertEquals(_json("[1,[2,3],[4,5]]"), _read(0x9f, 0x01, 0x82, 0x02, 0x03, 0x9f, 0x04, 0x05, 0xff, 0xff));
+        assertEquals(_json("{\"a\":1,\"b\":[2,3]}"), _read(0xbf, 0x61, 'a', 0x01, 0x61, 'b', 0x9f, 0x02, 0x03, 0xff, 0xff));
+        // A chunk of another major type
+        assertThrows(IOException.class, () -> _read(0x7f, 0x41, 'a', 0xff));
+    }
+
+    @Test
+    public void testTruncatedInput() {
+        assertThrows(IOException.class, () -> _read(0x82, 0x01));
+        // A string claiming almost 2 GB: only the bytes actually received are allocated
+        assertThrows(IOException.class, () -> _read(0x7a, 0x7f, 0xff, 0xff, 0xf0, 'a', 'b', 'c'));
+    }
+
+    @Test
+    public void testVariablesRoundTrip() throws IOException {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("name", "José 😀");
+        nested.put("tags", Arrays.asList("a", "b"));
+        nested.put("empty", Collections.emptyList());
+
+        DynaQLRequest request = new DynaQLRequest("query people($filter: Filter) { people(filter: $filter) { id } }");
+        request.setOperationName("people");
+        request.setVariable("int", 23);
+        request.setVariable("byte", 24);
+        request.setVariable("negative", -500);
+        request.setVariable("long", Long.MIN_VALUE);
+        request.setVariable("huge", new BigInteger("123456789012345678901234567890"));
+        request.setVariable("hugeNegative", new BigInteger("-123456789012345678901234567890"));
+        request.setVariable("decimal", new BigDecimal("-1234.5678"));
+        request.setVariable("float32", 1.5);
+        request.setVariable("float64", 0.1);
+        request.setVariable("yes", true);
+        request.setVariable("no", false);
+        request.setVariable("nothing", null);
+        request.setVariable("filter", nested);
+
+        ByteArrayOutputStream cbor = new ByteArrayOutputStream();
+        codec.writeRequest(request, true, false, cbor);
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        GraphQLCodecs.json().writeRequest(request, true, false, json);
+
+        // The CBOR request read back is the JSON request
+        assertEquals(_json(new String(json.toByteArray(), StandardCharsets.UTF_8)), _readItem(cbor.toByteArray()));
+    }
+
+    private JsonNumber _readNumber(int... item) throws IOException {
+        return (JsonNumber) _read(item);
+    }
+
+    private JsonValue _read(int... item) throws IOException {
+        byte[] bytes = new byte[item.length];
+        for (int i = 0; i < item.length; i++) {
+            bytes[i] = (byte) item[i];
+        }
+        return _readItem(bytes);
+    }
+
+    /*
+        Read as the value of {"data": {"v": item}}, since the codec only reads responses.
+    */
+    private JsonValue _readItem(byte[] item) throws IOException {
+        byte[] prefix = {(byte) 0xa1, 0x64, 'd', 'a', 't', 'a', (byte) 0xa1, 0x61, 'v'};
+        byte[] response = Arrays.copyOf(prefix, prefix.length + item.length);
+        System.arraycopy(item, 0, response, prefix.length, item.length);
+        return codec.readResponse(new ByteArrayInputStream(response), StandardCharsets.UTF_8).getData().get("v");
+    }
+
+    private static JsonValue _json(String text) {
+        try (JsonReader reader = Json.createReader(new StringReader(text))) {
+            return reader.readValue();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.test;
+
+import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.http.Http2Invocation;
+import com.worldline.graphql.dynaql.impl.http.Http2InvocationBuilder;
+import com.worldline.graphql.dynaql.impl.http.HttpConfiguration;
+import com.worldline.graphql.dynaql.impl.http.HttpInvocationException;
+import com.worldline.graphql.dynaql.impl.http.HttpStatusException;
+import com.worldline.graphql.dynaql.test.dtos.Person;
+import helper.Utils;
+import org.eclipse.microprofile.graphql.client.Response;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static helper.WireMockHelper.getWireMock;
+import static helper.WireMockHelper.stubWireMock;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Run by failsafe against the packaged multi-release jar, so that the Java 11 version of
+ * {@link Http2Invocation} is the one tested.
+ */
+public class Http2TransportIT {
+
+    private static final Properties CONFIG = new Properties();
+    private static String endpoint;
+
+    @BeforeAll
+    public static void beforeClass() throws IOException {
+        assumeTrue(Http2Invocation.isSupported(), "The HTTP/2 transport requires Java 11 or later");
+
+        CONFIG.load(Http2TransportIT.class.getClassLoader().getResourceAsStream("graphql-config.properties"));
+        endpoint = CONFIG.getProperty("endpoint");
+
+        getWireMock().start();
+    }
+
+    @AfterAll
+    public static void teardown() {
+        if (Http2Invocation.isSupported()) {
+            getWireMock().stop();
+        }
+    }
+
+    @Test
+    public void testQuery() throws IOException, URISyntaxException {
+        stubWireMock("allPeople.json");
+
+        Response response = Http2InvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .build()
+                .invoke()
+                .getGraphQLResponse();
+
+        assertFalse(response.hasError());
+        assertEquals(10, response.getList(Person.class, "people").size());
+    }
+
+    @Test
+    public void testAsyncQuery() throws IOException, URISyntaxException, InterruptedException, ExecutionException, TimeoutException {
+        stubWireMock("allPeople.json");
+
+        Response response = Http2InvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .build()
+                .invokeAsync()
+                .get(10, TimeUnit.SECONDS)
+                .getGraphQLResponse();
+
+        assertFalse(response.hasError());
+        assertEquals(10, response.getList(Person.class, "people").size());
+    }
+
+    @Test
+    public void testCompression() throws IOException, URISyntaxException {
+        stubWireMock("allPeople.json");
+
+        for (String compression : new String[]{"gzip", "deflate"}) {
+            Response response = Http2InvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.REQUEST_COMPRESSION, compression)
+                    .property(HttpConfiguration.REQUEST_COMPRESSION_THRESHOLD, 16)
+                    .build()
+                    .invoke()
+                    .getGraphQLResponse();
+
+            // The response is compressed by the server, and decoded by the transport
+            assertFalse(response.hasError());
+            assertEquals(10, response.getList(Person.class, "people").size());
+
+            getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql"))
+                    .withHeader("Content-Encoding", equalTo(compression))
+                    .withHeader("Accept-Encoding", containing("gzip")));
+        }
+    }
+
+    @Test
+    public void testErrorStatus() throws IOException, URISyntaxException {
+        getWireMock().stubFor(post(urlEqualTo("/graphql"))
+                .willReturn(aResponse()
+                        .withStatus(503)
+                        .withHeader("Retry-After", "120")
+                        .withBody("Service Unavailable")));
+
+        Http2Invocation invocation = Http2InvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .build();
+
+        HttpInvocationException ex = assertThrows(HttpInvocationException.class, invocation::invoke);
+        assertTrue(ex.getCause() instanceof HttpStatusException);
+        HttpStatusException cause = (HttpStatusException) ex.getCause();
+        assertEquals(503, cause.getStatusCode());
+        assertEquals("120", cause.getRetryAfter());
+
+        // The same on the non-blocking path
+        ExecutionException asyncEx = assertThrows(ExecutionException.class, () -> invocation.invokeAsync().get(5, TimeUnit.SECONDS));
+        assertEquals(503, ((HttpStatusException) asyncEx.getCause().getCause()).getStatusCode());
+    }
+}
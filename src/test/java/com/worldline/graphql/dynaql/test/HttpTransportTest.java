@@ -15,30 +15,94 @@
  */
 package com.worldline.graphql.dynaql.test;
 
+import com.worldline.graphql.dynaql.impl.DynaQLPreparedDocument;
 import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.cache.CacheEntry;
+import com.worldline.graphql.dynaql.impl.cache.DiskResponseStore;
+import com.worldline.graphql.dynaql.impl.cache.OffHeapResponseStore;
+import com.worldline.graphql.dynaql.impl.codec.CborCodec;
+import com.worldline.graphql.dynaql.impl.core.utils.Canonicalizer;
+import com.worldline.graphql.dynaql.impl.http.CircuitBreaker;
+import com.worldline.graphql.dynaql.impl.http.EntityTags;
+import com.worldline.graphql.dynaql.impl.http.HttpAutoBatcher;
+import com.worldline.graphql.dynaql.impl.http.HttpBatchInvocationBuilder;
+import com.worldline.graphql.dynaql.impl.http.HttpCoalescer;
+import com.worldline.graphql.dynaql.impl.http.HttpClientPool;
 import com.worldline.graphql.dynaql.impl.http.HttpConfiguration;
 import com.worldline.graphql.dynaql.impl.http.HttpInvocation;
 import com.worldline.graphql.dynaql.impl.http.HttpInvocationBuilder;
 import com.worldline.graphql.dynaql.impl.http.HttpInvocationException;
 import com.worldline.graphql.dynaql.impl.http.HttpResponse;
+import com.worldline.graphql.dynaql.impl.http.HttpStatusException;
+import com.worldline.graphql.dynaql.impl.http.PersistedQueries;
+import com.worldline.graphql.dynaql.impl.http.ResponseCache;
+import com.worldline.graphql.dynaql.impl.http.RetryPolicy;
+import com.worldline.graphql.dynaql.impl.http.SingleFlight;
 import com.worldline.graphql.dynaql.test.dtos.Person;
 import helper.Utils;
+import org.apache.http.pool.PoolStats;
 import org.eclipse.microprofile.graphql.client.Request;
 import org.eclipse.microprofile.graphql.client.Response;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import javax.json.Json;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.matching;
+import static com.github.tomakehurst.wiremock.client.WireMock.matchingJsonPath;
+import static com.github.tomakehurst.wiremock.client.WireMock.notMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
 import static helper.WireMockHelper.getWireMock;
 import static helper.WireMockHelper.stubWireMock;
+import static helper.WireMockHelper.stubWireMockCacheable;
+import static helper.WireMockHelper.stubWireMockDelayed;
+import static helper.WireMockHelper.stubWireMockGet;
+import static helper.WireMockHelper.stubWireMockPersistedQuery;
+import static org.eclipse.microprofile.graphql.client.core.Argument.arg;
+import static org.eclipse.microprofile.graphql.client.core.Argument.args;
+import static org.eclipse.microprofile.graphql.client.core.Document.document;
+import static org.eclipse.microprofile.graphql.client.core.Field.field;
+import static org.eclipse.microprofile.graphql.client.core.Operation.operation;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -165,6 +229,1091 @@ public class HttpTransportTest {
         assertTrue(response.hasData());
     }
 
+    @Test
+    public void testPreparedDocument() throws IOException, URISyntaxException {
+        DynaQLPreparedDocument document = DynaQLPreparedDocument.of(Utils.getResourceFileContent("queries/queryWithStringVariable.graphql"));
+        stubWireMock("queryWithStringVariable.json");
+
+        for (String surname : new String[]{"Zemlak", "James"}) {
+            DynaQLRequest request = new DynaQLRequest(document);
+            request.setVariable("surname", surname);
+            assertEquals(Json.createReader(new StringReader(request.toJson())).readObject(),
+                    Json.createReader(new ByteArrayInputStream(request.toJsonBytes())).readObject());
+
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(request)
+                    .build();
+
+            Response response = invocation.invoke().getGraphQLResponse();
+            assertFalse(response.hasError());
+            assertTrue(response.hasData());
+        }
+    }
+
+    @Test
+    public void testSqlDateVariables() throws IOException, URISyntaxException {
+        Request request = new DynaQLRequest(Utils.getResourceFileContent("queries/createPersonWithVariables.graphql"))
+                .setVariable("surname", "James")
+                .setVariable("names", "JF")
+                .setVariable("birthDate", java.sql.Date.valueOf("1962-04-27"))
+                .setVariable("birthTime", java.sql.Time.valueOf("08:30:00"));
+        stubWireMock("createPersonWithVariables.json");
+
+        Response response = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(request)
+                .build()
+                .invoke()
+                .getGraphQLResponse();
+        assertFalse(response.hasError());
+
+        getWireMock().verify(postRequestedFor(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.birthDate", equalTo("1962-04-27")))
+                .withRequestBody(matchingJsonPath("$.variables.birthTime", equalTo("08:30"))));
+    }
+
+    @Test
+    public void testChunkedRequest() throws IOException, URISyntaxException {
+        Request request = new DynaQLRequest(Utils.getResourceFileContent("queries/createPersonWithVariables.graphql"))
+                .setVariable("surname", "James")
+                .setVariable("names", "JF")
+                .setVariable("birthDate", "27/04/1962");
+        stubWireMock("createPersonWithVariables.json");
+
+        HttpInvocation invocation = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(request)
+                .property(HttpConfiguration.REQUEST_CHUNKED, true)
+                .build();
+
+        Response response = invocation.invoke().getGraphQLResponse();
+        assertFalse(response.hasError());
+        assertTrue(response.hasData());
+
+        getWireMock().verify(postRequestedFor(urlEqualTo("/graphql"))
+                .withHeader("Transfer-Encoding", equalTo("chunked"))
+                .withRequestBody(matchingJsonPath("$.variables.surname", equalTo("James"))));
+    }
+
+    @Test
+    public void testPersistedQuery() throws IOException, URISyntaxException {
+        DynaQLPreparedDocument document = DynaQLPreparedDocument.of(Utils.getResourceFileContent("queries/allPeople.graphql"));
+        stubWireMockPersistedQuery("allPeople.json");
+        PersistedQueries.clear();
+
+        for (int i = 0; i < 3; i++) {
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(document))
+                    .property(HttpConfiguration.PERSISTED_QUERIES, true)
+                    .build();
+
+            Response response = invocation.invoke().getGraphQLResponse();
+            assertFalse(response.hasError());
+            assertEquals(10, response.getList(Person.class, "people").size());
+        }
+
+        // Hash only, then the full document once, then the hash only for the following calls
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")).withRequestBody(matchingJsonPath("$.query")));
+        getWireMock().verify(3, postRequestedFor(urlEqualTo("/graphql")).withRequestBody(notMatching(".*\"query\".*"))
+                .withRequestBody(matchingJsonPath("$.extensions.persistedQuery[?(@.sha256Hash == '" + document.getSha256Hex() + "')]")));
+        assertTrue(PersistedQueries.isKnown(new URI(endpoint), document.getSha256Hex()));
+
+        // A hash the server forgot is sent again along with its document
+        stubWireMockPersistedQuery("allPeople.json");
+        Response response = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(document))
+                .property(HttpConfiguration.PERSISTED_QUERIES, true)
+                .build()
+                .invoke()
+                .getGraphQLResponse();
+        assertFalse(response.hasError());
+        getWireMock().verify(2, postRequestedFor(urlEqualTo("/graphql")));
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")).withRequestBody(matchingJsonPath("$.query")));
+        assertTrue(PersistedQueries.isKnown(new URI(endpoint), document.getSha256Hex()));
+    }
+
+    @Test
+    public void testPersistedQueryDocumentFirst() throws IOException, URISyntaxException {
+        DynaQLPreparedDocument document = DynaQLPreparedDocument.of(Utils.getResourceFileContent("queries/allPeople.graphql"));
+        stubWireMockPersistedQuery("allPeople.json");
+        PersistedQueries.clear();
+
+        for (int i = 0; i < 3; i++) {
+            Response response = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(document))
+                    .property(HttpConfiguration.PERSISTED_QUERIES, true)
+                    .property(HttpConfiguration.PERSISTED_QUERIES_DOCUMENT_FIRST, true)
+                    .build()
+                    .invoke()
+                    .getGraphQLResponse();
+            assertFalse(response.hasError());
+        }
+
+        // The full document along with the hash once, then the hash only for the following calls
+        getWireMock().verify(3, postRequestedFor(urlEqualTo("/graphql")));
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")).withRequestBody(matchingJsonPath("$.query"))
+                .withRequestBody(matchingJsonPath("$.extensions.persistedQuery[?(@.sha256Hash == '" + document.getSha256Hex() + "')]")));
+        assertTrue(PersistedQueries.isKnown(new URI(endpoint), document.getSha256Hex()));
+        PersistedQueries.clear();
+    }
+
+    @Test
+    public void testPersistedQueriesBounded() throws URISyntaxException {
+        stubWireMock("allPeople.json");
+        PersistedQueries.clear();
+
+        for (int i = 0; i < PersistedQueries.MAX_KNOWN_HASHES + 10; i++) {
+            HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest("query { person(personId: " + i + ") { surname } }"))
+                    .property(HttpConfiguration.PERSISTED_QUERIES, true)
+                    .build()
+                    .invoke();
+        }
+        // Hashes only, all of them registered
+        getWireMock().verify(0, postRequestedFor(urlEqualTo("/graphql")).withRequestBody(matchingJsonPath("$.query")));
+        assertEquals(PersistedQueries.MAX_KNOWN_HASHES, PersistedQueries.knownCount(new URI(endpoint)));
+        assertFalse(PersistedQueries.isKnown(new URI(endpoint), DynaQLPreparedDocument.of("query { person(personId: 0) { surname } }").getSha256Hex()));
+        PersistedQueries.clear();
+    }
+
+    @Test
+    public void testGetRequest() throws IOException, URISyntaxException {
+        stubWireMockGet("allPeople.json", "\"v1\"");
+        EntityTags.clear();
+
+        for (int i = 0; i < 2; i++) {
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.REQUEST_GET, true)
+                    .build();
+
+            Response response = invocation.invoke().getGraphQLResponse();
+            assertFalse(response.hasError());
+            assertEquals(10, response.getList(Person.class, "people").size());
+        }
+
+        // The second call is revalidated, and served from the cache on 304
+        getWireMock().verify(2, getRequestedFor(urlPathEqualTo("/graphql")).withQueryParam("query", matching("(?s).*people.*")));
+        getWireMock().verify(1, getRequestedFor(urlPathEqualTo("/graphql")).withHeader("If-None-Match", equalTo("\"v1\"")));
+        getWireMock().verify(0, postRequestedFor(urlEqualTo("/graphql")));
+
+        // Mutations are always posted
+        stubWireMock("createPersonWithVariables.json");
+        HttpInvocation invocation = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/createPersonWithVariables.graphql"))
+                        .setVariable("surname", "James"))
+                .property(HttpConfiguration.REQUEST_GET, true)
+                .build();
+
+        assertTrue(invocation.invoke().getGraphQLResponse().hasData());
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+    }
+
+    @Test
+    public void testETagCacheSize() throws IOException, URISyntaxException {
+        stubWireMockGet("allPeople.json", "\"v1\"");
+        EntityTags.clear();
+
+        for (String field : new String[]{"surname", "names"}) {
+            HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest("query { people { " + field + " } }"))
+                    .property(HttpConfiguration.REQUEST_GET, true)
+                    .build()
+                    .invoke();
+        }
+        assertEquals(2, EntityTags.size());
+
+        // Global to the JVM: resized by any builder, only when the size changes
+        HttpInvocationBuilder builder = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .property(HttpConfiguration.ETAG_CACHE_SIZE, 1);
+        builder.build();
+        builder.build();
+        assertEquals(1, EntityTags.size());
+
+        builder.property(HttpConfiguration.ETAG_CACHE_SIZE, 256).build();
+        EntityTags.clear();
+    }
+
+    @Test
+    public void testCompression() throws IOException, URISyntaxException {
+        stubWireMock("allPeople.json");
+
+        for (String compression : new String[]{"gzip", "deflate"}) {
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.REQUEST_COMPRESSION, compression)
+                    .property(HttpConfiguration.REQUEST_COMPRESSION_THRESHOLD, 16)
+                    .build();
+
+            Response response = invocation.invoke().getGraphQLResponse();
+            assertFalse(response.hasError());
+            assertEquals(10, response.getList(Person.class, "people").size());
+
+            getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql"))
+                    .withHeader("Content-Encoding", equalTo(compression))
+                    .withHeader("Accept-Encoding", containing("gzip")));
+        }
+    }
+
+    @Test
+    public void testCborCodec() throws IOException, URISyntaxException {
+        stubWireMock("allPeople.cbor", CborCodec.MEDIA_TYPE);
+
+        HttpInvocation invocation = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql"))
+                        .setVariable("limit", 10))
+                .property(HttpConfiguration.CODEC, CborCodec.MEDIA_TYPE)
+                .build();
+
+        Response response = invocation.invoke().getGraphQLResponse();
+        assertFalse(response.hasError());
+        assertEquals(10, response.getList(Person.class, "people").size());
+
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql"))
+                .withHeader("Content-Type", equalTo(CborCodec.MEDIA_TYPE))
+                .withHeader("Accept", containing(CborCodec.MEDIA_TYPE)));
+        // An indefinite-length CBOR map
+        byte[] body = getWireMock().findAll(postRequestedFor(urlEqualTo("/graphql"))).get(0).getBody();
+        assertEquals((byte) 0xbf, body[0]);
+        assertEquals((byte) 0xff, body[body.length - 1]);
+    }
+
+    @Test
+    public void testConnectionPool() throws IOException, URISyntaxException {
+        stubWireMock("allPeople.json");
+        HttpClientPool.closeAll();
+
+        for (int i = 0; i < 5; i++) {
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.POOL_MAX_TOTAL, 4)
+                    .property(HttpConfiguration.POOL_MAX_PER_ROUTE, 2)
+                    .build();
+
+            assertTrue(invocation.invoke().getGraphQLResponse().hasData());
+        }
+
+        // Sequential calls reuse a single connection, released back to the pool after each response
+        PoolStats stats = HttpClientPool.getTotalStats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+        assertEquals(4, stats.getMax());
+
+        // An invocation built before closeAll() uses a new client
+        HttpInvocation invocation = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .build();
+        HttpClientPool.closeAll();
+        assertTrue(invocation.invoke().getGraphQLResponse().hasData());
+        HttpClientPool.closeAll();
+    }
+
+    @Test
+    public void testInvokeAsync() throws Exception {
+        stubWireMock("allPeople.json");
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "graphql-async-test"));
+
+        try {
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .build();
+
+            CompletableFuture<String> thread = invocation.invokeAsync(executor)
+                    .thenApply(httpResponse -> Thread.currentThread().getName());
+            assertEquals("graphql-async-test", thread.get(10, TimeUnit.SECONDS));
+
+            Response response = invocation.invokeAsync(executor).get(10, TimeUnit.SECONDS).getGraphQLResponse();
+            assertFalse(response.hasError());
+            assertEquals(10, response.getList(Person.class, "people").size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatch() throws IOException, URISyntaxException {
+        stubWireMock("batch.json");
+
+        Request profile = new DynaQLRequest(Utils.getResourceFileContent("queries/queryWithIntVariable.graphql"));
+        profile.setVariable("personId", 2);
+
+        List<HttpResponse> httpResponses = HttpBatchInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/personById.graphql")))
+                .graphQLRequest(profile)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeopleWithErrors.graphql")))
+                .build()
+                .invoke();
+
+        assertEquals(3, httpResponses.size());
+        assertEquals("O'Reilly", httpResponses.get(0).getGraphQLResponse().getObject(Person.class, "person").getSurname());
+        assertTrue(httpResponses.get(1).getGraphQLResponse().getData().containsKey("profile"));
+        assertTrue(httpResponses.get(2).getGraphQLResponse().hasError());
+
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$[1].variables.personId", equalTo("2"))));
+    }
+
+    @Test
+    public void testAutoBatch() throws Exception {
+        stubWireMock("batch.json");
+
+        try (HttpAutoBatcher batcher = HttpBatchInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .property(HttpConfiguration.BATCH_WINDOW, 60_000L)
+                .property(HttpConfiguration.BATCH_MAX_SIZE, 3)
+                .buildAutoBatcher()) {
+
+            Request profile = new DynaQLRequest(Utils.getResourceFileContent("queries/queryWithIntVariable.graphql"));
+            profile.setVariable("personId", 2);
+
+            // The batch is full, hence sent, with the third request
+            CompletableFuture<HttpResponse> person = batcher.submit(new DynaQLRequest(Utils.getResourceFileContent("queries/personById.graphql")));
+            CompletableFuture<HttpResponse> profileResponse = batcher.submit(profile);
+            CompletableFuture<HttpResponse> errors = batcher.submit(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeopleWithErrors.graphql")));
+
+            assertTrue(person.get(10, TimeUnit.SECONDS).getGraphQLResponse().getData().containsKey("person"));
+            assertTrue(profileResponse.get(10, TimeUnit.SECONDS).getGraphQLResponse().getData().containsKey("profile"));
+            assertTrue(errors.get(10, TimeUnit.SECONDS).getGraphQLResponse().hasError());
+        }
+
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        stubWireMock("coalescedPersons.json");
+
+        try (HttpCoalescer coalescer = HttpBatchInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .property(HttpConfiguration.BATCH_WINDOW, 60_000L)
+                .property(HttpConfiguration.BATCH_MAX_SIZE, 3)
+                .buildCoalescer()) {
+
+            // The third field is the same as the first one: both are sent once
+            CompletableFuture<HttpResponse> first = coalescer.submit(field("person", args(arg("personId", 1)), field("surname"), field("names")));
+            CompletableFuture<HttpResponse> missing = coalescer.submit(field("person", args(arg("personId", 99)), field("surname"), field("names")));
+            CompletableFuture<HttpResponse> same = coalescer.submit(document(operation(field("person", args(arg("personId", 1)), field("surname"), field("names")))));
+
+            Response response = first.get(10, TimeUnit.SECONDS).getGraphQLResponse();
+            assertFalse(response.hasError());
+            assertEquals("O'Reilly", response.getObject(Person.class, "person").getSurname());
+            assertEquals(response.getData(), same.get(10, TimeUnit.SECONDS).getGraphQLResponse().getData());
+
+            Response missingResponse = missing.get(10, TimeUnit.SECONDS).getGraphQLResponse();
+            assertTrue(missingResponse.getData().isNull("person"));
+            assertEquals(1, missingResponse.getErrors().size());
+            assertEquals("person", missingResponse.getErrors().get(0).getPath()[0]);
+        }
+
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql"))
+                .withRequestBody(containing("_c0: person(personId:1)"))
+                .withRequestBody(containing("_c1: person(personId:99)"))
+                .withRequestBody(notMatching(".*_c2.*")));
+    }
+
+    @Test
+    public void testCoalescingValidationError() throws Exception {
+        getWireMock().resetAll();
+        getWireMock().stubFor(post(urlEqualTo("/graphql"))
+                .withRequestBody(containing("unknown"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("coalescedValidationError.json")));
+        getWireMock().stubFor(post(urlEqualTo("/graphql"))
+                .withRequestBody(notMatching(".*(unknown|_c0).*"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("personById.json")));
+
+        try (HttpCoalescer coalescer = HttpBatchInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .property(HttpConfiguration.BATCH_WINDOW, 60_000L)
+                .property(HttpConfiguration.BATCH_MAX_SIZE, 2)
+                .buildCoalescer()) {
+
+            CompletableFuture<HttpResponse> valid = coalescer.submit(field("person", args(arg("personId", 1)), field("surname")));
+            CompletableFuture<HttpResponse> invalid = coalescer.submit(field("person", args(arg("personId", 2)), field("unknown")));
+
+            // The invalid field fails the coalesced query, then only its own caller once sent separately
+            Response response = valid.get(10, TimeUnit.SECONDS).getGraphQLResponse();
+            assertFalse(response.hasError());
+            assertNotNull(response.getObject(Person.class, "person").getSurname());
+
+            Response invalidResponse = invalid.get(10, TimeUnit.SECONDS).getGraphQLResponse();
+            assertTrue(invalidResponse.hasError());
+            assertEquals(1, invalidResponse.getErrors().size());
+        }
+
+        getWireMock().verify(3, postRequestedFor(urlEqualTo("/graphql")));
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")).withRequestBody(containing("_c1: person(personId:2)")));
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        stubWireMockDelayed("allPeople.json", 500);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                HttpInvocation invocation = HttpInvocationBuilder
+                        .newBuilder()
+                        .uri(endpoint)
+                        .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                        .property(HttpConfiguration.SINGLE_FLIGHT, true)
+                        .build();
+                responses.add(CompletableFuture.supplyAsync(invocation::invoke, executor));
+            }
+
+            Response first = responses.get(0).get(10, TimeUnit.SECONDS).getGraphQLResponse();
+            for (CompletableFuture<HttpResponse> response : responses) {
+                assertSame(first, response.get(10, TimeUnit.SECONDS).getGraphQLResponse());
+            }
+
+            // The shared response is read by all the waiters at once
+            List<CompletableFuture<List<Person>>> people = new ArrayList<>();
+            for (CompletableFuture<HttpResponse> response : responses) {
+                people.add(response.thenApplyAsync(r -> r.getGraphQLResponse().getList(Person.class, "people"), executor));
+            }
+            for (CompletableFuture<List<Person>> list : people) {
+                assertEquals(10, list.get(10, TimeUnit.SECONDS).size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // The waiters joined the exchange of the first caller
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+        assertEquals(0, SingleFlight.size());
+    }
+
+    @Test
+    public void testSingleFlightAsync() throws Exception {
+        stubWireMockDelayed("allPeople.json", 500);
+
+        List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.SINGLE_FLIGHT, true)
+                    .build();
+            responses.add(invocation.invokeAsync());
+        }
+
+        Response first = responses.get(0).get(10, TimeUnit.SECONDS).getGraphQLResponse();
+        for (CompletableFuture<HttpResponse> response : responses) {
+            assertSame(first, response.get(10, TimeUnit.SECONDS).getGraphQLResponse());
+        }
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+        assertEquals(0, SingleFlight.size());
+    }
+
+    @Test
+    public void testResponseCache() throws IOException, URISyntaxException {
+        stubWireMockCacheable("allPeople.json", "public, max-age=60");
+        ResponseCache cache = new ResponseCache(1, 1 << 20);
+
+        for (int i = 0; i < 3; i++) {
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                    .build();
+
+            assertEquals(10, invocation.invoke().getGraphQLResponse().getList(Person.class, "people").size());
+        }
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // Another query takes the place of the first one
+        HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/personById.graphql")))
+                .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                .build()
+                .invoke();
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, cache.getStore().size());
+
+        stubWireMockCacheable("allPeople.json", "no-store");
+        cache.clear();
+        for (int i = 0; i < 2; i++) {
+            HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                    .build()
+                    .invoke();
+        }
+        getWireMock().verify(2, postRequestedFor(urlEqualTo("/graphql")));
+        assertEquals(0, cache.getStore().size());
+    }
+
+    @Test
+    public void testResponseCacheAsync() throws Exception {
+        stubWireMockCacheable("allPeople.json", "public, max-age=60");
+        ResponseCache cache = new ResponseCache(16, 1 << 20);
+
+        HttpInvocation invocation = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                .build();
+        assertEquals(10, invocation.invokeAsync().get(10, TimeUnit.SECONDS).getGraphQLResponse().getList(Person.class, "people").size());
+
+        // Served from the cache: already complete
+        CompletableFuture<HttpResponse> cached = invocation.invokeAsync();
+        assertTrue(cached.isDone());
+        assertEquals(10, cached.get().getGraphQLResponse().getList(Person.class, "people").size());
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testResponseCacheStaleWhileRevalidate() throws Exception {
+        ResponseCache cache = new ResponseCache(16, 1 << 20);
+
+        HttpInvocation invocation = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                .build();
+
+        // The first response is already 60 seconds old: stale, but usable while revalidated
+        stubWireMockCacheable("allPeople.json", "max-age=60, stale-while-revalidate=30");
+        getWireMock().stubFor(post(urlEqualTo("/graphql"))
+                .atPriority(1)
+                .inScenario("SWR")
+                .whenScenarioStateIs(STARTED)
+                .willSetStateTo("Revalidated")
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("Cache-Control", "max-age=60, stale-while-revalidate=30")
+                        .withHeader("Age", "60")
+                        .withBodyFile("allPeople.json")));
+
+        assertTrue(invocation.invoke().getGraphQLResponse().hasData());
+        assertTrue(invocation.invoke().getGraphQLResponse().hasData());
+        assertEquals(1, cache.getStaleHitCount());
+
+        // The background refresh stores a fresh response
+        for (int i = 0; i < 50 && getWireMock().getAllServeEvents().size() < 2; i++) {
+            Thread.sleep(100);
+        }
+        Thread.sleep(100);
+        assertTrue(invocation.invoke().getGraphQLResponse().hasData());
+        assertEquals(1, cache.getStaleHitCount());
+        assertEquals(1, cache.getMissCount());
+        getWireMock().verify(2, postRequestedFor(urlEqualTo("/graphql")));
+    }
+
+    @Test
+    public void testResponseCacheCanonicalKey() throws IOException, URISyntaxException {
+        stubWireMockCacheable("allPeople.json", "max-age=60");
+        ResponseCache cache = new ResponseCache(16, 1 << 20);
+
+        // The same query, formatted differently
+        String document = Utils.getResourceFileContent("queries/allPeople.graphql");
+        for (String text : new String[]{document, Canonicalizer.minify(document), "# All of them\n" + document.replace(" ", "  ")}) {
+            Response response = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(text))
+                    .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                    .build()
+                    .invoke()
+                    .getGraphQLResponse();
+            assertTrue(response.hasData());
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+    }
+
+    @Test
+    public void testOffHeapResponseCache() throws IOException, URISyntaxException {
+        stubWireMockCacheable("allPeople.json", "max-age=60");
+
+        // Two slabs of 4 KB, allocated when first needed
+        OffHeapResponseStore store = new OffHeapResponseStore(8192, 100, 4096);
+        ResponseCache cache = new ResponseCache(store);
+
+        List<Response> responses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                    .build();
+            responses.add(invocation.invoke().getGraphQLResponse());
+        }
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+        assertEquals(10, responses.get(2).getList(Person.class, "people").size());
+        assertEquals(responses.get(0).getData(), responses.get(2).getData());
+        assertEquals(4096, store.getAllocatedBytes());
+
+        // Parsed again from the direct buffer on each hit
+        assertNotSame(responses.get(1), responses.get(2));
+
+        // The first slab is reused once the second one is full: its entries are evicted
+        byte[] body = new byte[3000];
+        Arrays.fill(body, (byte) ' ');
+        store.put(new CacheEntry("second", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), body));
+        store.put(new CacheEntry("third", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), body));
+        assertEquals(8192, store.getAllocatedBytes());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, store.size());
+        assertEquals(3000, store.get("second").getBody().length);
+    }
+
+    @Test
+    public void testOffHeapResponseStoreLastSlab() {
+        // A slab of 4096 bytes, then a last one of 904 bytes
+        OffHeapResponseStore store = new OffHeapResponseStore(5000, 100, 4096);
+        byte[] large = new byte[3000];
+        byte[] small = new byte[700];
+
+        store.put(new CacheEntry("a", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), large));
+        // Too large for the last slab: the first one is reused
+        store.put(new CacheEntry("b", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), large));
+        assertNull(store.get("a"));
+        assertEquals(4096, store.getAllocatedBytes());
+
+        store.put(new CacheEntry("c", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), small));
+        store.put(new CacheEntry("d", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), small));
+        assertEquals(700, store.get("d").getBody().length);
+        assertEquals(3000, store.get("b").getBody().length);
+        assertEquals(3, store.size());
+        assertEquals(5000, store.getAllocatedBytes());
+    }
+
+    @Test
+    public void testOffHeapResponseStoreRemovals() {
+        OffHeapResponseStore store = new OffHeapResponseStore(8192, 2, 4096);
+        byte[] body = new byte[1000];
+
+        // Removed and evicted entries are forgotten by their slab too: reusing it evicts only what it still holds
+        store.put(new CacheEntry("entry-1", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), body));
+        store.put(new CacheEntry("entry-2", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), body));
+        store.remove("entry-2");
+        store.put(new CacheEntry("entry-3", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), body));
+        store.put(new CacheEntry("entry-4", Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), body));
+        assertEquals(2, store.size());
+        assertEquals(1, store.getEvictionCount());
+        assertNull(store.get("entry-1"));
+
+        long weight = store.getWeight();
+        for (int i = 0; i < 20; i++) {
+            store.put(new CacheEntry("entry" + (10 + i), Long.MAX_VALUE, Long.MAX_VALUE, Collections.emptyMap(), body));
+        }
+        assertEquals(2, store.size());
+        assertEquals(weight, store.getWeight());
+        // 24 entries put, 1 removed, 2 left
+        assertEquals(21, store.getEvictionCount());
+        assertEquals(1000, store.get("entry29").getBody().length);
+    }
+
+    @Test
+    public void testDiskResponseCache(@TempDir Path directory) throws IOException, URISyntaxException {
+        stubWireMockCacheable("allPeople.json", "max-age=60");
+
+        Response response;
+        try (DiskResponseStore store = new DiskResponseStore(directory, 1 << 20, 100)) {
+            ResponseCache cache = new ResponseCache(store);
+            response = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                    .build()
+                    .invoke()
+                    .getGraphQLResponse();
+            assertEquals(1, cache.getMissCount());
+        }
+
+        // A restarted client serves the entry from the disk, even after a write interrupted by a crash
+        Path segment = directory.resolve("segment-0.log");
+        Files.write(segment, new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+        try (DiskResponseStore store = new DiskResponseStore(directory, 1 << 20, 100)) {
+            ResponseCache cache = new ResponseCache(store);
+            Response cachedResponse = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RESPONSE_CACHE, cache)
+                    .build()
+                    .invoke()
+                    .getGraphQLResponse();
+            assertEquals(1, cache.getHitCount());
+            assertEquals(response.getData(), cachedResponse.getData());
+        }
+        getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+    }
+
+    @Test
+    public void testDiskResponseStoreCompaction(@TempDir Path directory) throws IOException {
+        byte[] body = new byte[1000];
+        Arrays.fill(body, (byte) ' ');
+        long now = System.currentTimeMillis();
+
+        try (DiskResponseStore store = new DiskResponseStore(directory, 16384, 100, 4096)) {
+            for (int i = 0; i < 40; i++) {
+                store.put(new CacheEntry("key" + i, now + 60000, now + 60000, Collections.emptyMap(), body));
+            }
+            store.put(new CacheEntry("expired", now - 1, now - 1, Collections.emptyMap(), body));
+            store.remove("key39");
+
+            assertTrue(store.getDiskBytes() <= 16384);
+            assertTrue(store.getEvictionCount() > 0);
+            assertNull(store.get("key0"));
+            assertNotNull(store.get("key38"));
+            assertNull(store.get("key39"));
+        }
+
+        // Neither removed nor expired entries come back on restart
+        try (DiskResponseStore store = new DiskResponseStore(directory, 16384, 100, 4096)) {
+            assertEquals(1000, store.get("key38").getBody().length);
+            assertNull(store.get("key39"));
+            assertNull(store.get("expired"));
+        }
+    }
+
+    @Test
+    public void testDiskResponseStoreCredentials(@TempDir Path directory) throws IOException {
+        String key = "http://localhost/graphql {Authorization=Bearer secret-token} null {} 0123";
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Cache-Control", "max-age=60");
+        headers.put("set-cookie", "session=secret-session");
+        long now = System.currentTimeMillis();
+
+        try (DiskResponseStore store = new DiskResponseStore(directory, 16384, 100, 4096)) {
+            store.put(new CacheEntry(key, now + 60000, now + 60000, headers, "{\"data\":{}}".getBytes(StandardCharsets.UTF_8)));
+            store.remove("Bearer other-token");
+        }
+
+        // Neither the key nor the cookie are written, the files are private
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+                assertFalse(content.contains("secret"), file.toString());
+                if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                    assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+                }
+            }
+        }
+
+        try (DiskResponseStore store = new DiskResponseStore(directory, 16384, 100, 4096)) {
+            CacheEntry entry = store.get(key);
+            assertEquals(key, entry.getKey());
+            assertEquals(Collections.singletonMap("Cache-Control", "max-age=60"), entry.getHeaders());
+            assertNull(store.get(key + " "));
+        }
+    }
+
+    @Test
+    public void testDiskResponseStoreInterruptedCompaction(@TempDir Path root) throws IOException {
+        Path directory = root.resolve("store");
+        Path backup = Files.createDirectory(root.resolve("backup"));
+        byte[] body = new byte[1000];
+        long now = System.currentTimeMillis();
+
+        try (DiskResponseStore store = new DiskResponseStore(directory, 16384, 100, 4096)) {
+            for (int i = 0; i < 10; i++) {
+                store.put(new CacheEntry("key" + i, now + 60000, now + 60000, Collections.emptyMap(), body));
+            }
+            assertEquals(0, store.getEvictionCount());
+
+            // A single store per directory
+            assertThrows(IOException.class, () -> new DiskResponseStore(directory, 16384, 100, 4096));
+        }
+        List<Path> former = new ArrayList<>();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path segment : segments) {
+                former.add(Files.copy(segment, backup.resolve(segment.getFileName())));
+            }
+        }
+
+        try (DiskResponseStore store = new DiskResponseStore(directory, 16384, 100, 4096)) {
+            for (int i = 10; i < 20; i++) {
+                store.put(new CacheEntry("key" + i, now + 60000, now + 60000, Collections.emptyMap(), body));
+            }
+            assertTrue(store.getEvictionCount() > 0);
+            assertNull(store.get("key0"));
+        }
+
+        // A crash after the rename of the compacted segment leaves the former ones, a crash before it a temporary file
+        for (Path segment : former) {
+            Files.copy(segment, directory.resolve(segment.getFileName()));
+        }
+        Files.write(directory.resolve("segment-99.compacting"), body);
+        try (DiskResponseStore store = new DiskResponseStore(directory, 16384, 100, 4096)) {
+            assertNull(store.get("key0"));
+            assertEquals(1000, store.get("key19").getBody().length);
+            for (Path segment : former) {
+                assertFalse(Files.exists(directory.resolve(segment.getFileName())));
+            }
+            assertFalse(Files.exists(directory.resolve("segment-99.compacting")));
+        }
+    }
+
+    @Test
+    public void testRetry() throws IOException, URISyntaxException {
+        // 429 with Retry-After, then 503, then the response
+        stubWireMock("allPeople.json");
+        getWireMock().stubFor(post(urlEqualTo("/graphql"))
+                .atPriority(1)
+                .inScenario("Retry")
+                .whenScenarioStateIs(STARTED)
+                .willSetStateTo("Throttled")
+                .willReturn(aResponse().withStatus(429).withHeader("Retry-After", "0")));
+        getWireMock().stubFor(post(urlEqualTo("/graphql"))
+                .atPriority(1)
+                .inScenario("Retry")
+                .whenScenarioStateIs("Throttled")
+                .willSetStateTo("Available")
+                .willReturn(aResponse().withStatus(503)));
+
+        try {
+            Response response = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RETRY_MAX_ATTEMPTS, 3)
+                    .property(HttpConfiguration.RETRY_BASE_DELAY, 10L)
+                    .build()
+                    .invoke()
+                    .getGraphQLResponse();
+            assertTrue(response.hasData());
+            getWireMock().verify(3, postRequestedFor(urlEqualTo("/graphql")));
+            assertEquals(8, RetryPolicy.getBudget(URI.create(endpoint)), 0.001);
+
+            // Mutations are never retried
+            getWireMock().resetAll();
+            getWireMock().stubFor(post(urlEqualTo("/graphql")).willReturn(aResponse().withStatus(503)));
+            Request request = new DynaQLRequest(Utils.getResourceFileContent("queries/createPersonWithVariables.graphql"))
+                    .setVariable("surname", "James")
+                    .setVariable("names", "JF")
+                    .setVariable("birthDate", "27/04/1962");
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(request)
+                    .property(HttpConfiguration.RETRY_MAX_ATTEMPTS, 3)
+                    .property(HttpConfiguration.RETRY_BASE_DELAY, 10L)
+                    .build();
+            HttpInvocationException ex = assertThrows(HttpInvocationException.class, invocation::invoke);
+            assertEquals(503, ((HttpStatusException) ex.getCause()).getStatusCode());
+            getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+        } finally {
+            RetryPolicy.clear();
+        }
+    }
+
+    @Test
+    public void testRetryDelayBounds() throws IOException, URISyntaxException {
+        getWireMock().resetAll();
+        getWireMock().stubFor(post(urlEqualTo("/graphql")).willReturn(aResponse().withStatus(503)));
+
+        try {
+            // A base delay overflowing once doubled is bounded by the maximum delay
+            HttpInvocation invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RETRY_MAX_ATTEMPTS, 4)
+                    .property(HttpConfiguration.RETRY_BASE_DELAY, Long.MAX_VALUE / 2)
+                    .property(HttpConfiguration.RETRY_MAX_DELAY, 5L)
+                    .build();
+            HttpInvocationException ex = assertThrows(HttpInvocationException.class, invocation::invoke);
+            assertEquals(503, ((HttpStatusException) ex.getCause()).getStatusCode());
+            getWireMock().verify(4, postRequestedFor(urlEqualTo("/graphql")));
+
+            // A Retry-After too large to be counted in milliseconds is not waited for
+            getWireMock().resetAll();
+            getWireMock().stubFor(post(urlEqualTo("/graphql"))
+                    .willReturn(aResponse().withStatus(429).withHeader("Retry-After", String.valueOf(Long.MAX_VALUE / 100))));
+            invocation = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RETRY_MAX_ATTEMPTS, 3)
+                    .build();
+            assertThrows(HttpInvocationException.class, invocation::invoke);
+            getWireMock().verify(1, postRequestedFor(urlEqualTo("/graphql")));
+        } finally {
+            RetryPolicy.clear();
+        }
+    }
+
+    @Test
+    public void testRetryAsync() throws Exception {
+        // 503, then the response: the backoff is scheduled, not slept on the calling thread
+        stubWireMock("allPeople.json");
+        getWireMock().stubFor(post(urlEqualTo("/graphql"))
+                .atPriority(1)
+                .inScenario("RetryAsync")
+                .whenScenarioStateIs(STARTED)
+                .willSetStateTo("Available")
+                .willReturn(aResponse().withStatus(503)));
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "graphql-async-test"));
+
+        try {
+            CompletableFuture<HttpResponse> future = HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RETRY_MAX_ATTEMPTS, 3)
+                    .property(HttpConfiguration.RETRY_BASE_DELAY, 10L)
+                    .build()
+                    .invokeAsync(executor);
+            assertTrue(future.get(10, TimeUnit.SECONDS).getGraphQLResponse().hasData());
+            getWireMock().verify(2, postRequestedFor(urlEqualTo("/graphql")));
+            assertEquals(9, RetryPolicy.getBudget(URI.create(endpoint)), 0.001);
+
+            // Failing once the attempts are exhausted
+            getWireMock().resetAll();
+            getWireMock().stubFor(post(urlEqualTo("/graphql")).willReturn(aResponse().withStatus(503)));
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> HttpInvocationBuilder
+                    .newBuilder()
+                    .uri(endpoint)
+                    .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                    .property(HttpConfiguration.RETRY_MAX_ATTEMPTS, 3)
+                    .property(HttpConfiguration.RETRY_BASE_DELAY, 10L)
+                    .build()
+                    .invokeAsync(executor)
+                    .get(10, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof HttpInvocationException);
+            assertEquals(503, ((HttpStatusException) ex.getCause().getCause()).getStatusCode());
+            getWireMock().verify(3, postRequestedFor(urlEqualTo("/graphql")));
+        } finally {
+            executor.shutdown();
+            RetryPolicy.clear();
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        getWireMock().resetAll();
+        getWireMock().stubFor(post(urlEqualTo("/graphql")).willReturn(aResponse().withStatus(502)));
+
+        HttpInvocation invocation = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .property(HttpConfiguration.CIRCUIT_BREAKER_THRESHOLD, 2)
+                .property(HttpConfiguration.CIRCUIT_BREAKER_OPEN_DURATION, 200L)
+                .build();
+
+        try {
+            assertThrows(HttpInvocationException.class, invocation::invoke);
+            assertEquals(CircuitBreaker.State.CLOSED, CircuitBreaker.getState(URI.create(endpoint)));
+            assertThrows(HttpInvocationException.class, invocation::invoke);
+            assertEquals(CircuitBreaker.State.OPEN, CircuitBreaker.getState(URI.create(endpoint)));
+
+            // Open: failing without sending anything
+            HttpInvocationException ex = assertThrows(HttpInvocationException.class, invocation::invoke);
+            assertTrue(ex.getMessage().startsWith("Circuit breaker open"));
+            getWireMock().verify(2, postRequestedFor(urlEqualTo("/graphql")));
+
+            // A failed probe opens it again, a successful one closes it
+            Thread.sleep(250);
+            assertThrows(HttpStatusException.class, () -> {
+                try {
+                    invocation.invoke();
+                } catch (HttpInvocationException e) {
+                    throw e.getCause();
+                }
+            });
+            assertEquals(CircuitBreaker.State.OPEN, CircuitBreaker.getState(URI.create(endpoint)));
+
+            Thread.sleep(250);
+            stubWireMock("allPeople.json");
+            assertTrue(invocation.invoke().getGraphQLResponse().hasData());
+            assertEquals(CircuitBreaker.State.CLOSED, CircuitBreaker.getState(URI.create(endpoint)));
+        } finally {
+            CircuitBreaker.clear();
+        }
+    }
+
+    @Test
+    public void testCircuitBreakerAsync() throws Exception {
+        getWireMock().resetAll();
+        getWireMock().stubFor(post(urlEqualTo("/graphql")).willReturn(aResponse().withStatus(502)));
+
+        HttpInvocation invocation = HttpInvocationBuilder
+                .newBuilder()
+                .uri(endpoint)
+                .graphQLRequest(new DynaQLRequest(Utils.getResourceFileContent("queries/allPeople.graphql")))
+                .property(HttpConfiguration.CIRCUIT_BREAKER_THRESHOLD, 2)
+                .property(HttpConfiguration.CIRCUIT_BREAKER_OPEN_DURATION, 200L)
+                .build();
+
+        try {
+            assertThrows(ExecutionException.class, () -> invocation.invokeAsync().get(10, TimeUnit.SECONDS));
+            assertThrows(ExecutionException.class, () -> invocation.invokeAsync().get(10, TimeUnit.SECONDS));
+            assertEquals(CircuitBreaker.State.OPEN, CircuitBreaker.getState(URI.create(endpoint)));
+
+            // Open: failing without sending anything
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> invocation.invokeAsync().get(10, TimeUnit.SECONDS));
+            assertTrue(ex.getCause().getMessage().startsWith("Circuit breaker open"));
+            getWireMock().verify(2, postRequestedFor(urlEqualTo("/graphql")));
+
+            // A successful probe closes it
+            Thread.sleep(250);
+            stubWireMock("allPeople.json");
+            assertTrue(invocation.invokeAsync().get(10, TimeUnit.SECONDS).getGraphQLResponse().hasData());
+            assertEquals(CircuitBreaker.State.CLOSED, CircuitBreaker.getState(URI.create(endpoint)));
+        } finally {
+            CircuitBreaker.clear();
+        }
+    }
+
     @Test
     public void testCreatePerson() throws IOException, URISyntaxException {
         Request request = new DynaQLRequest(Utils.getResourceFileContent("queries/createPersonWithVariables.graphql"))
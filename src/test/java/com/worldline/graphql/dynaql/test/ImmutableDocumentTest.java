@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.test;
+
+import com.worldline.graphql.dynaql.impl.core.immutable.ImmutableArgument;
+import com.worldline.graphql.dynaql.impl.core.immutable.ImmutableDocument;
+import com.worldline.graphql.dynaql.impl.core.immutable.ImmutableField;
+import com.worldline.graphql.dynaql.impl.core.immutable.ImmutableOperation;
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.eclipse.microprofile.graphql.client.core.OperationType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.eclipse.microprofile.graphql.client.core.Argument.arg;
+import static org.eclipse.microprofile.graphql.client.core.Argument.args;
+import static org.eclipse.microprofile.graphql.client.core.Document.document;
+import static org.eclipse.microprofile.graphql.client.core.Field.field;
+import static org.eclipse.microprofile.graphql.client.core.Operation.operation;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ImmutableDocumentTest {
+
+    private static Document mutableDocument() {
+        return document(
+                operation(OperationType.QUERY, "people",
+                        field("person", args(arg("personId", 1), arg("surname", "James")),
+                                field("names"),
+                                field("address",
+                                        field("street"),
+                                        field("city"))),
+                        field("people",
+                                field("surname"))));
+    }
+
+    @Test
+    public void testBuildMatchesMutableDocument() {
+        Document document = mutableDocument();
+        ImmutableDocument immutableDocument = ImmutableDocument.of(document);
+        assertEquals(document.build(), immutableDocument.build());
+
+        // Built from the factories, not from a mutable document
+        ImmutableDocument built = ImmutableDocument.document(
+                ImmutableOperation.operation(OperationType.QUERY, "people",
+                        ImmutableField.field("person", Arrays.asList(ImmutableArgument.arg("personId", 1), ImmutableArgument.arg("surname", "James")),
+                                ImmutableField.field("names"),
+                                ImmutableField.field("address",
+                                        ImmutableField.field("street"),
+                                        ImmutableField.field("city"))),
+                        ImmutableField.field("people",
+                                ImmutableField.field("surname"))));
+        assertEquals(document.build(), built.build());
+        assertEquals(immutableDocument, built);
+        assertEquals(immutableDocument.hashCode(), built.hashCode());
+        assertEquals(document.build(), built.prepare().getText());
+        assertSame(built.prepare(), built.prepare());
+    }
+
+    @Test
+    public void testStructuralSharing() {
+        ImmutableDocument document = ImmutableDocument.of(mutableDocument());
+        ImmutableOperation operation = document.getOperations().get(0);
+        ImmutableField person = operation.getFields().get(0);
+        ImmutableField address = person.getFields().get(1);
+
+        ImmutableField changedPerson = person.withArgument(ImmutableArgument.arg("personId", 2));
+        ImmutableOperation changedOperation = operation.withField(changedPerson);
+        ImmutableDocument changedDocument = document.withOperation(changedOperation);
+
+        // Untouched subtrees are the same instances, touched ones are new
+        assertSame(address, changedPerson.getFields().get(1));
+        assertSame(person.getFields().get(0), changedPerson.getFields().get(0));
+        assertSame(operation.getFields().get(1), changedOperation.getFields().get(1));
+        assertNotSame(person, changedPerson);
+        assertNotEquals(document, changedDocument);
+
+        // The original is left unchanged
+        assertEquals(mutableDocument().build(), document.build());
+        assertEquals(mutableDocument().build().replace("personId:1", "personId:2"), changedDocument.build());
+
+        // Updates changing nothing return the same instance
+        assertSame(person, person.withArgument(ImmutableArgument.arg("personId", 1)));
+        assertSame(person, person.withoutField("unknown"));
+        assertSame(operation, operation.withField(person));
+        assertSame(document, document.withOperation(operation));
+
+        ImmutableField withoutAddress = person.withoutField("address");
+        assertEquals(1, withoutAddress.getFields().size());
+        assertSame(person.getFields().get(0), withoutAddress.getFields().get(0));
+        assertEquals(person, withoutAddress.withField(address));
+    }
+
+    @Test
+    public void testIntern() {
+        ImmutableField address = ImmutableField.field("address", ImmutableField.field("street"), ImmutableField.field("city"));
+        ImmutableField sameAddress = ImmutableField.field("address", ImmutableField.field("street"), ImmutableField.field("city"));
+        assertNotSame(address, sameAddress);
+
+        ImmutableField interned = address.intern();
+        assertSame(interned, sameAddress.intern());
+        assertSame(interned, ImmutableField.of(field("address", field("street"), field("city"))).intern());
+        assertNotSame(interned, ImmutableField.field("address", ImmutableField.field("street")).intern());
+        assertSame(interned.build(), sameAddress.intern().build());
+    }
+}
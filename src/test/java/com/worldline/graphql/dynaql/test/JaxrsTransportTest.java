@@ -34,10 +34,20 @@ import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
@@ -323,4 +333,77 @@ public class JaxrsTransportTest {
             assertFalse(r.hasError());
         });
     }
+
+    @Test
+    public void testRequestWriterEncoding() throws IOException, URISyntaxException {
+        DynaQLRequest request = new DynaQLRequest(Utils.getResourceFileContent("queries/queryWithStringVariable.graphql"))
+                .setOperationName("PeopleBySurname");
+        request.setVariable("surname", "Zémlak \"2\"");
+
+        ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
+        new GraphQLRequestWriter().writeTo(request, DynaQLRequest.class, DynaQLRequest.class, null,
+                MediaType.APPLICATION_JSON_TYPE, null, entityStream);
+
+        JsonObject written = javax.json.Json.createReader(new InputStreamReader(new ByteArrayInputStream(entityStream.toByteArray()), StandardCharsets.UTF_8)).readObject();
+        assertEquals(request.getDocument(), written.getString("query"));
+        assertEquals("PeopleBySurname", written.getString("operationName"));
+        assertEquals("Zémlak \"2\"", written.getJsonObject("variables").getString("surname"));
+        assertEquals(javax.json.Json.createReader(new StringReader(request.toJson())).readObject(), written);
+    }
+
+    @Test
+    public void testTypedVariables() throws IOException, URISyntaxException {
+        Person person = new Person();
+        person.setId(12);
+        person.setSurname("James");
+        person.setNames(new String[]{"JF"});
+        person.setBirthDate(LocalDate.of(1962, 4, 27));
+
+        Map<String, Object> filter = new LinkedHashMap<>();
+        filter.put("ids", new int[]{1, 2});
+        filter.put("since", LocalDate.of(2020, 1, 31));
+        filter.put("active", Optional.of(true));
+
+        DynaQLRequest request = new DynaQLRequest(Utils.getResourceFileContent("queries/createPersonWithVariables.graphql"));
+        request.setVariable("person", person)
+                .setVariable("filter", filter)
+                .setVariable("limit", 10L)
+                .setVariable("ratio", new BigDecimal("0.25"))
+                .setVariable("tags", Arrays.asList("a", null))
+                .setVariable("unit", TimeUnit.SECONDS);
+
+        JsonObject variables = javax.json.Json.createReader(new StringReader(request.toJson())).readObject().getJsonObject("variables");
+
+        JsonObject writtenPerson = variables.getJsonObject("person");
+        assertEquals(12, writtenPerson.getInt("id"));
+        assertEquals("JF", writtenPerson.getJsonArray("names").getString(0));
+        assertEquals("27/04/1962", writtenPerson.getString("birthDate"));
+        assertFalse(writtenPerson.containsKey("addresses"));
+        assertEquals(2, variables.getJsonObject("filter").getJsonArray("ids").getInt(1));
+        assertEquals("2020-01-31", variables.getJsonObject("filter").getString("since"));
+        assertTrue(variables.getJsonObject("filter").getBoolean("active"));
+        assertEquals(10L, variables.getJsonNumber("limit").longValue());
+        assertEquals(new BigDecimal("0.25"), variables.getJsonNumber("ratio").bigDecimalValue());
+        assertTrue(variables.getJsonArray("tags").isNull(1));
+        assertEquals("SECONDS", variables.getString("unit"));
+    }
+
+    @Test
+    public void testRequestReuse() throws IOException, URISyntaxException {
+        DynaQLRequest request = new DynaQLRequest(Utils.getResourceFileContent("queries/queryWithStringVariable.graphql"));
+
+        for (String surname : Arrays.asList("Zemlak", "James")) {
+            request.resetVariables().setVariable("surname", surname);
+            JsonObject written = javax.json.Json.createReader(new ByteArrayInputStream(request.toJsonBytes())).readObject();
+            assertEquals(request.getDocument(), written.getString("query"));
+            assertEquals(surname, written.getJsonObject("variables").getString("surname"));
+            assertFalse(written.containsKey("operationName"));
+        }
+
+        request.setOperationName("PeopleBySurname").resetVariables();
+        JsonObject written = javax.json.Json.createReader(new StringReader(request.toJson())).readObject();
+        assertEquals("PeopleBySurname", written.getString("operationName"));
+        assertFalse(written.containsKey("variables"));
+        assertEquals(written, javax.json.Json.createReader(new ByteArrayInputStream(request.toJsonBytes())).readObject());
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.test;
+
+import com.worldline.graphql.dynaql.impl.core.utils.SelectionMerger;
+import org.eclipse.microprofile.graphql.client.core.Argument;
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.eclipse.microprofile.graphql.client.core.OperationType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.eclipse.microprofile.graphql.client.core.Argument.arg;
+import static org.eclipse.microprofile.graphql.client.core.Argument.args;
+import static org.eclipse.microprofile.graphql.client.core.Document.document;
+import static org.eclipse.microprofile.graphql.client.core.Field.field;
+import static org.eclipse.microprofile.graphql.client.core.Operation.operation;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SelectionMergerTest {
+
+    @Test
+    public void testDuplicateFieldsMerged() {
+        Document document = document(
+                operation(OperationType.QUERY, "people",
+                        field("person", args(arg("personId", 1), arg("surname", "James")),
+                                field("names"),
+                                field("address",
+                                        field("street"))),
+                        field("person", args(arg("surname", "James"), arg("personId", 1)),
+                                field("names"),
+                                field("address",
+                                        field("city")))));
+
+        SelectionMerger.Result result = SelectionMerger.merge(document);
+
+        assertEquals("query people{person(personId:1, surname:\"James\"){names address{street city}}}",
+                result.getDocument().build());
+        assertEquals(Arrays.asList("people.person", "people.person.names", "people.person.address"),
+                result.getRemovedSelections());
+        assertTrue(result.hasRemovedSelections());
+    }
+
+    @Test
+    public void testArgumentConflictsNotMerged() {
+        Document document = document(
+                operation(OperationType.QUERY, "people",
+                        field("person", args(arg("personId", 1)),
+                                field("names")),
+                        field("person", args(arg("personId", 2)),
+                                field("names")),
+                        field("person",
+                                field("names"))));
+
+        SelectionMerger.Result result = SelectionMerger.merge(document);
+
+        assertEquals(document.build(), result.getDocument().build());
+        assertFalse(result.hasRemovedSelections());
+    }
+
+    @Test
+    public void testSourceUnchanged() {
+        Document document = document(
+                operation(OperationType.QUERY, "people",
+                        field("person", args(arg("personId", 1)),
+                                field("names")),
+                        field("person", args(arg("personId", 1)),
+                                field("surname"))));
+        String source = document.build();
+
+        SelectionMerger.Result result = SelectionMerger.merge(document);
+        assertEquals(source, document.build());
+
+        // The merged document owns its arguments: updating them leaves the source alone
+        Argument merged = result.getDocument().getOperations().get(0).getFields().get(0).getArguments().get(0);
+        assertNotSame(document.getOperations().get(0).getFields().get(0).getArguments().get(0), merged);
+        merged.setValue(2);
+        result.getDocument().getOperations().get(0).getFields().get(0).getArguments().add(arg("surname", "James"));
+
+        assertEquals("query people{person(personId:2, surname:\"James\"){names surname}}", result.getDocument().build());
+        assertEquals(source, document.build());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.test;
+
+import com.worldline.graphql.dynaql.impl.core.utils.StringEscaper;
+import com.worldline.graphql.dynaql.impl.core.utils.ValueFormatter;
+import graphql.language.Field;
+import graphql.language.OperationDefinition;
+import graphql.language.StringValue;
+import graphql.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import javax.json.Json;
+import javax.json.JsonReader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StringEscaperTest {
+
+    @Test
+    public void testControlCharacters() {
+        assertEquals("\\u0000\\u0001\\u001f", StringEscaper.quote("\u0000\u0001\u001f").replace("\"", ""));
+        assertEquals("\"\\b\\t\\n\\f\\r\"", StringEscaper.quote("\b\t\n\f\r"));
+        assertEquals("\"a\\u000bb\"", StringEscaper.quote("a\u000bb"));
+
+        StringBuilder all = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) {
+            all.append(c);
+        }
+        _assertRoundTrips(all.toString());
+    }
+
+    @Test
+    public void testQuoteAndBackslash() {
+        assertEquals("\"\\\"\"", StringEscaper.quote("\""));
+        assertEquals("\"\\\\\"", StringEscaper.quote("\\"));
+        assertEquals("\"say \\\"hi\\\" to C:\\\\\"", StringEscaper.quote("say \"hi\" to C:\\"));
+        _assertRoundTrips("say \"hi\" to C:\\");
+    }
+
+    @Test
+    public void testNonAscii() {
+        // Except for the line and paragraph separators
+        assertEquals("\"\\u2028\\u2029\"", StringEscaper.quote("\u2028\u2029"));
+        assertEquals("\"é€\u00ff\u0080\ud83d\ude00\"", StringEscaper.quote("é€\u00ff\u0080\ud83d\ude00"));
+        assertEquals("\u007f", StringEscaper.quote("\u007f").replace("\"", ""));
+        _assertRoundTrips("\u2028\u2029 é€ \ud83d\ude00 \u007f");
+    }
+
+    @Test
+    public void testNothingToEscape() {
+        StringBuilder builder = new StringBuilder("prefix:");
+        StringEscaper.appendEscaped("plain text", builder);
+        assertEquals("prefix:plain text", builder.toString());
+        assertEquals("\"\"", StringEscaper.quote(""));
+    }
+
+    /*
+        The literal reads back as the original string, both in a JSON document and as a GraphQL argument.
+    */
+    private static void _assertRoundTrips(String value) {
+        try (JsonReader reader = Json.createReader(new StringReader("{\"query\":" + StringEscaper.quote(value) + "}"))) {
+            assertEquals(value, reader.readObject().getString("query"));
+        }
+
+        String document = "query { person(name: " + ValueFormatter.format(value) + ") { id } }";
+        OperationDefinition operation = (OperationDefinition) new Parser().parseDocument(document).getDefinitions().get(0);
+        Field field = (Field) operation.getSelectionSet().getSelections().get(0);
+        assertEquals(value, ((StringValue) field.getArguments().get(0).getValue()).getValue());
+    }
+}
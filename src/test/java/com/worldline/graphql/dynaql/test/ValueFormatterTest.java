@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.test;
+
+import com.worldline.graphql.dynaql.impl.core.utils.ScalarFormatter;
+import com.worldline.graphql.dynaql.impl.core.utils.ValueFormatter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ValueFormatterTest {
+
+    static class Amount {
+        final int cents;
+
+        Amount(int cents) {
+            this.cents = cents;
+        }
+    }
+
+    static class Euros extends Amount {
+        Euros(int cents) {
+            super(cents);
+        }
+    }
+
+    static class Length {
+        final int millimeters;
+
+        Length(int millimeters) {
+            this.millimeters = millimeters;
+        }
+
+        @Override
+        public String toString() {
+            return millimeters + "mm";
+        }
+    }
+
+    static class Meters extends Length {
+        Meters(int millimeters) {
+            super(millimeters);
+        }
+    }
+
+    interface Coded {
+        String code();
+    }
+
+    interface Country extends Coded {
+    }
+
+    static class France implements Country {
+        @Override
+        public String code() {
+            return "FR";
+        }
+    }
+
+    @Test
+    public void testLookupBySuperclassAndInterface() {
+        ValueFormatter.register(Amount.class, (amount, builder) -> builder.append(amount.cents / 100.0));
+        ValueFormatter.register(Coded.class, (coded, builder) -> ValueFormatter.appendQuotedString(coded.code(), builder));
+
+        assertEquals("12.5", ValueFormatter.format(new Euros(1250)));
+        // Through a super-interface
+        assertEquals("\"FR\"", ValueFormatter.format(new France()));
+    }
+
+    @Test
+    public void testRegisterReplacesResolvedFormatters() {
+        ValueFormatter.register(Length.class, (length, builder) -> builder.append(length.millimeters));
+        assertEquals("1250", ValueFormatter.format(new Meters(1250)));
+
+        // Meters was resolved to the formatter of Length: a more specific registration takes over
+        ValueFormatter.register(Meters.class, (meters, builder) -> builder.append(meters.millimeters / 1000.0));
+        assertEquals("1.25", ValueFormatter.format(new Meters(1250)));
+        assertEquals("1250", ValueFormatter.format(new Length(1250)));
+
+        // And so does a replaced registration
+        ValueFormatter.register(Length.class, ScalarFormatter.quoted());
+        assertEquals("\"1250mm\"", ValueFormatter.format(new Length(1250)));
+        assertEquals("1.25", ValueFormatter.format(new Meters(1250)));
+    }
+
+    @Test
+    public void testPrimitiveArrays() {
+        assertEquals("[1,2,3]", ValueFormatter.format(new int[]{1, 2, 3}));
+        assertEquals("[1,-2]", ValueFormatter.format(new long[]{1L, -2L}));
+        assertEquals("[1.5,2.0]", ValueFormatter.format(new double[]{1.5, 2}));
+        assertEquals("[0.5]", ValueFormatter.format(new float[]{0.5f}));
+        assertEquals("[3,4]", ValueFormatter.format(new short[]{3, 4}));
+        assertEquals("[-1]", ValueFormatter.format(new byte[]{-1}));
+        assertEquals("[true,false]", ValueFormatter.format(new boolean[]{true, false}));
+        assertEquals("[\"a\",\"\\\"\"]", ValueFormatter.format(new char[]{'a', '"'}));
+        assertEquals("[]", ValueFormatter.format(new int[0]));
+    }
+
+    @Test
+    public void testPrimitiveArrayBounds() {
+        assertEquals("[-2147483648,2147483647]", ValueFormatter.format(new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE}));
+        assertEquals("[-9223372036854775808,9223372036854775807]", ValueFormatter.format(new long[]{Long.MIN_VALUE, Long.MAX_VALUE}));
+        assertEquals("[1.0E-5,1.0E21,-0.0]", ValueFormatter.format(new double[]{1e-5, 1e21, -0.0}));
+        assertEquals("[3.4028235E38]", ValueFormatter.format(new float[]{Float.MAX_VALUE}));
+        assertEquals("[-32768,32767]", ValueFormatter.format(new short[]{Short.MIN_VALUE, Short.MAX_VALUE}));
+        assertEquals("[-128,127]", ValueFormatter.format(new byte[]{Byte.MIN_VALUE, Byte.MAX_VALUE}));
+        assertEquals("[\"\\n\",\"\\u0000\"]", ValueFormatter.format(new char[]{'\n', '\0'}));
+    }
+
+    @Test
+    public void testLargePrimitiveArrays() {
+        int[] ids = new int[10_000];
+        long[] longIds = new long[ids.length];
+        StringJoiner expected = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i * 7;
+            longIds[i] = i * 7L;
+            expected.add(String.valueOf(i * 7));
+        }
+        assertEquals(expected.toString(), ValueFormatter.format(ids));
+        assertEquals(expected.toString(), ValueFormatter.format(longIds));
+    }
+
+    @Test
+    public void testObjectArraysAndIterables() {
+        assertEquals("[1,\"a\",null,[2,3]]", ValueFormatter.format(new Object[]{1, "a", null, new int[]{2, 3}}));
+        assertEquals("[\"x\",\"y\"]", ValueFormatter.format(new String[]{"x", "y"}));
+
+        assertEquals("[1,2]", ValueFormatter.format(Arrays.asList(1, 2)));
+        assertEquals("[1,2]", ValueFormatter.format(new LinkedList<>(Arrays.asList(1, 2))));
+        assertEquals("[\"b\",\"a\"]", ValueFormatter.format(new LinkedHashSet<>(Arrays.asList("b", "a"))));
+        assertEquals("[[true],[]]", ValueFormatter.format(Arrays.asList(Collections.singletonList(true), Collections.emptyList())));
+        assertEquals("[]", ValueFormatter.format(Collections.emptySet()));
+    }
+}
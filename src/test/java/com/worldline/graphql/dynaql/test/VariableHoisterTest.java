@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.worldline.graphql.dynaql.test;
+
+import com.worldline.graphql.dynaql.impl.DynaQLRequest;
+import com.worldline.graphql.dynaql.impl.core.utils.VariableHoister;
+import org.eclipse.microprofile.graphql.client.core.Document;
+import org.eclipse.microprofile.graphql.client.core.OperationType;
+import org.eclipse.microprofile.graphql.client.core.Variable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.eclipse.microprofile.graphql.client.core.Argument.arg;
+import static org.eclipse.microprofile.graphql.client.core.Argument.args;
+import static org.eclipse.microprofile.graphql.client.core.Document.document;
+import static org.eclipse.microprofile.graphql.client.core.Field.field;
+import static org.eclipse.microprofile.graphql.client.core.Operation.operation;
+import static org.eclipse.microprofile.graphql.client.core.ScalarType.GQL_INT;
+import static org.eclipse.microprofile.graphql.client.core.Variable.var;
+import static org.eclipse.microprofile.graphql.client.core.Variable.vars;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VariableHoisterTest {
+
+    private static Document people(int personId, String surname) {
+        return document(
+                operation(OperationType.QUERY, "people",
+                        field("person", args(arg("personId", personId), arg("surname", surname)),
+                                field("names"))));
+    }
+
+    @Test
+    public void testLiteralsRewritten() {
+        VariableHoister.Result result = VariableHoister.hoist(people(1, "James"));
+
+        assertEquals("query people($personId:Int!, $surname:String!){person(personId:$personId, surname:$surname){names}}",
+                result.getDocument().build());
+        assertEquals(1, result.getVariables().get("personId"));
+        assertEquals("James", result.getVariables().get("surname"));
+
+        DynaQLRequest request = result.toRequest();
+        assertEquals(result.getDocument().build(), request.getDocument());
+        assertEquals(result.getVariables(), request.getVariables());
+    }
+
+    @Test
+    public void testVariableTypes() {
+        Document document = document(
+                operation(OperationType.QUERY, "things", vars(var("id", GQL_INT)),
+                        field("things", args(
+                                arg("id", 1),
+                                arg("big", 5_000_000_000L),
+                                arg("ratio", 0.5),
+                                arg("active", true),
+                                arg("tags", Arrays.asList("a", "b")),
+                                arg("ids", new int[]{1, 2}),
+                                arg("mixed", Arrays.asList("a", 1)),
+                                arg("empty", new String[0])),
+                                field("name"))));
+
+        VariableHoister.Result result = VariableHoister.hoist(document);
+
+        List<Variable> variables = result.getDocument().getOperations().get(0).getVariables();
+        assertEquals("id id2 ratio active tags ids", variables.stream()
+                .map(Variable::getName)
+                .reduce((a, b) -> a + " " + b).orElse(""));
+        assertEquals("query things($id:Int, $id2:Int!, $ratio:Float!, $active:Boolean!, $tags:[String!]!, $ids:[Int!]!)"
+                        + "{things(id:$id2, big:5000000000, ratio:$ratio, active:$active, tags:$tags, ids:$ids, mixed:[\"a\",1], empty:[]){name}}",
+                result.getDocument().build());
+    }
+
+    @Test
+    public void testNothingToHoist() {
+        Document document = document(
+                operation(OperationType.QUERY, "people",
+                        field("people",
+                                field("names"))));
+
+        VariableHoister.Result result = VariableHoister.hoist(document);
+
+        assertFalse(result.hasVariables());
+        assertEquals(document.build(), result.getDocument().build());
+    }
+
+    @Test
+    public void testPreparedDocumentReused() {
+        VariableHoister.Result result = VariableHoister.hoist(people(1, "James"));
+        VariableHoister.Result other = VariableHoister.hoist(people(2, "Smith"));
+        assertTrue(result.hasVariables());
+
+        // Same text whatever the values: prepared once, for every request and every result
+        assertSame(result.toRequest().getPreparedDocument(), result.toRequest().getPreparedDocument());
+        assertSame(result.getPreparedDocument(), other.getPreparedDocument());
+
+        DynaQLRequest request = other.toRequest();
+        assertNotSame(result.toRequest(), request);
+        assertEquals(2, request.getVariable("personId"));
+        assertEquals("Smith", request.getVariable("surname"));
+    }
+}
@@ -3,9 +3,15 @@ package helper;
 import com.github.tomakehurst.wiremock.WireMockServer;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.matchingJsonPath;
+import static com.github.tomakehurst.wiremock.client.WireMock.notMatching;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
 
 public class WireMockHelper {
     public static WireMockServer wireMockServer;
@@ -19,13 +25,101 @@ public class WireMockHelper {
     }
 
     public static void stubWireMock(String responseFileName) {
+        stubWireMock(responseFileName, "application/json");
+    }
+
+    public static void stubWireMock(String responseFileName, String contentType) {
+        wireMockServer.resetAll();
+
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", contentType)
+                        .withStatus(200)
+                        .withBodyFile(responseFileName)));
+    }
+
+    /*
+        Emulates a server allowing its responses to be cached.
+     */
+    public static void stubWireMockCacheable(String responseFileName, String cacheControl) {
+        wireMockServer.resetAll();
+
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("Cache-Control", cacheControl)
+                        .withStatus(200)
+                        .withBodyFile(responseFileName)));
+    }
+
+    /*
+        Emulates a slow server: the response is sent after the given delay.
+     */
+    public static void stubWireMockDelayed(String responseFileName, int delayMillis) {
+        wireMockServer.resetAll();
+
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(200)
+                        .withFixedDelay(delayMillis)
+                        .withBodyFile(responseFileName)));
+    }
+
+    /*
+        Emulates a server supporting Automatic Persisted Queries: a hash is unknown until the full document has been sent once.
+     */
+    public static void stubWireMockPersistedQuery(String responseFileName) {
         wireMockServer.resetAll();
 
         wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .inScenario("APQ")
+                .whenScenarioStateIs(STARTED)
+                .withRequestBody(notMatching(".*\"query\".*"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(200)
+                        .withBodyFile("persistedQueryNotFound.json")));
+
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .inScenario("APQ")
+                .withRequestBody(matchingJsonPath("$.query"))
+                .withRequestBody(matchingJsonPath("$.extensions.persistedQuery.sha256Hash"))
+                .willSetStateTo("Registered")
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(200)
+                        .withBodyFile(responseFileName)));
+
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .inScenario("APQ")
+                .whenScenarioStateIs("Registered")
+                .withRequestBody(matchingJsonPath("$.extensions.persistedQuery.sha256Hash"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(200)
+                        .withBodyFile(responseFileName)));
+    }
+
+    /*
+        Emulates a server answering GET queries with an ETag, and 304 Not Modified when revalidated.
+     */
+    public static void stubWireMockGet(String responseFileName, String etag) {
+        stubWireMock(responseFileName);
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/graphql"))
                 .willReturn(aResponse()
                         .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", etag)
                         .withStatus(200)
                         .withBodyFile(responseFileName)));
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/graphql"))
+                .atPriority(1)
+                .withHeader("If-None-Match", equalTo(etag))
+                .willReturn(aResponse()
+                        .withHeader("ETag", etag)
+                        .withStatus(304)));
     }
 
     private static void _setupWireMock() {